@@ -25,9 +25,21 @@ def execute(**kargs):
         print "~ import       Import an yaml file from play path (conf/data.yml by default) to database"
         print "~     with --filename you can specify the yaml filename file (ex : test-data.yml)"
         print "~     with --reset option, we delete all database entries before the import"
+        print "~     with --wipe option, we delete the database directory before the import (faster than --reset)"
+        print "~     with --batch option, we write directly into the store files with the neo4j batch inserter (for large import)"
+        print "~     with --stream option, we read the yaml file entry by entry, without the template step (for files larger than the heap)"
+        print "~     with --threads=N option, models are bound by N threads, and relations are written after all models"
+        print "~     with --batchsize=N option, we commit every N models or relations (1000 by default)"
+        print "~     with --format=jsonl|binary option, we import a dump made by neo4j:export with the same format (and --gzip)"
+        print "~     with --manifest option, we import the segments of an export made with --threads, read by --threads=N threads"
+        print "~     with --delta option, we apply an export made with --since (and its .deleted file) to a copy of the exported database"
         print "~ export       Export your database into yaml format (to file conf/data.yml)"
         print "~     with --filename you can specify the yaml filename file (without the yml extension !)"
         print "~     with --folder you can specify the folder where yaml file will be read (conf by default)"
+        print "~     with --format=yml|jsonl|binary option, we export in yaml (default), json lines or binary format with typed values"
+        print "~     with --gzip option, the export file is compressed"
+        print "~     with --since=<marker> option, we export only what has changed since a previous export (needs neo4j.changelog=true)"
+        print "~     with --threads=N option, each model class and N ranges of relations are exported in parallel into segments, with a manifest"
         print       
         sys.exit(0)
    
@@ -1,12 +1,31 @@
 package play.module.neo4j;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import models.User;
 
 import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.helpers.collection.IteratorUtil;
 
+import play.Play;
 import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.exception.Neo4jPlayException;
 import play.modules.neo4j.util.Neo4j;
+import play.modules.neo4j.util.Neo4jChangeLog;
+import play.modules.neo4j.util.Neo4jConfig;
+import play.modules.neo4j.util.Neo4jKeyMap;
+import play.modules.neo4j.util.Neo4jOrphanSweeper;
+import play.modules.neo4j.util.Neo4jWarmup;
 import play.test.UnitTest;
 
 public class DatabaseTest extends UnitTest {
@@ -34,4 +53,266 @@ public class DatabaseTest extends UnitTest {
         assertEquals(1, i);
     }
 
+    @Test
+    public void batchDeleteDbTest() throws Neo4jException {
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.login = "batch" + i;
+            user.save();
+        }
+
+        // calling clear database, with a commit every 3 deletions
+        Play.configuration.setProperty("neo4j.clear.batch", "3");
+        try {
+            Neo4j.clear();
+        } finally {
+            Play.configuration.remove("neo4j.clear.batch");
+        }
+
+        int i = 0;
+        for (Node node : Neo4j.db().getAllNodes()) {
+            i++;
+        }
+        assertEquals(1, i);
+    }
+
+    @Test
+    public void batchDeleteRelationshipsTest() throws Neo4jException {
+        // the reference node has more relationships than the size of a batch
+        GraphDatabaseService graph = Neo4j.db();
+        Transaction tx = graph.beginTx();
+        try {
+            for (int i = 0; i < 7; i++) {
+                graph.getReferenceNode().createRelationshipTo(graph.createNode(),
+                        DynamicRelationshipType.withName("CLEAR_TEST"));
+            }
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+
+        // count deletions of each transaction
+        final List<Integer> deletions = new ArrayList<Integer>();
+        TransactionEventHandler<Object> handler = new TransactionEventHandler<Object>() {
+
+            @Override
+            public Object beforeCommit(TransactionData data) throws Exception {
+                deletions.add(IteratorUtil.count(data.deletedNodes())
+                        + IteratorUtil.count(data.deletedRelationships()));
+                return null;
+            }
+
+            @Override
+            public void afterCommit(TransactionData data, Object state) {
+            }
+
+            @Override
+            public void afterRollback(TransactionData data, Object state) {
+            }
+        };
+        graph.registerTransactionEventHandler(handler);
+        Play.configuration.setProperty("neo4j.clear.batch", "3");
+        try {
+            Neo4j.clear();
+        } finally {
+            Play.configuration.remove("neo4j.clear.batch");
+            graph.unregisterTransactionEventHandler(handler);
+        }
+
+        assertTrue(deletions.size() >= 5);
+        for (Integer nb : deletions) {
+            assertTrue(nb <= 3);
+        }
+        assertEquals(1, IteratorUtil.count(Neo4j.db().getAllNodes()));
+    }
+
+    @Test
+    public void wipeStoreTest() throws Neo4jException {
+        User user = new User();
+        user.login = "wipe";
+        user.save();
+
+        Neo4j.wipeStore();
+
+        int i = 0;
+        for (Node node : Neo4j.db().getAllNodes()) {
+            i++;
+        }
+        assertEquals(1, i);
+        assertEquals(0, User.findAll().size());
+    }
+
+    @Test
+    public void orphanSweeperTest() throws Neo4jException {
+        User user = new User();
+        user.login = "notorphan";
+        user.save();
+
+        Node orphan;
+        Node raw;
+        Transaction tx = Neo4j.db().beginTx();
+        try {
+            // a model node that has lost the link from its class
+            orphan = Neo4j.db().createNode();
+            orphan.setProperty("key", 999L);
+            // a node created with the neo4j API
+            raw = Neo4j.db().createNode();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+
+        new Neo4jOrphanSweeper().doJob();
+
+        try {
+            Neo4j.db().getNodeById(orphan.getId());
+            fail("Orphan node should be deleted");
+        } catch (NotFoundException e) {
+            // orphan node is deleted
+        }
+        assertNotNull(Neo4j.db().getNodeById(raw.getId()));
+        assertNotNull(Neo4j.db().getNodeById(user.node.getId()));
+    }
+
+    @Test
+    public void changeLogTest() throws Neo4jException {
+        Play.configuration.setProperty("neo4j.changelog", "true");
+        Neo4jChangeLog.initialize(Neo4j.db());
+        try {
+            long marker = Neo4jChangeLog.get().marker();
+            User user = new User();
+            user.login = "changed";
+            user.save();
+            long nodeId = user.node.getId();
+
+            Neo4jChangeLog.Changes changes = Neo4jChangeLog.get().since(marker);
+            assertTrue(Arrays.binarySearch(changes.getNodes(), nodeId) >= 0);
+            assertEquals(0, changes.getDeletedNodes().length);
+            assertTrue(changes.getTo() > marker);
+
+            // a deleted model is also recorded by its exported id, that is no more readable after the commit
+            String exportedId = "User_" + user.getKey();
+            user.delete();
+            changes = Neo4jChangeLog.get().since(marker);
+            assertTrue(Arrays.binarySearch(changes.getNodes(), nodeId) < 0);
+            assertTrue(Arrays.binarySearch(changes.getDeletedNodes(), nodeId) >= 0);
+            assertEquals(Arrays.asList(exportedId), changes.getDeletedModels());
+        } finally {
+            Neo4jChangeLog.destroy();
+            Play.configuration.remove("neo4j.changelog");
+        }
+    }
+
+    @Test
+    public void keyMapRollbackTest() {
+        Play.configuration.setProperty("neo4j.keymap", "true");
+        Neo4jKeyMap.initialize(Neo4j.db());
+        try {
+            Neo4jKeyMap map = Neo4jKeyMap.forClass("KEYMAPTEST");
+            // a transaction rollbacked before its commit
+            Transaction tx = Neo4j.db().beginTx();
+            try {
+                Neo4j.db().createNode();
+                map.put(12345, 42);
+                tx.failure();
+            } finally {
+                tx.finish();
+            }
+            // the next transaction of the thread must not apply its modifications
+            tx = Neo4j.db().beginTx();
+            try {
+                Neo4j.db().createNode();
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+            assertEquals(-1, map.get(12345));
+
+            tx = Neo4j.db().beginTx();
+            try {
+                Neo4j.db().createNode();
+                map.put(7, 43);
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+            assertEquals(43, map.get(7));
+
+            Neo4jKeyMap.clear();
+            assertEquals(-1, map.get(7));
+        } finally {
+            Neo4jKeyMap.destroy();
+            Play.configuration.remove("neo4j.keymap");
+        }
+    }
+
+    @Test
+    public void configTest() {
+        Play.configuration.setProperty("neo4j.preset", "small");
+        Play.configuration.setProperty("neo4j.cache_type", "weak");
+        Play.configuration.setProperty("neo4j.config.enable_remote_shell", "true");
+        try {
+            Map<String, String> config = Neo4jConfig.build();
+            assertEquals("weak", config.get("cache_type"));
+            assertEquals("25M", config.get("neostore.nodestore.db.mapped_memory"));
+            assertEquals("true", config.get("enable_remote_shell"));
+            assertFalse(config.containsKey("path"));
+
+            Play.configuration.setProperty("neo4j.cache_type", "bogus");
+            try {
+                Neo4jConfig.build();
+                fail("An invalid value must be refused");
+            } catch (Neo4jPlayException e) {
+                assertTrue(e.getMessage().contains("neo4j.cache_type"));
+            }
+        } finally {
+            Play.configuration.remove("neo4j.preset");
+            Play.configuration.remove("neo4j.cache_type");
+            Play.configuration.remove("neo4j.config.enable_remote_shell");
+        }
+    }
+
+    @Test
+    public void warmupTest() throws Neo4jException {
+        User user = new User();
+        user.login = "warm";
+        user.save();
+        Play.configuration.setProperty("neo4j.warmup", "true");
+        Play.configuration.setProperty("neo4j.warmup.models", "models.User");
+        try {
+            new Neo4jWarmup().doJob();
+            assertTrue(Neo4jWarmup.status().startsWith("done"));
+        } finally {
+            Play.configuration.remove("neo4j.warmup");
+            Play.configuration.remove("neo4j.warmup.models");
+        }
+    }
+
+    @Test
+    public void readOnlyTest() throws Neo4jException {
+        User user = new User();
+        user.login = "readonly";
+        user.save();
+        Neo4j.destroy();
+        Play.configuration.setProperty("neo4j.readonly", "true");
+        try {
+            Neo4j.initialize();
+            assertTrue(Neo4j.isReadOnly());
+            assertNotNull(User.getByKey(user.getKey()));
+            User other = new User();
+            other.login = "refused";
+            try {
+                other.save();
+                fail("A write must be refused in read-only mode");
+            } catch (Neo4jPlayException e) {
+                assertNull(other.getNode());
+            }
+        } finally {
+            Neo4j.destroy();
+            Play.configuration.remove("neo4j.readonly");
+            Neo4j.initialize();
+        }
+        assertFalse(Neo4j.isReadOnly());
+    }
+
 }
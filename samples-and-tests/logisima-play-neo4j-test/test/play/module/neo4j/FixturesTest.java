@@ -1,12 +1,38 @@
 package play.module.neo4j;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import models.User;
+
 import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
 
+import play.Play;
+import play.libs.IO;
+import play.modules.neo4j.cli.Export;
+import play.modules.neo4j.cli.export.DumpFormat;
+import play.modules.neo4j.cli.export.DumpManifest;
+import play.modules.neo4j.cli.export.YmlNode;
+import play.modules.neo4j.cli.importer.BatchImportWriter;
+import play.modules.neo4j.cli.importer.BinaryDumpReader;
+import play.modules.neo4j.cli.importer.DatabaseImportWriter;
+import play.modules.neo4j.cli.importer.DumpReader;
+import play.modules.neo4j.cli.importer.DumpRecord;
 import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jFactory;
 import play.modules.neo4j.util.Fixtures;
 import play.modules.neo4j.util.Neo4j;
+import play.modules.neo4j.util.Neo4jChangeLog;
 import play.test.UnitTest;
 
 public class FixturesTest extends UnitTest {
@@ -19,6 +45,222 @@ public class FixturesTest extends UnitTest {
         assertEquals(14, countGraphRelationType());
     }
 
+    @Test
+    public void streamYmlTest() throws Neo4jException {
+        Fixtures.deleteDatabase();
+        Fixtures.streamYml("data.yml");
+        assertEquals(12, countGraphNode());
+        assertEquals(14, countGraphRelationType());
+        assertEquals(4, User.findAll().size());
+    }
+
+    @Test
+    public void pipelineYmlTest() throws Neo4jException {
+        Fixtures.deleteDatabase();
+        Fixtures.streamYml("data.yml", new DatabaseImportWriter(5), false, 4);
+        assertEquals(12, countGraphNode());
+        assertEquals(14, countGraphRelationType());
+        assertEquals(4, User.findAll().size());
+    }
+
+    @Test
+    public void failedImportTest() throws Exception {
+        File file = Play.getFile("conf/test-failed.yml");
+        IO.writeContent("User(User_1):\n login: 'one'\n\nUser(User_2):\n login: 'two'\n\n"
+                + "Relation(1):\n type: IS_FRIEND\n from: User_1\n to: User_3\n", file);
+        try {
+            // the relation fails, so the models of the current batch are rollbacked, with one thread or more
+            for (int threads = 1; threads <= 2; threads++) {
+                Fixtures.deleteDatabase();
+                try {
+                    Fixtures.streamYml("test-failed.yml", new DatabaseImportWriter(100), false, threads);
+                    fail("The relation to an unknown model must fail the import");
+                } catch (RuntimeException e) {
+                    assertEquals(0, User.findAll().size());
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void dumpTest() throws Exception {
+        Fixtures.deleteDatabase();
+        Fixtures.loadYml("data.yml");
+        String folder = Play.getFile("conf").getAbsolutePath();
+        Export.writeFile("test-dump", folder, DumpFormat.BINARY, true);
+        Export.writeFile("test-dump", folder, DumpFormat.BINARY, false);
+        Export.writeFile("test-dump", folder, DumpFormat.JSONL, false);
+        try {
+            // memory-mapped reading with a small window, so records cross window boundaries, gives the same records as
+            // the stream reading
+            DumpReader streamed = new BinaryDumpReader(Play.getFile("conf/test-dump.bin.gz"), true);
+            DumpReader mapped = new BinaryDumpReader(Play.getFile("conf/test-dump.bin"), false, 64);
+            try {
+                int nb = 0;
+                DumpRecord expected;
+                while ((expected = streamed.next()) != null) {
+                    DumpRecord record = mapped.next();
+                    assertNotNull(record);
+                    assertEquals(expected.id, record.id);
+                    assertEquals(expected.className, record.className);
+                    assertEquals(expected.properties.keySet(), record.properties.keySet());
+                    assertEquals(expected.type, record.type);
+                    assertEquals(expected.from, record.from);
+                    assertEquals(expected.to, record.to);
+                    nb++;
+                }
+                assertNull(mapped.next());
+                assertTrue(nb > 0);
+            } finally {
+                streamed.close();
+                mapped.close();
+            }
+
+            for (String dump : new String[] { "test-dump.bin.gz", "test-dump.bin", "test-dump.jsonl" }) {
+                Fixtures.deleteDatabase();
+                Fixtures.loadDump(dump, new DatabaseImportWriter());
+                assertEquals(12, countGraphNode());
+                assertEquals(14, countGraphRelationType());
+                User user = (User) User.queryIndex("lastname", "lastname:BOSSARD").get(0);
+                assertEquals(Integer.valueOf(42), user.age);
+                assertEquals(-3600000L, user.birthday.getTime());
+            }
+        } finally {
+            Play.getFile("conf/test-dump.bin.gz").delete();
+            Play.getFile("conf/test-dump.bin").delete();
+            Play.getFile("conf/test-dump.jsonl").delete();
+        }
+    }
+
+    @Test
+    public void segmentsTest() throws Exception {
+        Fixtures.deleteDatabase();
+        Fixtures.loadYml("data.yml");
+        String folder = Play.getFile("conf").getAbsolutePath();
+        DumpManifest manifest = Export.writeSegments("test-segments", folder, DumpFormat.JSONL, false, 2);
+        try {
+            assertEquals(2, manifest.getRelationSegments().size());
+            Fixtures.deleteDatabase();
+            Fixtures.loadManifest("test-segments.manifest", new DatabaseImportWriter(100), 2);
+            assertEquals(12, countGraphNode());
+            assertEquals(14, countGraphRelationType());
+            User user = (User) User.queryIndex("lastname", "lastname:BOSSARD").get(0);
+            assertEquals(Integer.valueOf(42), user.age);
+        } finally {
+            for (String segment : manifest.getNodeSegments()) {
+                Play.getFile("conf/" + segment).delete();
+            }
+            for (String segment : manifest.getRelationSegments()) {
+                Play.getFile("conf/" + segment).delete();
+            }
+            Play.getFile("conf/test-segments.manifest").delete();
+        }
+    }
+
+    @Test
+    public void batchImportYmlTest() throws Neo4jException {
+        Fixtures.wipeDatabase();
+        Neo4j.destroy();
+        Fixtures.loadYml("data.yml", new BatchImportWriter(Play.configuration.getProperty("neo4j.path")));
+        Neo4j.initialize();
+        assertEquals(12, countGraphNode());
+        assertEquals(14, countGraphRelationType());
+        assertEquals(4, User.findAll().size());
+        assertNotNull(User.getByKey(1L));
+
+        // key counter is updated, so a new model follows imported one
+        User user = new User();
+        user.login = "afterbatch";
+        user.save();
+        assertEquals(Long.valueOf(5), user.getKey());
+    }
+
+    @Test
+    public void deltaTest() throws Exception {
+        Play.configuration.setProperty("neo4j.changelog", "true");
+        Neo4jChangeLog.initialize(Neo4j.db());
+        String folder = Play.getFile("conf").getAbsolutePath();
+        try {
+            Fixtures.deleteDatabase();
+            Fixtures.loadYml("data.yml");
+            Export.writeFile("test-delta-full", folder, DumpFormat.JSONL, false);
+            long marker = Neo4jChangeLog.get().marker();
+
+            // an update, a new model related to an old one, a deleted relation, and a deleted model with relations
+            User tonio = User.getByKey(1L);
+            tonio.email = "antoine@gmail.com";
+            tonio.save();
+            User added = new User();
+            added.login = "delta";
+            added.save();
+            User ben = User.getByKey(2L);
+            Transaction tx = Neo4j.db().beginTx();
+            try {
+                added.getNode().createRelationshipTo(tonio.getNode(), DynamicRelationshipType.withName("IS_FRIEND"));
+                ben.getNode().getSingleRelationship(DynamicRelationshipType.withName("IS_FAMILLY"), Direction.OUTGOING)
+                        .delete();
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+            new Neo4jFactory(User.class).forceDelete(User.getByKey(4L));
+            Export.writeDelta("test-delta", folder, DumpFormat.JSONL, false, marker);
+            List<String> expected = snapshot();
+            Neo4jChangeLog.destroy();
+
+            // the full export then the delta, loaded on an empty database, give the same models and relations
+            Fixtures.deleteDatabase();
+            Fixtures.loadDelta("test-delta-full.jsonl");
+            Fixtures.loadDelta("test-delta.jsonl");
+            assertEquals(expected, snapshot());
+            assertNull(User.getByKey(4L));
+            assertEquals("antoine@gmail.com", ((User) User.getByKey(1L)).email);
+            assertEquals(4, User.findAll().size());
+
+            // the delta can be applied again, without duplicate
+            Fixtures.loadDelta("test-delta.jsonl");
+            assertEquals(expected, snapshot());
+        } finally {
+            Neo4jChangeLog.destroy();
+            Play.configuration.remove("neo4j.changelog");
+            Play.getFile("conf/test-delta-full.jsonl").delete();
+            Play.getFile("conf/test-delta.jsonl").delete();
+            Play.getFile("conf/test-delta.jsonl.deleted").delete();
+        }
+    }
+
+    /**
+     * Models of the database, with their properties, and the relations between them, by exported id.
+     */
+    private List<String> snapshot() {
+        List<String> lines = new ArrayList<String>();
+        for (Node node : Neo4j.db().getAllNodes()) {
+            YmlNode from = new YmlNode(node);
+            if (!from.isModel()) {
+                continue;
+            }
+            Set<String> properties = new TreeSet<String>();
+            for (String property : node.getPropertyKeys()) {
+                properties.add(property);
+            }
+            StringBuilder line = new StringBuilder(from.id);
+            for (String property : properties) {
+                line.append(' ').append(property).append('=').append(node.getProperty(property));
+            }
+            lines.add(line.toString());
+            for (Relationship relation : node.getRelationships(Direction.OUTGOING)) {
+                YmlNode to = new YmlNode(relation.getEndNode());
+                if (to.isModel()) {
+                    lines.add(from.id + " " + relation.getType().name() + " " + to.id);
+                }
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
     private int countGraphNode() {
         int nb = 0;
         for (Node node : Neo4j.db().getAllNodes()) {
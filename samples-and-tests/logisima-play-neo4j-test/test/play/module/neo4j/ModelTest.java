@@ -1,6 +1,12 @@
 package play.module.neo4j;
 
 import java.sql.Date;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import models.User;
 
@@ -9,6 +15,8 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.index.Index;
 
 import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.model.Neo4jResult;
 import play.modules.neo4j.util.Neo4j;
 
 public class ModelTest extends Neo4jUnit {
@@ -98,6 +106,121 @@ public class ModelTest extends Neo4jUnit {
 
     }
 
+    @Test
+    public void getByKeysTest() throws Neo4jException {
+        User user = createDefaultUser();
+        User user2 = createUser("bsimard2@logisima.com", "Benoît2", "SIMARD", "bsimard2");
+        List<User> users = User.getByKeys(Arrays.asList(user2.key, new Long(-1), user.key));
+
+        assertEquals(3, users.size());
+        assertEquals(user2.key, users.get(0).key);
+        assertNull(users.get(1));
+        assertEquals(user.key, users.get(2).key);
+        assertEquals(user.login, users.get(2).login);
+    }
+
+    @Test
+    public void hydrateAllTest() throws Neo4jException {
+        User user = createDefaultUser();
+        User user2 = createUser("bsimard2@logisima.com", "Benoît2", "SIMARD", "bsimard2");
+        List<User> users = Neo4jModel.hydrateAll(Arrays.asList(user.node, null, user2.node), true);
+
+        assertEquals(3, users.size());
+        assertEquals(user.key, users.get(0).key);
+        assertNull(users.get(1));
+        assertEquals(user2.login, users.get(2).login);
+        // relations are not loaded
+        assertNull(users.get(0).friends);
+    }
+
+    @Test
+    public void parallelFindAllTest() throws Neo4jException {
+        createDefaultUser();
+        createUser("bsimard2@logisima.com", "Benoît2", "SIMARD", "bsimard2");
+        List<User> users = User.findAll();
+        List<User> parallel = User.findAll(true);
+
+        assertEquals(users.size(), parallel.size());
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals(users.get(i).key, parallel.get(i).key);
+        }
+    }
+
+    @Test
+    public void projectionTest() throws Neo4jException {
+        Neo4j.clear();
+        User user = createDefaultUser();
+        User user2 = createUser("bsimard2@logisima.com", "Benoît2", "SIMARD", "bsimard2");
+        List<Map<String, Object>> rows = User.project("login", "email").findAll(0, 10);
+
+        // the order of nodes is not guaranteed by neo4j, so we check the projected values as a set
+        assertEquals(2, rows.size());
+        Set<String> projected = new HashSet<String>();
+        for (Map<String, Object> row : rows) {
+            projected.add(row.get("key") + "|" + row.get("login") + "|" + row.get("email"));
+            assertFalse(row.containsKey("firstname"));
+        }
+        Set<String> expected = new HashSet<String>();
+        expected.add(user.key + "|" + user.login + "|" + user.email);
+        expected.add(user2.key + "|" + user2.login + "|" + user2.email);
+        assertEquals(expected, projected);
+
+        // second page
+        List<Map<String, Object>> page = User.project("login", "email").findAll(1, 10);
+        assertEquals(1, page.size());
+        assertTrue(projected.contains(page.get(0).get("key") + "|" + page.get(0).get("login") + "|"
+                + page.get(0).get("email")));
+    }
+
+    @Test
+    public void cypherTest() throws Neo4jException {
+        User user = createDefaultUser();
+        createUser("bsimard2@logisima.com", "Benoît2", "SIMARD", "bsimard2");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("id", user.node.getId());
+        List<User> users = User.cypher("START user=node({id}) RETURN user", params, "user");
+
+        assertEquals(1, users.size());
+        assertEquals(user.key, users.get(0).key);
+        assertEquals(user.login, users.get(0).login);
+    }
+
+    @Test
+    public void streamTest() throws Neo4jException {
+        Neo4j.clear();
+        createDefaultUser();
+        createUser("bsimard2@logisima.com", "Benoît2", "SIMARD", "bsimard2");
+        createUser("bsimard3@logisima.com", "Benoît3", "SIMARD", "bsimard3");
+        String query = "START ref=node(0) MATCH ref-[:USER_REF]->()-[:USER]->user RETURN user";
+        Neo4jResult<User> result = User.stream(query, new HashMap<String, Object>(), "user");
+        result.limit(2);
+
+        int nb = 0;
+        for (User user : result) {
+            assertNotNull(user.login);
+            nb++;
+        }
+        assertEquals(2, nb);
+
+        List<Map<String, Object>> rows = User.project("login").stream(query, new HashMap<String, Object>(), "user")
+                .asList();
+        assertEquals(3, rows.size());
+    }
+
+    @Test
+    public void streamIndexTest() throws Neo4jException {
+        Neo4j.clear();
+        createDefaultUser();
+        createUser("bsimard2@logisima.com", "Benoît2", "SIMARD", "bsimard2");
+        Neo4jResult<User> result = User.streamIndex("lastname", "lastname:SIMARD");
+        User user = result.first();
+        assertNotNull(user);
+        assertEquals("SIMARD", user.lastname);
+
+        List<Map<String, Object>> rows = User.project("login").streamIndex("lastname", "lastname:SIMARD").asList();
+        assertEquals(2, rows.size());
+    }
+
     @Test
     public void indexTest() throws Neo4jException {
         Neo4j.clear();
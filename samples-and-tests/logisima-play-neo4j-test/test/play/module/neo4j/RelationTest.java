@@ -2,13 +2,19 @@ package play.module.neo4j;
 
 import java.util.List;
 
+import models.Job;
 import models.User;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
 
 import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.relationship.Neo4jRelationFactory;
 import play.modules.neo4j.util.Fixtures;
+import play.modules.neo4j.util.Neo4j;
 
 public class RelationTest extends Neo4jUnit {
 
@@ -54,6 +60,59 @@ public class RelationTest extends Neo4jUnit {
         }
     }
 
+    @Test
+    public void traversalTest() throws Neo4jException {
+        List<User> users = User.findAll();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (user.login.equals("ben")) {
+                List<User> friends = user.traverse().out("IS_FRIEND").as(User.class).asList();
+                assertEquals(1, friends.size());
+                assertEquals("osecher@gmail.com", friends.get(0).email);
+
+                List<Job> jobs = user.traverse().out("NEXT_JOB").depth(1, 3).unique().as(Job.class).asList();
+                assertEquals(3, jobs.size());
+                assertEquals("My last job", jobs.get(0).title);
+
+                jobs = user.traverse().out("NEXT_JOB").depth(2, 3).limit(1).as(Job.class).asList();
+                assertEquals(1, jobs.size());
+                assertEquals("My last-1 job", jobs.get(0).title);
+            }
+        }
+    }
+
+    @Test
+    public void recommendTest() throws Neo4jException {
+        User a = createUser("a@logisima.com", "a", "RECO", "a");
+        User b = createUser("b@logisima.com", "b", "RECO", "b");
+        User c = createUser("c@logisima.com", "c", "RECO", "c");
+        User d = createUser("d@logisima.com", "d", "RECO", "d");
+        User e = createUser("e@logisima.com", "e", "RECO", "e");
+        RelationshipType friend = DynamicRelationshipType.withName("IS_FRIEND");
+        Transaction tx = Neo4j.db().beginTx();
+        try {
+            a.node.createRelationshipTo(b.node, friend);
+            a.node.createRelationshipTo(c.node, friend);
+            b.node.createRelationshipTo(c.node, friend);
+            b.node.createRelationshipTo(d.node, friend);
+            c.node.createRelationshipTo(d.node, friend);
+            b.node.createRelationshipTo(e.node, friend);
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+
+        // d has two paths from a, e only one, and c is already a friend of a
+        List<User> users = Neo4jRelationFactory.recommend(a, "IS_FRIEND", "OUTGOING", 2, 2, 3, 0);
+        assertEquals(2, users.size());
+        assertEquals("d", users.get(0).login);
+        assertEquals("e", users.get(1).login);
+
+        users = Neo4jRelationFactory.recommend(a, "IS_FRIEND", "OUTGOING", 2, 2, 1, 0);
+        assertEquals(1, users.size());
+        assertEquals("d", users.get(0).login);
+    }
+
     @Test
     public void loadRelationOnUnsavedModel() throws Neo4jException {
         User user = createDefaultUnsavedUser();
@@ -0,0 +1,306 @@
+package play.module.neo4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import models.Job;
+import models.User;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import play.Play;
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.remote.RestGraphDatabase;
+import play.modules.neo4j.util.Neo4j;
+import play.test.UnitTest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RemoteTest extends UnitTest {
+
+    private final static ObjectMapper JSON     = new ObjectMapper();
+
+    private HttpServer                server;
+    private List<String>              requests = new ArrayList<String>();
+    private List<Map<String, Object>> jobs;
+    private Set<String>               claimed  = new HashSet<String>();
+
+    /**
+     * Start a fake neo4j server, that records requests, creates entities of batch jobs, and knows the class reference
+     * node of <code>User</code> (node 1, linked to the reference node 0).
+     */
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/db/data", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath().substring("/db/data".length());
+                String query = exchange.getRequestURI().getQuery();
+                requests.add(exchange.getRequestMethod() + " " + path + (query == null ? "" : "?" + query));
+                String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                int status = 200;
+                Object response;
+                if (path.equals("/batch")) {
+                    // answer only the jobs of this request
+                    jobs = JSON.readValue(body, List.class);
+                    List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+                    for (Map<String, Object> job : jobs) {
+                        Map<String, Object> result = new HashMap<String, Object>();
+                        result.put("id", job.get("id"));
+                        if (job.get("to").equals("/node")) {
+                            result.put("location", url() + "/node/" + (100 + (Integer) job.get("id")));
+                        }
+                        else if (((String) job.get("to")).endsWith("/relationships")) {
+                            result.put("location", url() + "/relationship/" + (200 + (Integer) job.get("id")));
+                        }
+                        results.add(result);
+                    }
+                    response = results;
+                }
+                else if ("unique".equals(query)) {
+                    Map<String, Object> entry = JSON.readValue(body, Map.class);
+                    if (claimed.add(path + "/" + entry.get("key") + "/" + entry.get("value"))) {
+                        status = 201;
+                    }
+                    response = node((String) entry.get("uri"));
+                }
+                else if (path.equals("/")) {
+                    response = Collections.singletonMap("reference_node", url() + "/node/0");
+                }
+                else if (path.matches("/node/0/relationships/(all|out)/USER_REF")) {
+                    Map<String, Object> relationship = new HashMap<String, Object>();
+                    relationship.put("self", url() + "/relationship/1");
+                    relationship.put("start", url() + "/node/0");
+                    relationship.put("end", url() + "/node/1");
+                    relationship.put("type", "USER_REF");
+                    response = Collections.singletonList(relationship);
+                }
+                else if (path.equals("/node/10/relationships/out/TIMELINE")) {
+                    // head of the timeline of node 10
+                    Map<String, Object> relationship = new HashMap<String, Object>();
+                    relationship.put("self", url() + "/relationship/300");
+                    relationship.put("start", url() + "/node/10");
+                    relationship.put("end", url() + "/node/12");
+                    relationship.put("type", "TIMELINE");
+                    response = Collections.singletonList(relationship);
+                }
+                else if (path.equals("/cypher")) {
+                    // all the nodes : the reference node and node 5
+                    Map<String, Object> result = new HashMap<String, Object>();
+                    result.put("columns", Arrays.asList("n"));
+                    result.put("data", Arrays.asList(Arrays.asList(node(url() + "/node/0")),
+                            Arrays.asList(node(url() + "/node/5"))));
+                    response = result;
+                }
+                else if (path.equals("/index/node") || path.equals("/index/relationship")) {
+                    Map<String, Object> config = new HashMap<String, Object>();
+                    config.put("template", url() + path + "/" + (path.endsWith("node") ? "User_key" : "FRIENDS")
+                            + "/{key}/{value}");
+                    config.put("type", "exact");
+                    response = Collections.singletonMap(path.endsWith("node") ? "User_key" : "FRIENDS", config);
+                }
+                else if (path.equals("/node/1/properties")) {
+                    Map<String, Object> properties = new HashMap<String, Object>();
+                    properties.put("KEY_COUNTER", 1);
+                    properties.put("CLASSNAME", User.class.getName());
+                    response = properties;
+                }
+                else if (path.endsWith("/properties")) {
+                    response = Collections.emptyMap();
+                }
+                else {
+                    response = Collections.emptyList();
+                }
+                byte[] bytes = JSON.writeValueAsBytes(response);
+                exchange.sendResponseHeaders(status, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/db/data";
+    }
+
+    private Map<String, Object> node(String uri) {
+        Map<String, Object> node = new HashMap<String, Object>();
+        node.put("self", uri);
+        node.put("data", Collections.emptyMap());
+        return node;
+    }
+
+    @Test
+    public void batchTest() {
+        RestGraphDatabase graphDb = new RestGraphDatabase(url(), 5000);
+        Transaction tx = graphDb.beginTx();
+        Node user;
+        try {
+            user = graphDb.createNode();
+            user.setProperty("login", "bsimard");
+            Node friend = graphDb.createNode();
+            user.createRelationshipTo(friend, DynamicRelationshipType.withName("IS_FRIEND"));
+            graphDb.index().forNodes("User_login").add(user, "login", "bsimard");
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+
+        // all writes of the transaction are sent with one request
+        assertEquals(1, requests.size());
+        assertEquals("POST /batch", requests.get(0));
+        assertEquals(4, jobs.size());
+        assertEquals("bsimard", ((Map) jobs.get(0).get("body")).get("login"));
+        assertEquals("{0}/relationships", jobs.get(2).get("to"));
+        assertEquals("{1}", ((Map) jobs.get(2).get("body")).get("to"));
+        assertEquals("{0}", ((Map) jobs.get(3).get("body")).get("uri"));
+
+        // created node has its id, and its properties without another request
+        assertEquals(100, user.getId());
+        assertEquals("bsimard", user.getProperty("login"));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void rollbackTest() {
+        RestGraphDatabase graphDb = new RestGraphDatabase(url(), 5000);
+        Transaction tx = graphDb.beginTx();
+        try {
+            graphDb.createNode().setProperty("login", "bsimard");
+            Transaction nested = graphDb.beginTx();
+            try {
+                graphDb.createNode();
+                nested.failure();
+            } finally {
+                nested.finish();
+            }
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+
+        // a failure of a nested transaction rollbacks everything : nothing is sent
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    public void saveTest() throws Neo4jException {
+        Neo4j.destroy();
+        Play.configuration.setProperty("neo4j.mode", "remote");
+        Play.configuration.setProperty("neo4j.remote.url", url());
+        try {
+            Neo4j.initialize();
+            User user = new User();
+            user.login = "bsimard";
+            user.save();
+            assertEquals(1L, user.key.longValue());
+
+            // another instance has claimed the key 2, and the fake server never updates the counter (like another
+            // instance that has read it before) : the save tries the claimed keys 1 and 2, then gets 3
+            claimed.add("/index/node/User_KEY_COUNTER/key/2");
+            requests.clear();
+            User other = new User();
+            other.login = "other";
+            other.save();
+            assertEquals(3L, other.key.longValue());
+            assertEquals(Arrays.asList("GET /node/0/relationships/all/USER_REF",
+                    "GET /node/0/relationships/out/USER_REF", "GET /node/1/properties",
+                    "POST /index/node/User_KEY_COUNTER?unique", "POST /index/node/User_KEY_COUNTER?unique",
+                    "POST /index/node/User_KEY_COUNTER?unique", "POST /batch"), requests);
+
+            // writes of the save are sent with one batch, that has only the jobs of this save
+            assertEquals(4, jobs.size());
+            assertEquals(4, jobs.get(0).get("body"));
+            assertEquals("other", ((Map) jobs.get(1).get("body")).get("login"));
+        } finally {
+            Neo4j.destroy();
+            Play.configuration.remove("neo4j.mode");
+            Play.configuration.remove("neo4j.remote.url");
+            Neo4j.initialize();
+        }
+    }
+
+    @Test
+    public void prependTest() throws Neo4jException {
+        Neo4j.destroy();
+        Play.configuration.setProperty("neo4j.mode", "remote");
+        Play.configuration.setProperty("neo4j.remote.url", url());
+        try {
+            Neo4j.initialize();
+            User owner = new User();
+            owner.setNode(Neo4j.db().getNodeById(10));
+            Job job = new Job();
+            job.setNode(Neo4j.db().getNodeById(11));
+            requests.clear();
+            owner.timeline("TIMELINE").prepend(job);
+
+            // the lock of the owner does nothing, and the new head is linked with one batch
+            assertEquals(Arrays.asList("GET /node/11/relationships/in/TIMELINE",
+                    "GET /node/10/relationships/out/TIMELINE", "POST /batch"), requests);
+            assertEquals(3, jobs.size());
+            assertEquals("/node/10/relationships", jobs.get(0).get("to"));
+            assertEquals(url() + "/node/11", ((Map) jobs.get(0).get("body")).get("to"));
+            assertEquals("/node/11/relationships", jobs.get(1).get("to"));
+            assertEquals(url() + "/node/12", ((Map) jobs.get(1).get("body")).get("to"));
+            assertEquals("DELETE", jobs.get(2).get("method"));
+            assertEquals("/relationship/300", jobs.get(2).get("to"));
+        } finally {
+            Neo4j.destroy();
+            Play.configuration.remove("neo4j.mode");
+            Play.configuration.remove("neo4j.remote.url");
+            Neo4j.initialize();
+        }
+    }
+
+    @Test
+    public void clearTest() throws Neo4jException {
+        Neo4j.destroy();
+        Play.configuration.setProperty("neo4j.mode", "remote");
+        Play.configuration.setProperty("neo4j.remote.url", url());
+        try {
+            Neo4j.initialize();
+            requests.clear();
+            Neo4j.clear();
+
+            // nodes are deleted, then the node indexes : the relationship index of the server is kept
+            assertEquals(2, Collections.frequency(requests, "POST /batch"));
+            assertFalse(requests.contains("GET /index/relationship"));
+            assertEquals(1, jobs.size());
+            assertEquals("DELETE", jobs.get(0).get("method"));
+            assertEquals("/index/node/User_key", jobs.get(0).get("to"));
+        } finally {
+            Neo4j.destroy();
+            Play.configuration.remove("neo4j.mode");
+            Play.configuration.remove("neo4j.remote.url");
+            Neo4j.initialize();
+        }
+    }
+
+}
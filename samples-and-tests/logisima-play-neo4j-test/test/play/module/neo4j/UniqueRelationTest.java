@@ -1,5 +1,8 @@
 package play.module.neo4j;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import models.Address;
 import models.Job;
 import models.User;
@@ -8,6 +11,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.exception.Neo4jPlayException;
+import play.modules.neo4j.relationship.Neo4jFeed;
+import play.modules.neo4j.relationship.Neo4jTimeline;
 import play.modules.neo4j.util.Fixtures;
 import play.test.UnitTest;
 
@@ -137,4 +143,57 @@ public class UniqueRelationTest extends UnitTest {
         assertNull(after.job);
     }
 
+    @Test
+    public void timelineTest() throws Neo4jException {
+        User user = (User) User.queryIndex("lastname", "lastname:*antoine* OR firstname:*antoine*").get(0);
+        for (int i = 1; i <= 3; i++) {
+            Job job = new Job();
+            job.title = "timeline job " + i;
+            job.save();
+            user.timeline("NEXT_JOB").prepend(job);
+        }
+        assertEquals("timeline job 3", user.job.title);
+
+        Neo4jTimeline.Page<Job> page = user.timeline("NEXT_JOB").page(null, 2);
+        assertEquals(2, page.getItems().size());
+        assertEquals("timeline job 3", page.getItems().get(0).title);
+        assertEquals("timeline job 2", page.getItems().get(1).title);
+        assertTrue(page.hasNext());
+
+        page = user.timeline("NEXT_JOB").page(page.getCursor(), 2);
+        assertEquals(1, page.getItems().size());
+        assertEquals("timeline job 1", page.getItems().get(0).title);
+        assertFalse(page.hasNext());
+    }
+
+    @Test(expected = Neo4jPlayException.class)
+    public void timelineWithoutLineMode() throws Neo4jException {
+        User user = (User) User.queryIndex("lastname", "lastname:*antoine* OR firstname:*antoine*").get(0);
+        user.timeline("ADDRESS");
+    }
+
+    @Test
+    public void feedTest() throws Neo4jException {
+        List<Neo4jTimeline> timelines = new ArrayList<Neo4jTimeline>();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.login = "feed" + i;
+            user.save();
+            timelines.add(user.timeline("NEXT_JOB"));
+        }
+        // each timeline is ordered by title : "feed 4", "feed 2", "feed 0" and "feed 3", "feed 1"
+        for (int i = 0; i < 5; i++) {
+            Job job = new Job();
+            job.title = "feed " + i;
+            job.save();
+            timelines.get(i % 2).prepend(job);
+        }
+
+        List<Job> jobs = Neo4jFeed.merge(timelines, "title", 3);
+        assertEquals(3, jobs.size());
+        assertEquals("feed 4", jobs.get(0).title);
+        assertEquals("feed 3", jobs.get(1).title);
+        assertEquals("feed 2", jobs.get(2).title);
+    }
+
 }
@@ -1,16 +1,12 @@
 package models;
 
 import java.util.Date;
-import java.util.Iterator;
-
-import org.neo4j.cypher.javacompat.ExecutionEngine;
-import org.neo4j.cypher.javacompat.ExecutionResult;
-import org.neo4j.graphdb.Node;
-import org.neo4j.helpers.collection.IteratorUtil;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import play.modules.neo4j.exception.Neo4jException;
 import play.modules.neo4j.model.Neo4jModel;
-import play.modules.neo4j.util.Neo4j;
 
 public class Touite extends Neo4jModel {
 
@@ -19,18 +15,18 @@ public class Touite extends Neo4jModel {
     public Date   created;
 
     public User getAuthor() throws Neo4jException {
-        ExecutionEngine engine = new ExecutionEngine(Neo4j.db());
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("touite", this.node.getId());
         //@formatter:off
-        ExecutionResult result = engine.execute("" +
-                "START touite=node(" + this.node.getId() + ")" +
+        List<User> authors = User.cypher("" +
+                "START touite=node({touite}) " +
                 "MATCH touite-[:AUTHOR]->author " +
                 "RETURN author " +
-                "LIMIT 1");
+                "LIMIT 1", params, "author");
         //@formatter:on
         User user = null;
-        Iterator<Node> column = result.columnAs("author");
-        for (Node node : IteratorUtil.asIterable(column)) {
-            user = User.getByNode(node);
+        if (authors.size() > 0) {
+            user = authors.get(0);
         }
         return user;
     }
@@ -18,12 +18,12 @@
  */
 package play.modules.neo4j;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.Map;
 
-import org.neo4j.graphdb.GraphDatabaseService;
-
 import play.Logger;
 import play.Play;
 import play.Play.Mode;
@@ -33,6 +33,8 @@ import play.modules.neo4j.model.Neo4jModel;
 import play.modules.neo4j.model.Neo4jModelEnhancer;
 import play.modules.neo4j.util.Binder;
 import play.modules.neo4j.util.Neo4j;
+import play.modules.neo4j.util.Neo4jOrphanSweeper;
+import play.modules.neo4j.util.Neo4jWarmup;
 import play.mvc.Router;
 
 /**
@@ -48,10 +50,18 @@ public class Neo4jPlugin extends PlayPlugin {
         Logger.info("Starting neo4j database");
         if (Neo4j.db() == null) {
             Neo4j.initialize();
-            registerShutdownHook(Neo4j.db());
+            registerShutdownHook();
+            Neo4jWarmup.runBeforeStart();
         }
     }
 
+    @Override
+    public void afterApplicationStart() {
+        // jobs can only be scheduled when the job plugin is started
+        Neo4jOrphanSweeper.schedule();
+        Neo4jWarmup.schedule();
+    }
+
     @Override
     public void onApplicationStop() {
         // we stop the database
@@ -96,18 +106,30 @@ public class Neo4jPlugin extends PlayPlugin {
         }
     }
 
+    @Override
+    public String getStatus() {
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        out.println("Neo4j:");
+        out.println("~~~~~~");
+        out.println("Mode: " + (Neo4j.isRemote() ? "remote, " : "")
+                + (Neo4j.isReadOnly() ? "read-only" : "read-write"));
+        out.println("Orphan sweeper: " + Neo4jOrphanSweeper.status());
+        out.println("Warm-up: " + Neo4jWarmup.status());
+        return sw.toString();
+    }
+
     /**
      * Registers a shutdown hook for the Neo4j instance so that it shuts down nicely when the VM exits (even if you
-     * "Ctrl-C" the running example before it's completed)
-     * 
-     * @param graphDb
+     * "Ctrl-C" the running example before it's completed). The hook stops the current instance, that may have been
+     * restarted since (@see Neo4j.wipeStore).
      */
-    private static void registerShutdownHook(final GraphDatabaseService graphDb) {
+    private static void registerShutdownHook() {
         Runtime.getRuntime().addShutdownHook(new Thread() {
 
             @Override
             public void run() {
-                graphDb.shutdown();
+                Neo4j.destroy();
             }
         });
     }
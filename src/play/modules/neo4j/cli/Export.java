@@ -18,29 +18,56 @@
  */
 package play.modules.neo4j.cli;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 
 import play.Play;
 import play.db.DBPlugin;
 import play.db.jpa.JPAPlugin;
+import play.modules.neo4j.cli.export.BinaryExportWriter;
+import play.modules.neo4j.cli.export.DumpFormat;
+import play.modules.neo4j.cli.export.DumpManifest;
+import play.modules.neo4j.cli.export.ExportIds;
+import play.modules.neo4j.cli.export.ExportWriter;
+import play.modules.neo4j.cli.export.JsonLinesExportWriter;
+import play.modules.neo4j.cli.export.YmlExportWriter;
 import play.modules.neo4j.cli.export.YmlNode;
 import play.modules.neo4j.cli.export.YmlRelation;
+import play.modules.neo4j.model.Neo4jFactory;
 import play.modules.neo4j.util.Neo4j;
+import play.modules.neo4j.util.Neo4jChangeLog;
 
 public class Export {
 
-    public static Map<String, YmlNode>     nodes     = new HashMap<String, YmlNode>();
+    /**
+     * Number of exported nodes or relations between two progress messages.
+     */
+    private final static int    PROGRESS          = 10000;
 
-    public static Map<String, YmlRelation> relations = new HashMap<String, YmlRelation>();
+    /**
+     * Suffix of the relation between the root node and a model reference node (@see Neo4jFactory).
+     */
+    private final static String REFERENCE_KEYWORD = "_REF";
 
     /**
      * Export YML file method !
@@ -53,6 +80,10 @@ public class Export {
         // we retrieve parameters
         String filename = "data";
         String output = "conf/";
+        String format = "yml";
+        Boolean gzip = false;
+        String since = "";
+        Integer threads = 1;
         for (int i = 0; i < args.length; i++) {
             if (args[i].startsWith("--")) {
                 if (args[i].startsWith("--filename=")) {
@@ -61,6 +92,18 @@ public class Export {
                 if (args[i].startsWith("--output=")) {
                     output = args[i].substring(9);
                 }
+                if (args[i].startsWith("--format=")) {
+                    format = args[i].substring(9);
+                }
+                if (args[i].startsWith("--gzip")) {
+                    gzip = true;
+                }
+                if (args[i].startsWith("--since=")) {
+                    since = args[i].substring(8);
+                }
+                if (args[i].startsWith("--threads=")) {
+                    threads = Integer.valueOf(args[i].substring(10));
+                }
             }
         }
 
@@ -69,59 +112,310 @@ public class Export {
         Play.init(root, System.getProperty("play.id", ""));
         Thread.currentThread().setContextClassLoader(Play.classloader);
         Class c = Play.classloader.loadClass("play.modules.neo4j.cli.Export");
-        Method m = c.getMethod("mainWork", String.class, String.class);
-        m.invoke(c.newInstance(), filename, output);
+        Method m = c.getMethod("mainWork", String.class, String.class, String.class, Boolean.class, String.class,
+                Integer.class);
+        m.invoke(c.newInstance(), filename, output, format, gzip, since, threads);
         System.exit(0);
     }
 
-    public static void mainWork(String filename, String output) throws Exception {
+    public static void mainWork(String filename, String output, String format, Boolean gzip, String since,
+            Integer threads) throws Exception {
         new DBPlugin().onApplicationStart();
         new JPAPlugin().onApplicationStart();
 
         // initiate DB
         Neo4j.initialize();
-        // for all node
-        for (Node node : Neo4j.db().getAllNodes()) {
-            if (node.hasRelationship(Direction.INCOMING) && !node.hasProperty("CLASSNAME")
-                    && !node.hasProperty("KEY_COUNTER")) {
-                System.out.println("Adding node " + node.getId());
-                YmlNode ymlNode = new YmlNode(node);
-                nodes.put(ymlNode.id, ymlNode);
-                for (Relationship relation : node.getRelationships(Direction.OUTGOING)) {
-                    YmlRelation ymlRelation = new YmlRelation(relation);
-                    relations.put(ymlRelation.id, ymlRelation);
-                }
+        if (since.length() > 0) {
+            writeDelta(filename, output, DumpFormat.parse(format), gzip, Long.valueOf(since));
+        }
+        else {
+            long marker = Neo4jChangeLog.isEnabled() ? Neo4jChangeLog.get().marker() : -1;
+            if (threads > 1) {
+                writeSegments(filename, output, DumpFormat.parse(format), gzip, threads);
+            }
+            else {
+                writeFile(filename, output, DumpFormat.parse(format), gzip);
+            }
+            if (marker >= 0) {
+                System.out.println("Change log marker is " + marker + ", use --since=" + marker
+                        + " for the next export");
             }
         }
-        writeFile(filename, output);
         System.out.println("End of mainWork");
     }
 
     /**
-     * Method that generate the YLM file.
+     * Method that generate the dump file. Nodes and relations are written while the database is read, in two passes
+     * (nodes, then relations), so nothing is kept in memory.
+     * 
+     * @param filename file name without extension
+     * @param output
+     * @param format
+     * @param gzip
+     * @throws IOException
+     */
+    public static void writeFile(String filename, String output, DumpFormat format, boolean gzip)
+            throws IOException {
+        ExportWriter out = createWriter(filename, output, format, gzip);
+        try {
+            // We write all nodes, and keep their exported id for relations !
+            ExportIds ids = new ExportIds();
+            long nb = 0;
+            for (Node node : Neo4j.db().getAllNodes()) {
+                if (isModelNode(node)) {
+                    YmlNode ymlNode = new YmlNode(node);
+                    if (ymlNode.isModel()) {
+                        out.writeNode(ymlNode);
+                        ids.put(ymlNode);
+                        if (++nb % PROGRESS == 0) {
+                            System.out.println(nb + " nodes exported");
+                        }
+                    }
+                }
+            }
+            System.out.println(nb + " nodes exported");
+            // We write all relation !
+            nb = 0;
+            for (Node node : Neo4j.db().getAllNodes()) {
+                if (ids.contains(node.getId())) {
+                    for (Relationship relation : node.getRelationships(Direction.OUTGOING)) {
+                        out.writeRelation(new YmlRelation(relation, ids));
+                        if (++nb % PROGRESS == 0) {
+                            System.out.println(nb + " relations exported");
+                        }
+                    }
+                }
+            }
+            System.out.println(nb + " relations exported");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Method that generate a segmented dump with several threads, and its manifest (@see DumpManifest) :
+     * <ul>
+     * <li>each model class is exported by a worker into its own segment, by following the relationships of its
+     * reference node</li>
+     * <li>then exported node ids are split into <code>threads</code> ranges, and the outgoing relations of each range
+     * are exported by a worker into its own segment</li>
+     * </ul>
+     * Segments are named <code>filename-</code> followed by the class name or by <code>relations-</code> and the
+     * range number, the manifest is <code>filename.manifest</code>.
+     * 
+     * @param filename file name without extension
+     * @param output
+     * @param format
+     * @param gzip
+     * @param threads number of workers
+     * @return the manifest
+     * @throws Exception
+     */
+    public static DumpManifest writeSegments(final String filename, final String output, final DumpFormat format,
+            final boolean gzip, int threads) throws Exception {
+        DumpManifest manifest = new DumpManifest();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            // We write the extent of each model class !
+            List<Future<ExportIds>> classes = new ArrayList<Future<ExportIds>>();
+            for (Relationship root2ref : Neo4j.db().getReferenceNode().getRelationships(Direction.OUTGOING)) {
+                final Node reference = root2ref.getEndNode();
+                final String type = root2ref.getType().name();
+                if (!reference.hasProperty(Neo4jFactory.NODE_CLASS_NAME) || !type.endsWith(REFERENCE_KEYWORD)) {
+                    continue;
+                }
+                final String segment = filename + "-" + reference.getProperty(Neo4jFactory.NODE_CLASS_NAME);
+                manifest.addNodeSegment(format.fileName(segment, gzip));
+                classes.add(executor.submit(new Callable<ExportIds>() {
+
+                    @Override
+                    public ExportIds call() throws Exception {
+                        ExportIds ids = new ExportIds();
+                        long nb = 0;
+                        ExportWriter out = createWriter(segment, output, format, gzip);
+                        try {
+                            for (Relationship ref2node : reference.getRelationships(DynamicRelationshipType
+                                    .withName(type.substring(0, type.length() - REFERENCE_KEYWORD.length())),
+                                    Direction.OUTGOING)) {
+                                YmlNode ymlNode = new YmlNode(ref2node.getEndNode());
+                                if (ymlNode.isModel()) {
+                                    out.writeNode(ymlNode);
+                                    ids.put(ymlNode);
+                                    nb++;
+                                }
+                            }
+                        } finally {
+                            out.close();
+                        }
+                        System.out.println(nb + " nodes exported into " + segment);
+                        return ids;
+                    }
+                }));
+            }
+            final ExportIds ids = new ExportIds();
+            for (Future<ExportIds> future : classes) {
+                ids.putAll(get(future));
+            }
+
+            // We write relations by range of start node ids !
+            final long[] nodeIds = ids.nodeIds();
+            int nbRange = Math.max(1, Math.min(threads, nodeIds.length));
+            List<Future<Long>> ranges = new ArrayList<Future<Long>>();
+            for (int i = 0; i < nbRange; i++) {
+                final int from = (int) ((long) nodeIds.length * i / nbRange);
+                final int to = (int) ((long) nodeIds.length * (i + 1) / nbRange);
+                final String segment = filename + "-relations-" + i;
+                manifest.addRelationSegment(format.fileName(segment, gzip));
+                ranges.add(executor.submit(new Callable<Long>() {
+
+                    @Override
+                    public Long call() throws Exception {
+                        long nb = 0;
+                        ExportWriter out = createWriter(segment, output, format, gzip);
+                        try {
+                            for (int j = from; j < to; j++) {
+                                Node node = Neo4j.db().getNodeById(nodeIds[j]);
+                                for (Relationship relation : node.getRelationships(Direction.OUTGOING)) {
+                                    out.writeRelation(new YmlRelation(relation, ids));
+                                    nb++;
+                                }
+                            }
+                        } finally {
+                            out.close();
+                        }
+                        System.out.println(nb + " relations exported into " + segment);
+                        return nb;
+                    }
+                }));
+            }
+            for (Future<Long> future : ranges) {
+                get(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        manifest.write(new File(output + "/" + DumpManifest.fileName(filename)));
+        return manifest;
+    }
+
+    /**
+     * Wait for the result of a worker, and rethrow its error.
      * 
+     * @param future
+     * @return
+     * @throws Exception
+     */
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Method that generate a dump file with only the models and relations changed since a marker of the change log.
+     * Models and relation ends are written with their exported id (<code>Class_key</code>), also when they are not
+     * into the delta, and deleted models and relations are written into a <code>.deleted</code> file, with one
+     * <code>node id</code> or <code>relation from type to</code> line (tab separated) by deletion. The delta is
+     * applied to a copy of the database with <code>Fixtures.loadDelta</code> (@see DeltaImport).
+     * 
+     * @param filename file name without extension
      * @param output
+     * @param format
+     * @param gzip
+     * @param since marker of the previous export
+     * @throws IOException
+     */
+    public static void writeDelta(String filename, String output, DumpFormat format, boolean gzip, long since)
+            throws IOException {
+        Neo4jChangeLog.Changes changes = Neo4jChangeLog.get().since(since);
+        ExportWriter out = createWriter(filename, output, format, gzip);
+        try {
+            ExportIds ids = new ExportIds();
+            for (long id : changes.getNodes()) {
+                try {
+                    Node node = Neo4j.db().getNodeById(id);
+                    if (isModelNode(node)) {
+                        YmlNode ymlNode = new YmlNode(node);
+                        if (ymlNode.isModel()) {
+                            out.writeNode(ymlNode);
+                            ids.put(ymlNode);
+                        }
+                    }
+                } catch (NotFoundException e) {
+                    // deleted since the change log has been read, it will be into the next delta
+                }
+            }
+            for (long id : changes.getRelations()) {
+                try {
+                    Relationship relation = Neo4j.db().getRelationshipById(id);
+                    if (isModelNode(relation.getStartNode()) && isModelNode(relation.getEndNode())) {
+                        out.writeRelation(new YmlRelation(relation, ids));
+                    }
+                } catch (NotFoundException e) {
+                    // deleted since the change log has been read, it will be into the next delta
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Writer deleted = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(output + "/"
+                + DumpFormat.deletedFileName(format.fileName(filename, gzip)))), "UTF-8"));
+        try {
+            for (String id : changes.getDeletedModels()) {
+                deleted.write("node\t" + id + "\n");
+            }
+            for (String[] relation : changes.getDeletedModelRelations()) {
+                deleted.write("relation\t" + relation[0] + "\t" + relation[1] + "\t" + relation[2] + "\n");
+            }
+        } finally {
+            deleted.close();
+        }
+        System.out.println(changes.getNodes().length + " nodes, " + changes.getRelations().length + " relations and "
+                + (changes.getDeletedModels().size() + changes.getDeletedModelRelations().size())
+                + " deletions exported since marker " + since);
+        System.out.println("Change log marker is " + changes.getTo() + ", use --since=" + changes.getTo()
+                + " for the next export");
+    }
+
+    /**
+     * Create the file and the writer of a dump.
+     * 
      * @param filename
-     * @param myHash
+     * @param output
+     * @param format
+     * @param gzip
+     * @return
      * @throws IOException
      */
-    private static void writeFile(String filename, String output) throws IOException {
-        // we create the file
-        File file = new File(output + "/" + filename + ".yml");
-        FileOutputStream fop = new FileOutputStream(file);
-        fop.write("# Generated by logisima-play-neo4j (http://github.com/sim51/logisima-play-neo4j).\n".getBytes());
-        fop.write("# This module is a part of LogiSima (http://www.logisima.com).\n".getBytes());
-        // We write all nodes !
-        for (YmlNode ymlNode : nodes.values()) {
-            System.out.println("Generating node " + ymlNode.id);
-            fop.write(ymlNode.toYml().getBytes());
+    private static ExportWriter createWriter(String filename, String output, DumpFormat format, boolean gzip)
+            throws IOException {
+        OutputStream stream = new FileOutputStream(new File(output + "/" + format.fileName(filename, gzip)));
+        if (gzip) {
+            stream = new GZIPOutputStream(stream, 64 * 1024);
         }
-        // We write all relation !
-        for (YmlRelation ymlRelation : relations.values()) {
-            System.out.println("Generating relation " + ymlRelation.id);
-            fop.write(ymlRelation.toYml().getBytes());
+        switch (format) {
+            case JSONL:
+                return new JsonLinesExportWriter(stream);
+            case BINARY:
+                return new BinaryExportWriter(stream);
+            default:
+                return new YmlExportWriter(stream);
         }
-        fop.flush();
-        fop.close();
+    }
+
+    /**
+     * Is the node a model node (and not the root node or a model reference node) ?
+     * 
+     * @param node
+     * @return
+     */
+    private static boolean isModelNode(Node node) {
+        return node.hasRelationship(Direction.INCOMING) && !node.hasProperty("CLASSNAME")
+                && !node.hasProperty("KEY_COUNTER");
     }
 }
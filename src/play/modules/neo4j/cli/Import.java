@@ -21,6 +21,11 @@ package play.modules.neo4j.cli;
 import java.io.File;
 
 import play.Play;
+import play.modules.neo4j.cli.export.DumpFormat;
+import play.modules.neo4j.cli.export.DumpManifest;
+import play.modules.neo4j.cli.importer.BatchImportWriter;
+import play.modules.neo4j.cli.importer.DatabaseImportWriter;
+import play.modules.neo4j.cli.importer.ImportWriter;
 import play.modules.neo4j.util.Fixtures;
 import play.modules.neo4j.util.Neo4j;
 
@@ -41,25 +46,94 @@ public class Import {
         String filename = "data";
         String input = "conf";
         Boolean reset = false;
+        Boolean wipe = false;
+        Boolean batch = false;
+        Boolean stream = false;
+        int threads = 1;
+        int batchSize = 1000;
+        String format = "yml";
+        Boolean gzip = false;
+        Boolean manifest = false;
+        Boolean delta = false;
         for (int i = 0; i < args.length; i++) {
             if (args[i].startsWith("--")) {
                 if (args[i].startsWith("--filename=")) {
                     filename = args[i].substring(11);
                 }
                 if (args[i].startsWith("--input=")) {
-                    input = args[i].substring(9);
+                    input = args[i].substring(8);
                 }
                 if (args[i].startsWith("--reset")) {
                     reset = true;
                 }
+                if (args[i].startsWith("--wipe")) {
+                    wipe = true;
+                }
+                if (args[i].equals("--batch")) {
+                    batch = true;
+                }
+                if (args[i].startsWith("--stream")) {
+                    stream = true;
+                }
+                if (args[i].startsWith("--threads=")) {
+                    threads = Integer.parseInt(args[i].substring(10));
+                }
+                if (args[i].startsWith("--batchsize=")) {
+                    batchSize = Integer.parseInt(args[i].substring(12));
+                }
+                if (args[i].startsWith("--format=")) {
+                    format = args[i].substring(9);
+                }
+                if (args[i].startsWith("--gzip")) {
+                    gzip = true;
+                }
+                if (args[i].startsWith("--manifest")) {
+                    manifest = true;
+                }
+                if (args[i].startsWith("--delta")) {
+                    delta = true;
+                }
             }
         }
         Neo4j.initialize();
-        if (reset) {
+        Neo4j.checkWritable();
+        if (wipe) {
+            Fixtures.wipeDatabase();
+        }
+        else if (reset) {
             Fixtures.deleteDatabase();
         }
-        Fixtures.loadYml(filename + ".yml");
-        Neo4j.destroy();
+        if (delta) {
+            // a delta updates the models of the database by their key, so it's never written by a batch inserter
+            Fixtures.loadDelta(DumpFormat.parse(format).fileName(filename, gzip), batchSize);
+            Neo4j.destroy();
+            return;
+        }
+        ImportWriter writer;
+        if (batch) {
+            // the batch inserter needs the store for itself, so the database is stopped during the import
+            Neo4j.destroy();
+            writer = new BatchImportWriter(Play.configuration.getProperty("neo4j.path"));
+        }
+        else {
+            writer = new DatabaseImportWriter(batchSize);
+        }
+        DumpFormat dumpFormat = DumpFormat.parse(format);
+        if (manifest) {
+            Fixtures.loadManifest(DumpManifest.fileName(filename), writer, threads);
+        }
+        else if (dumpFormat != DumpFormat.YML) {
+            Fixtures.loadDump(dumpFormat.fileName(filename, gzip), writer);
+        }
+        else if (stream || threads > 1) {
+            Fixtures.streamYml(filename + ".yml", writer, !stream, threads);
+        }
+        else {
+            Fixtures.loadYml(filename + ".yml", writer);
+        }
+        if (!batch) {
+            Neo4j.destroy();
+        }
     }
 
 }
@@ -0,0 +1,116 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.export;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Export writer for the binary format. The file starts with a header (<code>MAGIC</code>, <code>VERSION</code>), then
+ * each record is an int length followed by its content, so a reader can map the file and read it sequentially :
+ * <ul>
+ * <li>node : <code>NODE</code>, id, class name, number of properties, and for each property its name and its typed
+ * value</li>
+ * <li>relation : <code>RELATION</code>, id, type, start node id, end node id</li>
+ * </ul>
+ * Strings are an int length and UTF-8 bytes, and values are encoded by <code>DumpValues</code>.
+ * 
+ * @author bsimard
+ */
+public class BinaryExportWriter implements ExportWriter {
+
+    /**
+     * Header of the file ("NEO4JDMP") and version of the format.
+     */
+    public final static long      MAGIC    = 0x4e454f344a444d50L;
+    public final static int       VERSION  = 1;
+
+    /**
+     * Record kinds.
+     */
+    public final static byte      NODE     = 1;
+    public final static byte      RELATION = 2;
+
+    private DataOutputStream      out;
+
+    /**
+     * Buffer of the current record (to know its length).
+     */
+    private ByteArrayOutputStream buffer   = new ByteArrayOutputStream(1024);
+    private DataOutputStream      record   = new DataOutputStream(buffer);
+
+    /**
+     * Constructor. It writes the header of the file.
+     * 
+     * @param stream
+     * @throws IOException
+     */
+    public BinaryExportWriter(OutputStream stream) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+        out.writeLong(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    @Override
+    public void writeNode(YmlNode node) throws IOException {
+        buffer.reset();
+        record.writeByte(NODE);
+        DumpValues.writeString(record, node.id);
+        DumpValues.writeString(record, node.getModel().getName());
+        int nb = 0;
+        for (String property : node.getNode().getPropertyKeys()) {
+            if (!property.equals("key")) {
+                nb++;
+            }
+        }
+        record.writeInt(nb);
+        for (String property : node.getNode().getPropertyKeys()) {
+            if (!property.equals("key")) {
+                DumpValues.writeString(record, property);
+                DumpValues.write(record, node.getNode().getProperty(property));
+            }
+        }
+        flushRecord();
+    }
+
+    @Override
+    public void writeRelation(YmlRelation relation) throws IOException {
+        buffer.reset();
+        record.writeByte(RELATION);
+        DumpValues.writeString(record, relation.id);
+        DumpValues.writeString(record, relation.getType());
+        DumpValues.writeString(record, relation.getFrom());
+        DumpValues.writeString(record, relation.getTo());
+        flushRecord();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void flushRecord() throws IOException {
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.export;
+
+/**
+ * Formats of a database dump.
+ * <ul>
+ * <li><code>yml</code> : the fixture format, readable and editable, but all values are strings</li>
+ * <li><code>jsonl</code> : one json object by line, with typed values</li>
+ * <li><code>binary</code> : length-prefixed records with typed values (@see BinaryExportWriter)</li>
+ * </ul>
+ * 
+ * @author bsimard
+ */
+public enum DumpFormat {
+
+    YML("yml"), JSONL("jsonl"), BINARY("bin");
+
+    /**
+     * Extension of the gzip compressed files.
+     */
+    public final static String GZIP_EXTENSION = ".gz";
+
+    private String             extension;
+
+    private DumpFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Retrieve a format by its name (like the <code>--format</code> option).
+     * 
+     * @param name
+     * @return
+     */
+    public static DumpFormat parse(String name) {
+        for (DumpFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknow dump format " + name + " (yml, jsonl or binary)");
+    }
+
+    /**
+     * Retrieve the format of a file, by its extension.
+     * 
+     * @param filename
+     * @return
+     */
+    public static DumpFormat fromFileName(String filename) {
+        String name = filename;
+        if (name.endsWith(GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        return parse(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * Name of the deletions file of a delta dump (@see Export.writeDelta) : the dump file name, without the gzip
+     * extension, followed by <code>.deleted</code>.
+     * 
+     * @param dumpFileName
+     * @return
+     */
+    public static String deletedFileName(String dumpFileName) {
+        String name = dumpFileName;
+        if (name.endsWith(GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        return name + ".deleted";
+    }
+
+    /**
+     * Name of a dump file.
+     * 
+     * @param filename file name without extension
+     * @param gzip
+     * @return
+     */
+    public String fileName(String filename, boolean gzip) {
+        return filename + "." + extension + (gzip ? GZIP_EXTENSION : "");
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.export;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Manifest of a segmented export : the list of node segments (one by model class) and relation segments (one by node
+ * id range) of the export. Segment names are relative to the folder of the manifest. All node segments have to be
+ * imported before relation segments, but segments of the same kind can be imported in parallel.
+ * 
+ * The file has one segment by line, like <code>nodes=data-models.User.jsonl</code> or
+ * <code>relations=data-relations-0.jsonl</code>. Lines beginning with <code>#</code> are comments.
+ * 
+ * @author bsimard
+ */
+public class DumpManifest {
+
+    /**
+     * Extension of a manifest file.
+     */
+    public final static String  EXTENSION        = "manifest";
+
+    private final static String NODES_KEY        = "nodes=";
+    private final static String RELATIONS_KEY    = "relations=";
+
+    private List<String>        nodeSegments     = new ArrayList<String>();
+    private List<String>        relationSegments = new ArrayList<String>();
+
+    public List<String> getNodeSegments() {
+        return nodeSegments;
+    }
+
+    public List<String> getRelationSegments() {
+        return relationSegments;
+    }
+
+    public void addNodeSegment(String name) {
+        nodeSegments.add(name);
+    }
+
+    public void addRelationSegment(String name) {
+        relationSegments.add(name);
+    }
+
+    /**
+     * Name of a manifest file.
+     * 
+     * @param filename file name without extension
+     * @return
+     */
+    public static String fileName(String filename) {
+        return filename + "." + EXTENSION;
+    }
+
+    /**
+     * Write the manifest.
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("# Generated by logisima-play-neo4j, import it with play neo4j:import --manifest\n");
+            for (String segment : nodeSegments) {
+                out.write(NODES_KEY + segment + "\n");
+            }
+            for (String segment : relationSegments) {
+                out.write(RELATIONS_KEY + segment + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read a manifest.
+     * 
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static DumpManifest read(File file) throws IOException {
+        DumpManifest manifest = new DumpManifest();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith(NODES_KEY)) {
+                    manifest.addNodeSegment(line.substring(NODES_KEY.length()));
+                }
+                else if (line.startsWith(RELATIONS_KEY)) {
+                    manifest.addRelationSegment(line.substring(RELATIONS_KEY.length()));
+                }
+                else if (line.length() > 0 && !line.startsWith("#")) {
+                    throw new IOException("Invalid line into manifest " + file.getName() + " : " + line);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return manifest;
+    }
+
+}
@@ -0,0 +1,376 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.export;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import play.modules.neo4j.exception.Neo4jPlayException;
+
+/**
+ * Typed encoding of neo4j property values for the <code>jsonl</code> and <code>binary</code> dump formats. A value is
+ * one of the neo4j property types (primitive wrappers, <code>String</code>, and their arrays), written with its type :
+ * a tag byte in binary, a <code>["type", value]</code> pair in json.
+ * 
+ * @author bsimard
+ */
+public class DumpValues {
+
+    public final static Charset   UTF8    = Charset.forName("UTF-8");
+
+    /**
+     * Type tags (an array has the tag of its elements, plus <code>ARRAY</code>).
+     */
+    private final static byte     STRING  = 1;
+    private final static byte     BOOLEAN = 2;
+    private final static byte     BYTE    = 3;
+    private final static byte     SHORT   = 4;
+    private final static byte     INT     = 5;
+    private final static byte     LONG    = 6;
+    private final static byte     FLOAT   = 7;
+    private final static byte     DOUBLE  = 8;
+    private final static byte     CHAR    = 9;
+    private final static byte     ARRAY   = (byte) 0x80;
+
+    /**
+     * Type names of the json format, by tag.
+     */
+    private final static String[] NAMES   = { null, "string", "boolean", "byte", "short", "int", "long", "float",
+            "double", "char" };
+
+    /**
+     * Element class, by tag.
+     */
+    private final static Class[]  CLASSES = { null, String.class, boolean.class, byte.class, short.class, int.class,
+            long.class, float.class, double.class, char.class };
+
+    /**
+     * Write a string (int length + UTF-8 bytes, so there is no size limit like with <code>writeUTF</code>).
+     * 
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by <code>writeString</code>.
+     * 
+     * @param in
+     * @return
+     */
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+            in.position(in.position() + length);
+        }
+        else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, UTF8);
+        }
+        return value;
+    }
+
+    /**
+     * Write a typed value in binary format.
+     * 
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void write(DataOutput out, Object value) throws IOException {
+        byte tag = tag(value);
+        out.writeByte(tag);
+        if ((tag & ARRAY) != 0) {
+            int length = Array.getLength(value);
+            out.writeInt(length);
+            for (int i = 0; i < length; i++) {
+                writeElement(out, (byte) (tag & ~ARRAY), Array.get(value, i));
+            }
+        }
+        else {
+            writeElement(out, tag, value);
+        }
+    }
+
+    /**
+     * Read a typed value written by <code>write</code>.
+     * 
+     * @param in
+     * @return
+     */
+    public static Object read(ByteBuffer in) {
+        byte tag = in.get();
+        if ((tag & ARRAY) != 0) {
+            byte elementTag = (byte) (tag & ~ARRAY);
+            int length = in.getInt();
+            Object array = Array.newInstance(CLASSES[elementTag], length);
+            for (int i = 0; i < length; i++) {
+                Array.set(array, i, readElement(in, elementTag));
+            }
+            return array;
+        }
+        return readElement(in, tag);
+    }
+
+    /**
+     * Write a typed value in json format : <code>["type", value]</code> (or <code>["type[]", [values]]</code>).
+     * 
+     * @param json
+     * @param value
+     * @throws IOException
+     */
+    public static void writeJson(JsonGenerator json, Object value) throws IOException {
+        byte tag = tag(value);
+        json.writeStartArray();
+        if ((tag & ARRAY) != 0) {
+            byte elementTag = (byte) (tag & ~ARRAY);
+            json.writeString(NAMES[elementTag] + "[]");
+            json.writeStartArray();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                writeJsonElement(json, elementTag, Array.get(value, i));
+            }
+            json.writeEndArray();
+        }
+        else {
+            json.writeString(NAMES[tag]);
+            writeJsonElement(json, tag, value);
+        }
+        json.writeEndArray();
+    }
+
+    /**
+     * Read a typed value written by <code>writeJson</code>. The parser must be on the <code>START_ARRAY</code> token.
+     * 
+     * @param json
+     * @return
+     * @throws IOException
+     */
+    public static Object readJson(JsonParser json) throws IOException {
+        json.nextToken();
+        String type = json.getText();
+        Object value;
+        if (type.endsWith("[]")) {
+            byte elementTag = tagOf(type.substring(0, type.length() - 2));
+            json.nextToken();
+            List<Object> elements = new ArrayList<Object>();
+            while (json.nextToken() != JsonToken.END_ARRAY) {
+                elements.add(readJsonElement(json, elementTag));
+            }
+            value = Array.newInstance(CLASSES[elementTag], elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                Array.set(value, i, elements.get(i));
+            }
+        }
+        else {
+            json.nextToken();
+            value = readJsonElement(json, tagOf(type));
+        }
+        json.nextToken();
+        return value;
+    }
+
+    /**
+     * Tag of a value.
+     * 
+     * @param value
+     * @return
+     */
+    private static byte tag(Object value) {
+        Class clazz = value.getClass();
+        if (clazz.isArray()) {
+            return (byte) (tag(clazz.getComponentType()) | ARRAY);
+        }
+        return tag(clazz);
+    }
+
+    /**
+     * Tag of a class (wrapper or primitive).
+     * 
+     * @param clazz
+     * @return
+     */
+    private static byte tag(Class clazz) {
+        if (clazz == String.class) {
+            return STRING;
+        }
+        if (clazz == Boolean.class || clazz == boolean.class) {
+            return BOOLEAN;
+        }
+        if (clazz == Byte.class || clazz == byte.class) {
+            return BYTE;
+        }
+        if (clazz == Short.class || clazz == short.class) {
+            return SHORT;
+        }
+        if (clazz == Integer.class || clazz == int.class) {
+            return INT;
+        }
+        if (clazz == Long.class || clazz == long.class) {
+            return LONG;
+        }
+        if (clazz == Float.class || clazz == float.class) {
+            return FLOAT;
+        }
+        if (clazz == Double.class || clazz == double.class) {
+            return DOUBLE;
+        }
+        if (clazz == Character.class || clazz == char.class) {
+            return CHAR;
+        }
+        throw new Neo4jPlayException("Type " + clazz.getName() + " is not a neo4j property type");
+    }
+
+    /**
+     * Tag of a json type name.
+     * 
+     * @param name
+     * @return
+     */
+    private static byte tagOf(String name) {
+        for (byte tag = 1; tag < NAMES.length; tag++) {
+            if (NAMES[tag].equals(name)) {
+                return tag;
+            }
+        }
+        throw new Neo4jPlayException("Unknow type " + name + " into dump");
+    }
+
+    private static void writeElement(DataOutput out, byte tag, Object value) throws IOException {
+        switch (tag) {
+            case STRING:
+                writeString(out, (String) value);
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case BYTE:
+                out.writeByte((Byte) value);
+                break;
+            case SHORT:
+                out.writeShort((Short) value);
+                break;
+            case INT:
+                out.writeInt((Integer) value);
+                break;
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            default:
+                out.writeChar((Character) value);
+        }
+    }
+
+    private static Object readElement(ByteBuffer in, byte tag) {
+        switch (tag) {
+            case STRING:
+                return readString(in);
+            case BOOLEAN:
+                return in.get() != 0;
+            case BYTE:
+                return in.get();
+            case SHORT:
+                return in.getShort();
+            case INT:
+                return in.getInt();
+            case LONG:
+                return in.getLong();
+            case FLOAT:
+                return in.getFloat();
+            case DOUBLE:
+                return in.getDouble();
+            case CHAR:
+                return in.getChar();
+            default:
+                throw new Neo4jPlayException("Unknow type tag " + tag + " into dump");
+        }
+    }
+
+    private static void writeJsonElement(JsonGenerator json, byte tag, Object value) throws IOException {
+        switch (tag) {
+            case BOOLEAN:
+                json.writeBoolean((Boolean) value);
+                break;
+            case BYTE:
+            case SHORT:
+            case INT:
+                json.writeNumber(((Number) value).intValue());
+                break;
+            case LONG:
+                json.writeNumber((Long) value);
+                break;
+            case FLOAT:
+                json.writeNumber((Float) value);
+                break;
+            case DOUBLE:
+                json.writeNumber((Double) value);
+                break;
+            default:
+                // string and char
+                json.writeString(value.toString());
+        }
+    }
+
+    private static Object readJsonElement(JsonParser json, byte tag) throws IOException {
+        switch (tag) {
+            case STRING:
+                return json.getText();
+            case BOOLEAN:
+                return json.getBooleanValue();
+            case BYTE:
+                return json.getByteValue();
+            case SHORT:
+                return json.getShortValue();
+            case INT:
+                return json.getIntValue();
+            case LONG:
+                return json.getLongValue();
+            case FLOAT:
+                return json.getFloatValue();
+            case DOUBLE:
+                return json.getDoubleValue();
+            default:
+                return json.getText().charAt(0);
+        }
+    }
+
+}
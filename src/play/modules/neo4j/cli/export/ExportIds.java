@@ -0,0 +1,158 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.export;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import play.modules.neo4j.util.LongLongHashMap;
+
+/**
+ * Node id -> exported id of the nodes written by the node pass of an export, so the relation pass doesn't have to
+ * resolve the class of each relation end. An exported id is <code>Class_key</code> : the map keeps the class index
+ * (into <code>classes</code>) and the key packed into one <code>long</code>.
+ * 
+ * @author bsimard
+ */
+public class ExportIds {
+
+    /**
+     * Bits of the key into a packed value (the class index is above).
+     */
+    private final static int     KEY_BITS    = 47;
+    private final static long    KEY_MASK    = (1L << KEY_BITS) - 1;
+
+    /**
+     * Class index of a node without key (exported with its node id), and of a node with a key that can't be packed
+     * (its exported id is into <code>others</code>).
+     */
+    private final static int     NO_KEY      = 0xFFFF;
+    private final static int     OTHER       = 0xFFFE;
+
+    private List<String>         classes     = new ArrayList<String>();
+    private LongLongHashMap      ids         = new LongLongHashMap(1024);
+    private Map<Long, String>    others      = new HashMap<Long, String>();
+
+    /**
+     * Add an exported node.
+     * 
+     * @param node
+     */
+    public void put(YmlNode node) {
+        long nodeId = node.getNode().getId();
+        Object key = node.getNode().getProperty("key", null);
+        long packed;
+        if (key instanceof Number && ((Number) key).longValue() >= 0 && ((Number) key).longValue() <= KEY_MASK) {
+            String className = node.getModel().getSimpleName();
+            int index = classes.indexOf(className);
+            if (index < 0) {
+                index = classes.size();
+                classes.add(className);
+            }
+            packed = ((long) index << KEY_BITS) | ((Number) key).longValue();
+        }
+        else if (node.id.equals("" + nodeId)) {
+            packed = (long) NO_KEY << KEY_BITS;
+        }
+        else {
+            others.put(nodeId, node.id);
+            packed = (long) OTHER << KEY_BITS;
+        }
+        ids.put(nodeId, packed);
+    }
+
+    /**
+     * Add all exported nodes of another map (like the map of another export worker).
+     * 
+     * @param other
+     */
+    public void putAll(ExportIds other) {
+        for (int slot = 0; slot < other.ids.capacity(); slot++) {
+            long nodeId = other.ids.keyAt(slot);
+            if (nodeId == LongLongHashMap.NO_VALUE) {
+                continue;
+            }
+            long packed = other.ids.valueAt(slot);
+            int index = (int) (packed >>> KEY_BITS);
+            if (index == OTHER) {
+                others.put(nodeId, other.others.get(nodeId));
+            }
+            else if (index != NO_KEY) {
+                String className = other.classes.get(index);
+                int newIndex = classes.indexOf(className);
+                if (newIndex < 0) {
+                    newIndex = classes.size();
+                    classes.add(className);
+                }
+                packed = ((long) newIndex << KEY_BITS) | (packed & KEY_MASK);
+            }
+            ids.put(nodeId, packed);
+        }
+    }
+
+    /**
+     * @return the sorted ids of all exported nodes.
+     */
+    public long[] nodeIds() {
+        long[] nodeIds = new long[ids.size()];
+        int i = 0;
+        for (int slot = 0; slot < ids.capacity(); slot++) {
+            if (ids.keyAt(slot) != LongLongHashMap.NO_VALUE) {
+                nodeIds[i++] = ids.keyAt(slot);
+            }
+        }
+        Arrays.sort(nodeIds);
+        return nodeIds;
+    }
+
+    /**
+     * Is the node exported ?
+     * 
+     * @param nodeId
+     * @return
+     */
+    public boolean contains(long nodeId) {
+        return ids.get(nodeId) != LongLongHashMap.NO_VALUE;
+    }
+
+    /**
+     * Retrieve the exported id of a node.
+     * 
+     * @param nodeId
+     * @return the exported id, or null if the node has not been exported.
+     */
+    public String get(long nodeId) {
+        long packed = ids.get(nodeId);
+        if (packed == LongLongHashMap.NO_VALUE) {
+            return null;
+        }
+        int index = (int) (packed >>> KEY_BITS);
+        if (index == NO_KEY) {
+            return "" + nodeId;
+        }
+        if (index == OTHER) {
+            return others.get(nodeId);
+        }
+        return classes.get(index) + "_" + (packed & KEY_MASK);
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.export;
+
+import java.io.IOException;
+
+/**
+ * Writer of a database dump, in one of the <code>DumpFormat</code>. Nodes are written first, then relations.
+ * 
+ * @author bsimard
+ */
+public interface ExportWriter {
+
+    /**
+     * Write a model node.
+     * 
+     * @param node
+     * @throws IOException
+     */
+    void writeNode(YmlNode node) throws IOException;
+
+    /**
+     * Write a relation between two model nodes.
+     * 
+     * @param relation
+     * @throws IOException
+     */
+    void writeRelation(YmlRelation relation) throws IOException;
+
+    /**
+     * Flush and close the underlying stream.
+     * 
+     * @throws IOException
+     */
+    void close() throws IOException;
+
+}
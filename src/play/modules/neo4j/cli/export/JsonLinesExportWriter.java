@@ -0,0 +1,99 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+/**
+ * Export writer for the jsonl format : one json object by line.
+ * 
+ * <pre>
+ * {"node":"User_1","class":"models.User","properties":{"login":["string","ben"],"age":["int",28]}}
+ * {"relation":"12","type":"IS_A_COLLEAGE","from":"User_1","to":"User_2"}
+ * </pre>
+ * 
+ * Values are typed (@see DumpValues), and dates or files keep their neo4j format.
+ * 
+ * @author bsimard
+ */
+public class JsonLinesExportWriter implements ExportWriter {
+
+    private Writer        out;
+    private JsonGenerator json;
+
+    /**
+     * Constructor.
+     * 
+     * @param stream
+     * @throws IOException
+     */
+    public JsonLinesExportWriter(OutputStream stream) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), 64 * 1024);
+        this.json = new JsonFactory().createJsonGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    public void writeNode(YmlNode node) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("node", node.id);
+        json.writeStringField("class", node.getModel().getName());
+        json.writeObjectFieldStart("properties");
+        for (String property : node.getNode().getPropertyKeys()) {
+            Object value = node.getNode().getProperty(property, null);
+            if (value != null && !property.equals("key")) {
+                json.writeFieldName(property);
+                DumpValues.writeJson(json, value);
+            }
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+        endLine();
+    }
+
+    @Override
+    public void writeRelation(YmlRelation relation) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("relation", relation.id);
+        json.writeStringField("type", relation.getType());
+        json.writeStringField("from", relation.getFrom());
+        json.writeStringField("to", relation.getTo());
+        json.writeEndObject();
+        endLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+        out.close();
+    }
+
+    private void endLine() throws IOException {
+        json.flush();
+        out.write('\n');
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Export writer for the yml format.
+ * 
+ * @author bsimard
+ */
+public class YmlExportWriter implements ExportWriter {
+
+    private Writer out;
+
+    /**
+     * Constructor. It writes the header of the file.
+     * 
+     * @param stream
+     * @throws IOException
+     */
+    public YmlExportWriter(OutputStream stream) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), 64 * 1024);
+        out.write("# Generated by logisima-play-neo4j (http://github.com/sim51/logisima-play-neo4j).\n");
+        out.write("# This module is a part of LogiSima (http://www.logisima.com).\n");
+    }
+
+    @Override
+    public void writeNode(YmlNode node) throws IOException {
+        node.writeYml(out);
+    }
+
+    @Override
+    public void writeRelation(YmlRelation relation) throws IOException {
+        relation.writeYml(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
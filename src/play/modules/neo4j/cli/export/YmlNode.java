@@ -18,6 +18,9 @@
  */
 package play.modules.neo4j.cli.export;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import play.modules.neo4j.util.Neo4jUtils;
 
 public class YmlNode {
@@ -35,8 +38,7 @@ public class YmlNode {
         this.dbNode = node;
         this.model = Neo4jUtils.getClassNameFromNode(node);
         // getting the key value of the object
-        if (dbNode.getProperty("key", null) != null) {
-            System.out.println("Model class name " + model.getSimpleName());
+        if (model != null && dbNode.getProperty("key", null) != null) {
             id = model.getSimpleName() + "_" + dbNode.getProperty("key").toString();
         }
         else {
@@ -45,23 +47,66 @@ public class YmlNode {
     }
 
     /**
-     * Convert <code>dbNode</code> to YML format.
+     * Is the node a model node ?
      * 
-     * @return an yml string that represent the <code>dbNode</code>.
+     * @return
      */
-    public String toYml() {
-        String yml = "";
-        if (id != null) {
-            System.out.println("Generate yml for node " + id);
-            yml = "\n" + model.getSimpleName() + "(" + id + "):";
-            // export all atributes, except key
-            for (String property : dbNode.getPropertyKeys()) {
-                if (dbNode.getProperty(property, null) != null && !property.equals("key")) {
-                    yml += "\n " + property + ": '" + dbNode.getProperty(property) + "'";
-                }
+    public boolean isModel() {
+        return model != null;
+    }
+
+    public Class getModel() {
+        return model;
+    }
+
+    public org.neo4j.graphdb.Node getNode() {
+        return dbNode;
+    }
+
+    /**
+     * Write <code>dbNode</code> in YML format. Nothing is written if it's not a model node.
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void writeYml(Writer out) throws IOException {
+        if (model == null) {
+            return;
+        }
+        out.write("\n");
+        out.write(model.getSimpleName());
+        out.write("(");
+        out.write(id);
+        out.write("):");
+        // export all atributes, except key
+        for (String property : dbNode.getPropertyKeys()) {
+            Object value = dbNode.getProperty(property, null);
+            if (value != null && !property.equals("key")) {
+                out.write("\n ");
+                out.write(property);
+                out.write(": '");
+                writeQuoted(out, value.toString());
+                out.write("'");
             }
-            yml += "\n";
         }
-        return yml;
+        out.write("\n");
+    }
+
+    /**
+     * Write a value of a single-quoted yml scalar : a quote is escaped by doubling it.
+     * 
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    private static void writeQuoted(Writer out, String value) throws IOException {
+        int from = 0;
+        int quote;
+        while ((quote = value.indexOf('\'', from)) >= 0) {
+            out.write(value, from, quote + 1 - from);
+            out.write('\'');
+            from = quote + 1;
+        }
+        out.write(value, from, value.length() - from);
     }
 }
@@ -18,38 +18,75 @@
  */
 package play.modules.neo4j.cli.export;
 
+import java.io.IOException;
+import java.io.Writer;
+
+import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 
 public class YmlRelation {
 
-    public String   id;
-    private YmlNode startNode;
-    private YmlNode endNode;
-    private String  relationName;
+    public String  id;
+    private String from;
+    private String to;
+    private String relationName;
 
     /**
      * Constructor.
+     * 
+     * @param relation
+     * @param ids exported ids of the node pass, to not resolve again the class of the start and end nodes.
      */
-    public YmlRelation(Relationship relation) {
+    public YmlRelation(Relationship relation, ExportIds ids) {
         this.id = "" + relation.getId();
-        this.startNode = new YmlNode(relation.getStartNode());
-        this.endNode = new YmlNode(relation.getEndNode());
+        this.from = exportedId(relation.getStartNode(), ids);
+        this.to = exportedId(relation.getEndNode(), ids);
         this.relationName = relation.getType().name();
     }
 
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getType() {
+        return relationName;
+    }
+
+    /**
+     * Write <code>Relation</code> in YML format.
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void writeYml(Writer out) throws IOException {
+        out.write("\nRelation(");
+        out.write(id);
+        out.write("):\n type: ");
+        out.write(relationName);
+        out.write("\n from: ");
+        out.write(from);
+        out.write("\n to: ");
+        out.write(to);
+        out.write("\n");
+    }
+
     /**
-     * Convert <code>Relation</code> to YML format.
+     * Retrieve the exported id of a node from the node pass, or compute it if the node has not been exported.
      * 
-     * @return an yml string that represent the <code>Relation</code>.
+     * @param node
+     * @param ids
+     * @return
      */
-    public String toYml() {
-        System.out.println("Generate yml for relation " + id);
-        String yml = "\nRelation(" + this.id + "):";
-        yml += "\n type: " + relationName;
-        yml += "\n from: " + startNode.id;
-        yml += "\n to: " + endNode.id;
-        yml += "\n";
-        return yml;
+    private static String exportedId(Node node, ExportIds ids) {
+        String exportedId = ids.get(node.getId());
+        if (exportedId == null) {
+            exportedId = new YmlNode(node).id;
+        }
+        return exportedId;
     }
 
 }
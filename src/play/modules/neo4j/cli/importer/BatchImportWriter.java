@@ -0,0 +1,259 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserterIndex;
+import org.neo4j.unsafe.batchinsert.BatchInserterIndexProvider;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.neo4j.unsafe.batchinsert.BatchRelationship;
+import org.neo4j.unsafe.batchinsert.LuceneBatchInserterIndexProvider;
+
+import play.Logger;
+import play.libs.Files;
+import play.modules.neo4j.annotation.Neo4jRelatedTo;
+import play.modules.neo4j.annotation.Neo4jUniqueRelation;
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jFactory;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.Binder;
+import play.modules.neo4j.util.Neo4jUtils;
+
+/**
+ * Import writer that writes directly into the store files with the neo4j <code>BatchInserter</code> : there is no
+ * transaction, so it's a lot faster than <code>save()</code> for a large import. The database must be stopped during
+ * the import.
+ * 
+ * The store is the same as with <code>Neo4jFactory</code> : each model node has a <code>key</code> from the counter of
+ * its class reference node, is linked to this reference node, and is indexed like with <code>save()</code>. Only
+ * properties are written for models, relationships come from <code>Relation</code> entries.
+ * 
+ * @author bsimard
+ */
+public class BatchImportWriter implements ImportWriter {
+
+    /**
+     * Suffix of the relation between the root node and a model reference node (@see Neo4jFactory).
+     */
+    private final static String             REFERENCE_KEYWORD = "_REF";
+
+    private String                          path;
+    private BatchInserter                   inserter;
+    private BatchInserterIndexProvider      indexProvider;
+
+    /**
+     * Reference node id and key counter, by class name.
+     */
+    private Map<String, Long>               references        = new HashMap<String, Long>();
+    private Map<String, Long>               counters          = new HashMap<String, Long>();
+
+    /**
+     * Opened indexes, by name.
+     */
+    private Map<String, BatchInserterIndex> indexes           = new HashMap<String, BatchInserterIndex>();
+
+    /**
+     * Properties fields of models, by class.
+     */
+    private Map<Class, List<Field>>         fields            = new HashMap<Class, List<Field>>();
+
+    private long                            nbModel           = 0;
+    private long                            nbRelation        = 0;
+
+    /**
+     * Constructor. It opens the store, and reads the existing class reference nodes.
+     * 
+     * @param path path of the database
+     */
+    public BatchImportWriter(String path) {
+        this.path = path;
+        this.inserter = BatchInserters.inserter(path);
+        this.indexProvider = new LuceneBatchInserterIndexProvider(inserter);
+        long root = inserter.getReferenceNode();
+        for (BatchRelationship relation : inserter.getRelationships(root)) {
+            String type = relation.getType().name();
+            if (relation.getStartNode() == root && type.endsWith(REFERENCE_KEYWORD)) {
+                String className = type.substring(0, type.length() - REFERENCE_KEYWORD.length());
+                Object counter = inserter.getNodeProperties(relation.getEndNode()).get(Neo4jFactory.NODE_KEY_COUNTER);
+                references.put(className, relation.getEndNode());
+                counters.put(className, (counter == null) ? 1L : (Long) counter);
+            }
+        }
+    }
+
+    @Override
+    public long writeModel(Neo4jModel model) throws Neo4jException {
+        Class clazz = model.getClass();
+        String className = clazz.getSimpleName().toUpperCase();
+        long reference = reference(clazz, className);
+        try {
+            // node with its key
+            Long key = counters.get(className);
+            counters.put(className, key + 1);
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put("key", key);
+            for (Field field : fields(clazz)) {
+                Object value = field.get(model);
+                if (value != null) {
+                    properties.put(field.getName(), Binder.bindToNeo4jFormat(value, field.getType()));
+                }
+            }
+            long node = inserter.createNode(properties);
+            inserter.createRelationship(reference, node, DynamicRelationshipType.withName(className), null);
+
+            // indexes, with the same values as Neo4jFactory
+            for (Field field : clazz.getFields()) {
+                if (Neo4jUtils.isIndexedField(field)) {
+                    Object value = field.getName().equals("key") ? key : field.get(model);
+                    if (value != null) {
+                        index(clazz, field).add(node, MapUtil.map(field.getName(), value.toString()));
+                    }
+                }
+            }
+            nbModel++;
+            if (nbModel % 100000 == 0) {
+                Logger.info("Batch import : %s models and %s relations written", nbModel, nbRelation);
+            }
+            return node;
+        } catch (IllegalAccessException e) {
+            throw new Neo4jException(e);
+        }
+    }
+
+    @Override
+    public void writeRelation(long from, long to, String type) throws Neo4jException {
+        inserter.createRelationship(from, to, DynamicRelationshipType.withName(type), null);
+        nbRelation++;
+    }
+
+    @Override
+    public void close() {
+        if (inserter == null) {
+            return;
+        }
+        shutdown();
+        Logger.info("Batch import is done : %s models and %s relations written", nbModel, nbRelation);
+    }
+
+    /**
+     * A batch insert can't be rollbacked : the store is released like with <code>close()</code>, and it keeps what is
+     * already written.
+     */
+    @Override
+    public void abort() {
+        if (inserter == null) {
+            return;
+        }
+        shutdown();
+        Logger.warn("Batch import has failed : the %s models and %s relations already written are kept", nbModel,
+                nbRelation);
+    }
+
+    /**
+     * Write the key counters, and shutdown the inserter.
+     */
+    private void shutdown() {
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            inserter.setNodeProperty(references.get(counter.getKey()), Neo4jFactory.NODE_KEY_COUNTER,
+                    counter.getValue());
+        }
+        indexProvider.shutdown();
+        inserter.shutdown();
+        inserter = null;
+        // key maps doesn't know the new nodes, so they will be rebuilt at startup
+        File keymap = new File(path, "keymap");
+        if (keymap.exists()) {
+            Files.deleteDirectory(keymap);
+        }
+    }
+
+    /**
+     * Retrieve (and create it if needed) the reference node of a model class.
+     * 
+     * @param clazz
+     * @param className
+     * @return
+     */
+    private long reference(Class clazz, String className) {
+        Long reference = references.get(className);
+        if (reference == null) {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put(Neo4jFactory.NODE_KEY_COUNTER, new Long(1));
+            properties.put(Neo4jFactory.NODE_CLASS_NAME, clazz.getName());
+            reference = inserter.createNode(properties);
+            inserter.createRelationship(inserter.getReferenceNode(), reference,
+                    DynamicRelationshipType.withName(className + REFERENCE_KEYWORD), null);
+            references.put(className, reference);
+            counters.put(className, 1L);
+        }
+        return reference;
+    }
+
+    /**
+     * Retrieve the property fields of a model class (like <code>Neo4jFactory.saveAndIndex</code>).
+     * 
+     * @param clazz
+     * @return
+     */
+    private List<Field> fields(Class clazz) {
+        List<Field> properties = fields.get(clazz);
+        if (properties == null) {
+            properties = new ArrayList<Field>();
+            for (Field field : clazz.getFields()) {
+                if (!field.getName().equals("node") && !field.getName().equals("shouldBeSave")
+                        && !field.getName().equals("$toString0") && !field.getName().equals("key")
+                        && !Modifier.isStatic(field.getModifiers())
+                        && !field.isAnnotationPresent(Neo4jRelatedTo.class)
+                        && !field.isAnnotationPresent(Neo4jUniqueRelation.class)) {
+                    properties.add(field);
+                }
+            }
+            fields.put(clazz, properties);
+        }
+        return properties;
+    }
+
+    /**
+     * Retrieve (and open it if needed) the index of a field.
+     * 
+     * @param clazz
+     * @param field
+     * @return
+     */
+    private BatchInserterIndex index(Class clazz, Field field) {
+        String indexName = Neo4jUtils.getIndexName(clazz.getSimpleName(), field);
+        BatchInserterIndex index = indexes.get(indexName);
+        if (index == null) {
+            index = indexProvider.nodeIndex(indexName, Neo4jUtils.getLuceneConfigParam(field));
+            indexes.put(indexName, index);
+        }
+        return index;
+    }
+
+}
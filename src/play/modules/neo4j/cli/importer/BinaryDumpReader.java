@@ -0,0 +1,203 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import play.modules.neo4j.cli.export.BinaryExportWriter;
+import play.modules.neo4j.cli.export.DumpValues;
+import play.modules.neo4j.exception.Neo4jPlayException;
+
+/**
+ * Reader of a <code>binary</code> dump (@see BinaryExportWriter). An uncompressed file is read sequentially through
+ * memory-mapped windows of the file, a gzip one through a buffered stream.
+ * 
+ * @author bsimard
+ */
+public class BinaryDumpReader implements DumpReader {
+
+    /**
+     * Default size of a mapped window of the file.
+     */
+    public final static long  WINDOW = 64L * 1024 * 1024;
+
+    /**
+     * Gzip mode.
+     */
+    private DataInputStream   stream;
+
+    /**
+     * Mapped mode.
+     */
+    private RandomAccessFile  file;
+    private FileChannel       channel;
+    private MappedByteBuffer  window;
+    private long              windowSize;
+    private long              windowStart;
+    private long              position;
+    private long              size;
+
+    /**
+     * Constructor. It checks the header of the file.
+     * 
+     * @param dump
+     * @param gzip
+     * @throws IOException
+     */
+    public BinaryDumpReader(File dump, boolean gzip) throws IOException {
+        this(dump, gzip, WINDOW);
+    }
+
+    /**
+     * Constructor. It checks the header of the file.
+     * 
+     * @param dump
+     * @param gzip
+     * @param windowSize size of a mapped window of an uncompressed file (a record larger than it has its own window)
+     * @throws IOException
+     */
+    public BinaryDumpReader(File dump, boolean gzip, long windowSize) throws IOException {
+        this.windowSize = windowSize;
+        ByteBuffer header;
+        if (gzip) {
+            stream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(dump),
+                    64 * 1024)));
+            byte[] bytes = new byte[12];
+            stream.readFully(bytes);
+            header = ByteBuffer.wrap(bytes);
+        }
+        else {
+            file = new RandomAccessFile(dump, "r");
+            channel = file.getChannel();
+            size = channel.size();
+            header = read(12);
+        }
+        if (header.getLong() != BinaryExportWriter.MAGIC) {
+            throw new Neo4jPlayException(dump.getName() + " is not a neo4j binary dump");
+        }
+        int version = header.getInt();
+        if (version != BinaryExportWriter.VERSION) {
+            throw new Neo4jPlayException("Unsupported binary dump version " + version);
+        }
+    }
+
+    @Override
+    public DumpRecord next() throws IOException {
+        ByteBuffer in = nextRecord();
+        if (in == null) {
+            return null;
+        }
+        DumpRecord record = new DumpRecord();
+        byte kind = in.get();
+        record.id = DumpValues.readString(in);
+        if (kind == BinaryExportWriter.NODE) {
+            record.className = DumpValues.readString(in);
+            int nb = in.getInt();
+            for (int i = 0; i < nb; i++) {
+                String property = DumpValues.readString(in);
+                record.properties.put(property, DumpValues.read(in));
+            }
+        }
+        else if (kind == BinaryExportWriter.RELATION) {
+            record.relation = true;
+            record.type = DumpValues.readString(in);
+            record.from = DumpValues.readString(in);
+            record.to = DumpValues.readString(in);
+        }
+        else {
+            throw new Neo4jPlayException("Unknow record kind " + kind + " into binary dump");
+        }
+        return record;
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(stream);
+        if (file != null) {
+            window = null;
+            try {
+                channel.close();
+                file.close();
+            } catch (IOException e) {
+                // nothing to do, the file is only read
+            }
+        }
+    }
+
+    /**
+     * Read the content of the next record.
+     * 
+     * @return the record content, or null at the end of the file.
+     * @throws IOException
+     */
+    private ByteBuffer nextRecord() throws IOException {
+        if (stream != null) {
+            int length;
+            try {
+                length = stream.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            stream.readFully(bytes);
+            return ByteBuffer.wrap(bytes);
+        }
+        if (position >= size) {
+            return null;
+        }
+        int length = read(4).getInt();
+        return read(length);
+    }
+
+    /**
+     * Read the next bytes of the mapped file, and move the window if they are not into the current one.
+     * 
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    private ByteBuffer read(int length) throws IOException {
+        if (position + length > size) {
+            throw new EOFException("Binary dump is truncated");
+        }
+        if (window == null || position + length > windowStart + window.capacity()) {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(size - position, Math.max(windowSize, length)));
+        }
+        ByteBuffer bytes = window.duplicate();
+        bytes.position((int) (position - windowStart));
+        bytes.limit((int) (position - windowStart) + length);
+        position += length;
+        return bytes.slice();
+    }
+
+}
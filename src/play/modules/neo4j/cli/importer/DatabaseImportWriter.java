@@ -0,0 +1,136 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.Neo4j;
+
+/**
+ * Import writer that stores models with <code>save()</code>, into the running database. Models and relations are
+ * commited by batch : <code>save()</code> joins the transaction of the batch, so there is one commit for
+ * <code>batchSize</code> writes instead of one by model. A transaction is bound to a thread, so a writer must be used
+ * (and closed) by only one thread.
+ * 
+ * @author bsimard
+ */
+public class DatabaseImportWriter implements ImportWriter {
+
+    private int         batchSize;
+    private Transaction tx;
+    private int         nbInTx = 0;
+
+    /**
+     * Constructor, with one commit by write.
+     */
+    public DatabaseImportWriter() {
+        this(1);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param batchSize number of writes by transaction
+     */
+    public DatabaseImportWriter(int batchSize) {
+        Neo4j.checkWritable();
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public long writeModel(Neo4jModel model) throws Neo4jException {
+        begin();
+        try {
+            model.save();
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        } catch (Neo4jException e) {
+            rollback();
+            throw e;
+        }
+        long id = model.getNode().getId();
+        commitIfFull();
+        return id;
+    }
+
+    @Override
+    public void writeRelation(long from, long to, String type) throws Neo4jException {
+        begin();
+        GraphDatabaseService graphDb = Neo4j.db();
+        try {
+            graphDb.getNodeById(from).createRelationshipTo(graphDb.getNodeById(to),
+                    DynamicRelationshipType.withName(type));
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+        commitIfFull();
+    }
+
+    @Override
+    public void close() {
+        if (tx != null) {
+            tx.success();
+            tx.finish();
+            tx = null;
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (tx != null) {
+            rollback();
+        }
+    }
+
+    /**
+     * Begin a transaction if there is no current batch.
+     */
+    private void begin() {
+        if (tx == null) {
+            tx = Neo4j.db().beginTx();
+            nbInTx = 0;
+        }
+    }
+
+    /**
+     * Commit the current batch if it's full.
+     */
+    private void commitIfFull() {
+        nbInTx++;
+        if (nbInTx >= batchSize) {
+            close();
+        }
+    }
+
+    /**
+     * Rollback the current batch.
+     */
+    private void rollback() {
+        tx.failure();
+        tx.finish();
+        tx = null;
+    }
+
+}
@@ -0,0 +1,323 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+import play.Logger;
+import play.Play;
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jFactory;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.Neo4j;
+import play.modules.neo4j.util.Neo4jUtils;
+
+/**
+ * Import of a delta export (made by <code>play neo4j:export --since</code>, @see Export.writeDelta) into a copy of the
+ * exported database :
+ * <ul>
+ * <li>deleted relations, then deleted models, of the <code>.deleted</code> file are deleted</li>
+ * <li>models are updated, or created with their key (@see Neo4jFactory.saveWithKey)</li>
+ * <li>relations are created, unless the same relation already exists</li>
+ * </ul>
+ * Models and relation ends are found by their exported id <code>Class_key</code>, so the copy must have the keys of
+ * the exported database : it must be loaded with this import too (a full export is a delta without deletion). Writes
+ * are commited by batch, like with <code>DatabaseImportWriter</code>, so the import is used (and closed) by only one
+ * thread.
+ * 
+ * @author bsimard
+ */
+public class DeltaImport {
+
+    private String             name;
+    private int                batchSize;
+    private Map<String, Class> classes    = new HashMap<String, Class>();
+    private Transaction        tx;
+    private int                nbInTx     = 0;
+    private long               nbModel    = 0;
+    private long               nbRelation = 0;
+    private long               nbDeletion = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param name name of the delta (for messages)
+     * @param batchSize number of writes by transaction
+     */
+    public DeltaImport(String name, int batchSize) {
+        Neo4j.checkWritable();
+        this.name = name;
+        this.batchSize = Math.max(1, batchSize);
+        for (Class clazz : Play.classloader.getAssignableClasses(Neo4jModel.class)) {
+            classes.put(clazz.getSimpleName(), clazz);
+        }
+    }
+
+    /**
+     * Apply the deletions of a <code>.deleted</code> file : relations, then models.
+     * 
+     * @param deleted
+     * @throws Exception
+     */
+    public void delete(BufferedReader deleted) throws Exception {
+        List<String> models = new ArrayList<String>();
+        String line;
+        while ((line = deleted.readLine()) != null) {
+            String[] fields = line.split("\t");
+            if (fields.length == 4 && fields[0].equals("relation")) {
+                begin();
+                try {
+                    Relationship relation = find(node(fields[1]), node(fields[3]), fields[2]);
+                    if (relation != null) {
+                        relation.delete();
+                    }
+                } catch (Exception e) {
+                    rollback();
+                    throw e;
+                }
+                nbDeletion++;
+                commitIfFull();
+            }
+            else if (fields.length == 2 && fields[0].equals("node")) {
+                models.add(fields[1]);
+            }
+            else if (line.length() > 0) {
+                throw new Neo4jException("Invalid deletion '" + line + "' into " + name);
+            }
+        }
+        for (String id : models) {
+            begin();
+            try {
+                Node node = node(id);
+                if (node != null) {
+                    Neo4jModel model = Neo4jModel.getByNode(node);
+                    new Neo4jFactory(model.getClass()).forceDelete(model);
+                }
+            } catch (Exception e) {
+                rollback();
+                throw e;
+            }
+            nbDeletion++;
+            commitIfFull();
+        }
+    }
+
+    /**
+     * Apply the models and relations of a <code>jsonl</code> or <code>binary</code> delta.
+     * 
+     * @param reader
+     * @throws Exception
+     */
+    public void apply(DumpReader reader) throws Exception {
+        DumpRecord record;
+        while ((record = reader.next()) != null) {
+            if (record.relation) {
+                writeRelation(record.from, record.to, record.type);
+            }
+            else {
+                writeModel(record.id, record.toModel());
+            }
+        }
+    }
+
+    /**
+     * Apply the models and relations of a <code>yml</code> delta.
+     * 
+     * @param entries
+     * @throws Exception
+     */
+    public void apply(YmlEntryReader entries) throws Exception {
+        YmlEntry entry;
+        while ((entry = entries.next()) != null) {
+            if (!entry.isValid()) {
+                continue;
+            }
+            if (entry.isRelation()) {
+                String[] relation = entry.toRelation();
+                writeRelation(relation[0], relation[1], relation[2]);
+            }
+            else {
+                writeModel(entry.getId(), entry.toModel());
+            }
+        }
+    }
+
+    /**
+     * Commit the last batch. Calling it more than once has no effect.
+     */
+    public void close() {
+        if (tx != null) {
+            tx.success();
+            tx.finish();
+            tx = null;
+        }
+        Logger.info("Delta %s is applied : %s models, %s relations and %s deletions", name, nbModel, nbRelation,
+                nbDeletion);
+    }
+
+    /**
+     * Update a model, or create it with its key.
+     * 
+     * @param id exported id
+     * @param model
+     * @throws Exception
+     */
+    private void writeModel(String id, Neo4jModel model) throws Exception {
+        begin();
+        try {
+            model.setKey(key(id, model.getClass()));
+            new Neo4jFactory(model.getClass()).saveWithKey(model);
+        } catch (Exception e) {
+            rollback();
+            throw e;
+        }
+        nbModel++;
+        commitIfFull();
+    }
+
+    /**
+     * Create a relation, unless it already exists.
+     * 
+     * @param from exported id of the start model
+     * @param to exported id of the end model
+     * @param type
+     * @throws Exception
+     */
+    private void writeRelation(String from, String to, String type) throws Exception {
+        begin();
+        try {
+            Node start = node(from);
+            Node end = node(to);
+            if (start == null || end == null) {
+                throw new Neo4jException("Relation dependency not valid : unabled to find " + from + " and " + to
+                        + " into the database !");
+            }
+            if (find(start, end, type) == null) {
+                start.createRelationshipTo(end, DynamicRelationshipType.withName(type));
+            }
+        } catch (Exception e) {
+            rollback();
+            throw e;
+        }
+        nbRelation++;
+        commitIfFull();
+    }
+
+    /**
+     * Find a relation between two nodes.
+     * 
+     * @param start
+     * @param end
+     * @param type
+     * @return the relation, or null if it doesn't exist (or if a node doesn't exist).
+     */
+    private Relationship find(Node start, Node end, String type) {
+        if (start == null || end == null) {
+            return null;
+        }
+        RelationshipType relationType = DynamicRelationshipType.withName(type);
+        for (Relationship relation : start.getRelationships(relationType, Direction.OUTGOING)) {
+            if (relation.getEndNode().equals(end)) {
+                return relation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the node of a model by its exported id.
+     * 
+     * @param id exported id
+     * @return the node, or null if it doesn't exist.
+     * @throws Neo4jException
+     */
+    private Node node(String id) throws Neo4jException {
+        int separator = id.lastIndexOf('_');
+        Class clazz = separator > 0 ? classes.get(id.substring(0, separator)) : null;
+        if (clazz == null) {
+            throw new Neo4jException(id + " into " + name + " is not the exported id of a model (Class_key)");
+        }
+        return new Neo4jFactory(clazz).getByKey(key(id, clazz),
+                Neo4jUtils.getIndexName(clazz.getSimpleName(), "key"));
+    }
+
+    /**
+     * Retrieve the key of an exported id.
+     * 
+     * @param id exported id
+     * @param clazz class of the model
+     * @return
+     * @throws Neo4jException
+     */
+    private Long key(String id, Class clazz) throws Neo4jException {
+        String prefix = clazz.getSimpleName() + "_";
+        try {
+            if (id.startsWith(prefix)) {
+                return Long.valueOf(id.substring(prefix.length()));
+            }
+        } catch (NumberFormatException e) {
+            // not an exported id
+        }
+        throw new Neo4jException(id + " into " + name + " is not the exported id of a " + clazz.getSimpleName()
+                + " (Class_key)");
+    }
+
+    /**
+     * Begin a transaction if there is no current batch.
+     */
+    private void begin() {
+        if (tx == null) {
+            tx = Neo4j.db().beginTx();
+            nbInTx = 0;
+        }
+    }
+
+    /**
+     * Commit the current batch if it's full.
+     */
+    private void commitIfFull() {
+        nbInTx++;
+        if (nbInTx >= batchSize) {
+            tx.success();
+            tx.finish();
+            tx = null;
+        }
+    }
+
+    /**
+     * Rollback the current batch.
+     */
+    private void rollback() {
+        tx.failure();
+        tx.finish();
+        tx = null;
+    }
+
+}
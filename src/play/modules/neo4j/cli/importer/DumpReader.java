@@ -0,0 +1,43 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.IOException;
+
+/**
+ * Sequential reader of a <code>jsonl</code> or <code>binary</code> dump.
+ * 
+ * @author bsimard
+ */
+public interface DumpReader {
+
+    /**
+     * Read the next record.
+     * 
+     * @return the record, or null at the end of the dump.
+     * @throws IOException
+     */
+    DumpRecord next() throws IOException;
+
+    /**
+     * Release the file.
+     */
+    void close();
+
+}
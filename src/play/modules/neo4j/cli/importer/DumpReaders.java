@@ -0,0 +1,82 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+import play.modules.neo4j.cli.export.DumpFormat;
+import play.modules.neo4j.exception.Neo4jPlayException;
+
+/**
+ * Factory of dump readers : the format of a dump and its compression are given by the extension of its file (@see
+ * DumpFormat).
+ * 
+ * @author bsimard
+ */
+public class DumpReaders {
+
+    /**
+     * Size of the buffer of a gzip stream.
+     */
+    private final static int GZIP_BUFFER = 64 * 1024;
+
+    /**
+     * Open a <code>jsonl</code> or <code>binary</code> dump.
+     * 
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static DumpReader open(File file) throws IOException {
+        DumpFormat format = DumpFormat.fromFileName(file.getName());
+        if (format == DumpFormat.BINARY) {
+            return new BinaryDumpReader(file, isGzip(file));
+        }
+        if (format == DumpFormat.JSONL) {
+            return new JsonLinesDumpReader(text(file));
+        }
+        throw new Neo4jPlayException(file.getName() + " is not a jsonl or binary dump");
+    }
+
+    /**
+     * Open a text dump (<code>yml</code> or <code>jsonl</code>), and uncompress it if it's gzipped.
+     * 
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static BufferedReader text(File file) throws IOException {
+        InputStream stream = new FileInputStream(file);
+        if (isGzip(file)) {
+            stream = new GZIPInputStream(stream, GZIP_BUFFER);
+        }
+        return new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+    }
+
+    private static boolean isGzip(File file) {
+        return file.getName().endsWith(DumpFormat.GZIP_EXTENSION);
+    }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import play.Play;
+import play.modules.neo4j.exception.Neo4jPlayException;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.Binder;
+
+/**
+ * A record of a <code>jsonl</code> or <code>binary</code> dump : a model node with its typed properties, or a relation.
+ * 
+ * @author bsimard
+ */
+public class DumpRecord {
+
+    public boolean             relation   = false;
+    public String              id;
+
+    /**
+     * Node record.
+     */
+    public String              className;
+    public Map<String, Object> properties = new LinkedHashMap<String, Object>();
+
+    /**
+     * Relation record.
+     */
+    public String              type;
+    public String              from;
+    public String              to;
+
+    /**
+     * Create the model of a node record (without saving it). Properties are in neo4j format, so they are set directly
+     * into the fields, without string conversion.
+     * 
+     * @return
+     * @throws Exception
+     */
+    public Neo4jModel toModel() throws Exception {
+        Class clazz = Play.classloader.loadClass(className);
+        Constructor constructor = clazz.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        Neo4jModel model = (Neo4jModel) constructor.newInstance();
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            Field field;
+            try {
+                field = clazz.getField(property.getKey());
+            } catch (NoSuchFieldException e) {
+                throw new Neo4jPlayException("Property " + property.getKey() + " can't be found into Neo4jModel "
+                        + clazz.getSimpleName());
+            }
+            field.set(model, Binder.bindFromNeo4jFormat(property.getValue(), field.getType()));
+        }
+        return model;
+    }
+
+}
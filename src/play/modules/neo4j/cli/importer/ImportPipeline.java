@@ -0,0 +1,228 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.io.IOUtils;
+
+import play.Logger;
+import play.modules.neo4j.cli.importer.ImportStages.Bound;
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.util.StringLongHashMap;
+
+/**
+ * Multi-threaded import of an yml file. Stages are connected by bounded queues :
+ * <ul>
+ * <li>the parser (the calling thread) reads entries, sends models to the binders, and spools relations into a
+ * temporary file</li>
+ * <li><code>threads</code> binders convert entries to models</li>
+ * <li>the writer writes models and builds the yml id -> node id map, then (phase two) reads the spooled relations
+ * and writes them with the ids of this map</li>
+ * </ul>
+ * There is only one writer thread, because the writer (and its transaction) is not thread safe. Models are written in
+ * the order they are bound, so keys don't follow the order of the file.
+ * 
+ * @author bsimard
+ */
+public class ImportPipeline {
+
+    private String                name;
+    private ImportWriter          writer;
+    private int                   threads;
+    private ImportStages          stages     = new ImportStages();
+    private BlockingQueue<Object> toBind;
+    private BlockingQueue<Object> toWrite;
+    private File                  spool;
+    private StringLongHashMap     ids        = new StringLongHashMap(1024);
+    private long                  nbRelation = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param name name of the yml file (for messages)
+     * @param writer
+     * @param threads number of binder threads
+     */
+    public ImportPipeline(String name, ImportWriter writer, int threads) {
+        this.name = name;
+        this.writer = writer;
+        this.threads = Math.max(1, threads);
+        this.toBind = stages.queue(this.threads);
+        this.toWrite = stages.queue(this.threads);
+    }
+
+    /**
+     * Run the import of the entries. The writer is closed at the end, or aborted if the import fails.
+     * 
+     * @param entries
+     * @throws Exception the first error of a stage.
+     */
+    public void run(YmlEntryReader entries) throws Exception {
+        spool = File.createTempFile("neo4j-import", ".relations");
+        Thread[] binders = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            binders[i] = stages.start(new BindStage(), "neo4j-import-binder-" + i);
+        }
+        Thread writerThread = stages.start(new WriteStage(), "neo4j-import-writer");
+        try {
+            parse(entries);
+            for (Thread binder : binders) {
+                binder.join();
+            }
+            writerThread.join();
+        } finally {
+            spool.delete();
+        }
+        stages.check();
+        Logger.info("Import of %s is done : %s models and %s relations, with %s binder threads", name, ids.size(),
+                nbRelation, threads);
+    }
+
+    /**
+     * Parser stage.
+     * 
+     * @param entries
+     */
+    private void parse(YmlEntryReader entries) {
+        DataOutputStream relations = null;
+        try {
+            relations = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spool)));
+            YmlEntry entry;
+            while (!stages.hasFailed() && (entry = entries.next()) != null) {
+                if (!entry.isValid()) {
+                    continue;
+                }
+                if (entry.isRelation()) {
+                    for (String value : entry.toRelation()) {
+                        relations.writeUTF(value);
+                    }
+                }
+                else if (!stages.put(toBind, entry)) {
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            stages.fail(e);
+        } finally {
+            IOUtils.closeQuietly(relations);
+            for (int i = 0; i < threads; i++) {
+                stages.put(toBind, ImportStages.END);
+            }
+        }
+    }
+
+    /**
+     * Binder stage : entry -> model.
+     */
+    private class BindStage implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                Object item;
+                while ((item = stages.take(toBind)) != null && item != ImportStages.END) {
+                    YmlEntry entry = (YmlEntry) item;
+                    if (!stages.put(toWrite, new Bound(entry.getId(), entry.getType(), entry.toModel()))) {
+                        return;
+                    }
+                }
+                if (item == ImportStages.END) {
+                    stages.put(toWrite, ImportStages.END);
+                }
+            } catch (Throwable e) {
+                stages.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Writer stage : models, then relations.
+     */
+    private class WriteStage implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                // phase one : models, until all binders have finished
+                int nbEnd = 0;
+                while (nbEnd < threads) {
+                    Object item = stages.take(toWrite);
+                    if (item == null) {
+                        return;
+                    }
+                    if (item == ImportStages.END) {
+                        nbEnd++;
+                        continue;
+                    }
+                    Bound bound = (Bound) item;
+                    if (ids.containsKey(bound.getId())) {
+                        throw new RuntimeException("Cannot load fixture " + name + ", duplicate id '" + bound.getId()
+                                + "' for type " + bound.getType());
+                    }
+                    ids.put(bound.getId(), writer.writeModel(bound.getModel()));
+                }
+
+                // phase two : relations, with the ids of phase one
+                DataInputStream relations = new DataInputStream(new BufferedInputStream(new FileInputStream(spool)));
+                try {
+                    while (!stages.hasFailed()) {
+                        String from;
+                        try {
+                            from = relations.readUTF();
+                        } catch (EOFException e) {
+                            break;
+                        }
+                        String to = relations.readUTF();
+                        String type = relations.readUTF();
+                        long fromId = ids.get(from);
+                        long toId = ids.get(to);
+                        if (fromId == StringLongHashMap.NO_VALUE || toId == StringLongHashMap.NO_VALUE) {
+                            throw new Neo4jException("Relation dependency not valid : unabled to find " + from
+                                    + " and " + to + " from imported objects !");
+                        }
+                        writer.writeRelation(fromId, toId, type);
+                        nbRelation++;
+                    }
+                } finally {
+                    IOUtils.closeQuietly(relations);
+                }
+            } catch (Throwable e) {
+                stages.fail(e);
+            } finally {
+                // a failed import doesn't commit its last batch
+                if (stages.hasFailed()) {
+                    writer.abort();
+                }
+                else {
+                    writer.close();
+                }
+            }
+        }
+    }
+
+}
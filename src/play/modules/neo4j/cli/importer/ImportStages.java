@@ -0,0 +1,175 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import play.Play;
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jModel;
+
+/**
+ * Threads of a multi-threaded import (@see ImportPipeline, SegmentImport), connected by bounded queues. The first error
+ * of a thread is kept, and the others threads stop when they see it : they never block on a queue, they poll it.
+ * 
+ * @author bsimard
+ */
+public class ImportStages {
+
+    /**
+     * End of stream marker, sent by producers.
+     */
+    public final static Object END             = new Object();
+
+    /**
+     * Size of queues, by producer thread.
+     */
+    private final static int   QUEUE_BY_THREAD = 256;
+
+    /**
+     * Poll timeout of a thread, to check if another thread has failed.
+     */
+    private final static long  POLL_TIMEOUT    = 100;
+
+    private volatile Throwable error;
+
+    /**
+     * Create a queue between stages.
+     * 
+     * @param threads number of producer threads
+     * @return
+     */
+    public BlockingQueue<Object> queue(int threads) {
+        return new ArrayBlockingQueue<Object>(threads * QUEUE_BY_THREAD);
+    }
+
+    /**
+     * Put an item into a queue, unless a thread has failed.
+     * 
+     * @param queue
+     * @param item
+     * @return false if a thread has failed.
+     */
+    public boolean put(BlockingQueue<Object> queue, Object item) {
+        try {
+            while (!queue.offer(item, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                if (error != null) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    /**
+     * Take an item from a queue, unless a thread has failed.
+     * 
+     * @param queue
+     * @return the item, or null if a thread has failed.
+     * @throws InterruptedException
+     */
+    public Object take(BlockingQueue<Object> queue) throws InterruptedException {
+        Object item = null;
+        while (item == null && error == null) {
+            item = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        return item;
+    }
+
+    /**
+     * Keep the first error of all threads.
+     * 
+     * @param e
+     */
+    public synchronized void fail(Throwable e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    /**
+     * @return true if a thread has failed.
+     */
+    public boolean hasFailed() {
+        return error != null;
+    }
+
+    /**
+     * Throw the first error of all threads, if there is one.
+     * 
+     * @throws Exception
+     */
+    public void check() throws Exception {
+        if (error != null) {
+            if (error instanceof Exception) {
+                throw (Exception) error;
+            }
+            throw new Neo4jException(error);
+        }
+    }
+
+    /**
+     * Start a thread, with the application class loader.
+     * 
+     * @param stage
+     * @param threadName
+     * @return
+     */
+    public Thread start(Runnable stage, String threadName) {
+        Thread thread = new Thread(stage, threadName);
+        thread.setContextClassLoader(Play.classloader);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * A bound model, with its import id.
+     */
+    public static class Bound {
+
+        private String     id;
+        private String     type;
+        private Neo4jModel model;
+
+        public Bound(String id, String type, Neo4jModel model) {
+            this.id = id;
+            this.type = type;
+            this.model = model;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Neo4jModel getModel() {
+            return model;
+        }
+    }
+
+}
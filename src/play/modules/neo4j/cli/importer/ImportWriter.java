@@ -0,0 +1,62 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jModel;
+
+/**
+ * Destination of an import : the importer binds models and relations from the input file, and the writer stores them
+ * (@see DatabaseImportWriter, BatchImportWriter).
+ * 
+ * @author bsimard
+ */
+public interface ImportWriter {
+
+    /**
+     * Write a bound model.
+     * 
+     * @param model
+     * @return the id of the node of the model.
+     * @throws Neo4jException
+     */
+    long writeModel(Neo4jModel model) throws Neo4jException;
+
+    /**
+     * Write a relationship between two nodes.
+     * 
+     * @param from id of the start node
+     * @param to id of the end node
+     * @param type type of the relationship
+     * @throws Neo4jException
+     */
+    void writeRelation(long from, long to, String type) throws Neo4jException;
+
+    /**
+     * Flush and release the writer. Calling it more than once has no effect.
+     */
+    void close();
+
+    /**
+     * Release the writer after a failed import, without flushing it : the writes that are not commited are
+     * rollbacked. After it, <code>close()</code> has no effect.
+     */
+    void abort();
+
+}
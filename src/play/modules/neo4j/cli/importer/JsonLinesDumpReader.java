@@ -0,0 +1,106 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import play.modules.neo4j.cli.export.DumpValues;
+import play.modules.neo4j.exception.Neo4jPlayException;
+
+/**
+ * Reader of a <code>jsonl</code> dump (@see JsonLinesExportWriter). The json parser reads the file as a stream of root
+ * objects, so only the current record is in memory.
+ * 
+ * @author bsimard
+ */
+public class JsonLinesDumpReader implements DumpReader {
+
+    private JsonParser json;
+
+    /**
+     * Constructor.
+     * 
+     * @param reader
+     * @throws IOException
+     */
+    public JsonLinesDumpReader(Reader reader) throws IOException {
+        this.json = new JsonFactory().createJsonParser(reader);
+    }
+
+    @Override
+    public DumpRecord next() throws IOException {
+        JsonToken token = json.nextToken();
+        if (token == null) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new Neo4jPlayException("Invalid jsonl dump at " + json.getCurrentLocation());
+        }
+        DumpRecord record = new DumpRecord();
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String field = json.getCurrentName();
+            json.nextToken();
+            if (field.equals("node")) {
+                record.id = json.getText();
+            }
+            else if (field.equals("relation")) {
+                record.relation = true;
+                record.id = json.getText();
+            }
+            else if (field.equals("class")) {
+                record.className = json.getText();
+            }
+            else if (field.equals("type")) {
+                record.type = json.getText();
+            }
+            else if (field.equals("from")) {
+                record.from = json.getText();
+            }
+            else if (field.equals("to")) {
+                record.to = json.getText();
+            }
+            else if (field.equals("properties")) {
+                while (json.nextToken() == JsonToken.FIELD_NAME) {
+                    String property = json.getCurrentName();
+                    json.nextToken();
+                    record.properties.put(property, DumpValues.readJson(json));
+                }
+            }
+            else {
+                json.skipChildren();
+            }
+        }
+        return record;
+    }
+
+    @Override
+    public void close() {
+        try {
+            json.close();
+        } catch (IOException e) {
+            // nothing to do, the file is only read
+        }
+    }
+
+}
@@ -0,0 +1,289 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.io.IOUtils;
+
+import play.Logger;
+import play.modules.neo4j.cli.export.DumpFormat;
+import play.modules.neo4j.cli.export.DumpManifest;
+import play.modules.neo4j.cli.importer.ImportStages.Bound;
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.StringLongHashMap;
+
+/**
+ * Multi-threaded import of a segmented export (@see DumpManifest). Segments can be in any dump format.
+ * <ul>
+ * <li>phase one : <code>threads</code> readers take node segments, read and bind their models, and send them to the
+ * writer (the calling thread), that writes them and builds the dump id -> node id map</li>
+ * <li>phase two : readers take relation segments, resolve the ids of each relation with the map of phase one, and
+ * send them to the writer</li>
+ * </ul>
+ * There is only one writer thread, because the writer (and its transaction) is not thread safe.
+ * 
+ * @author bsimard
+ */
+public class SegmentImport {
+
+    private String                name;
+    private ImportWriter          writer;
+    private int                   threads;
+    private ImportStages          stages     = new ImportStages();
+    private BlockingQueue<Object> toWrite;
+    private StringLongHashMap     ids        = new StringLongHashMap(1024);
+    private long                  nbRelation = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param name name of the manifest (for messages)
+     * @param writer
+     * @param threads number of reader threads
+     */
+    public SegmentImport(String name, ImportWriter writer, int threads) {
+        this.name = name;
+        this.writer = writer;
+        this.threads = Math.max(1, threads);
+        this.toWrite = stages.queue(this.threads);
+    }
+
+    /**
+     * Run the import of the segments of a manifest. The writer is closed at the end, or aborted if the import fails.
+     * 
+     * @param folder folder of the manifest (segment names are relative to it)
+     * @param manifest
+     * @throws Exception the first error of a thread.
+     */
+    public void run(File folder, DumpManifest manifest) throws Exception {
+        boolean failed = true;
+        try {
+            phase(folder, manifest.getNodeSegments(), false);
+            if (!stages.hasFailed()) {
+                phase(folder, manifest.getRelationSegments(), true);
+            }
+            failed = stages.hasFailed();
+        } finally {
+            // a failed import doesn't commit its last batch
+            if (failed) {
+                writer.abort();
+            }
+            else {
+                writer.close();
+            }
+        }
+        stages.check();
+        Logger.info("Import of %s is done : %s models and %s relations, with %s reader threads", name, ids.size(),
+                nbRelation, threads);
+    }
+
+    /**
+     * Read segments with the reader threads, and write their content on the calling thread.
+     * 
+     * @param folder
+     * @param segments
+     * @param relations are they relation segments ?
+     * @throws InterruptedException
+     */
+    private void phase(File folder, List<String> segments, boolean relations) throws InterruptedException {
+        Queue<File> files = new ConcurrentLinkedQueue<File>();
+        for (String segment : segments) {
+            files.add(new File(folder, segment));
+        }
+        int nbReader = Math.min(threads, files.size());
+        Thread[] readers = new Thread[nbReader];
+        for (int i = 0; i < nbReader; i++) {
+            readers[i] = stages.start(new ReadStage(files, relations), "neo4j-import-reader-" + i);
+        }
+        try {
+            int nbEnd = 0;
+            while (nbEnd < nbReader) {
+                Object item = stages.take(toWrite);
+                if (item == null) {
+                    break;
+                }
+                if (item == ImportStages.END) {
+                    nbEnd++;
+                }
+                else if (item instanceof Bound) {
+                    Bound bound = (Bound) item;
+                    if (ids.containsKey(bound.getId())) {
+                        throw new RuntimeException("Cannot load " + name + ", duplicate id '" + bound.getId()
+                                + "' for type " + bound.getType());
+                    }
+                    ids.put(bound.getId(), writer.writeModel(bound.getModel()));
+                }
+                else {
+                    Resolved relation = (Resolved) item;
+                    writer.writeRelation(relation.from, relation.to, relation.type);
+                    nbRelation++;
+                }
+            }
+        } catch (Throwable e) {
+            stages.fail(e);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+    }
+
+    /**
+     * A relation, with the node ids of its start and end models.
+     */
+    private static class Resolved {
+
+        private long   from;
+        private long   to;
+        private String type;
+
+        private Resolved(long from, long to, String type) {
+            this.from = from;
+            this.to = to;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Reader stage : takes segments until there is no more, and sends their content to the writer.
+     */
+    private class ReadStage implements Runnable {
+
+        private Queue<File> files;
+        private boolean     relations;
+
+        private ReadStage(Queue<File> files, boolean relations) {
+            this.files = files;
+            this.relations = relations;
+        }
+
+        @Override
+        public void run() {
+            try {
+                File file;
+                while (!stages.hasFailed() && (file = files.poll()) != null) {
+                    if (!read(file)) {
+                        return;
+                    }
+                }
+                stages.put(toWrite, ImportStages.END);
+            } catch (Throwable e) {
+                stages.fail(e);
+            }
+        }
+
+        /**
+         * Read a segment.
+         * 
+         * @param file
+         * @return false if a thread has failed.
+         * @throws Exception
+         */
+        private boolean read(File file) throws Exception {
+            if (DumpFormat.fromFileName(file.getName()) == DumpFormat.YML) {
+                BufferedReader reader = DumpReaders.text(file);
+                try {
+                    YmlEntryReader entries = new YmlEntryReader(reader);
+                    YmlEntry entry;
+                    while ((entry = entries.next()) != null) {
+                        if (!entry.isValid()) {
+                            continue;
+                        }
+                        if (entry.isRelation()) {
+                            String[] relation = entry.toRelation();
+                            if (!send(relation[0], relation[1], relation[2])) {
+                                return false;
+                            }
+                        }
+                        else if (!send(entry.getId(), entry.getType(), entry.toModel())) {
+                            return false;
+                        }
+                    }
+                } finally {
+                    IOUtils.closeQuietly(reader);
+                }
+            }
+            else {
+                DumpReader reader = DumpReaders.open(file);
+                try {
+                    DumpRecord record;
+                    while ((record = reader.next()) != null) {
+                        if (record.relation) {
+                            if (!send(record.from, record.to, record.type)) {
+                                return false;
+                            }
+                        }
+                        else if (!send(record.id, record.className, record.toModel())) {
+                            return false;
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Send a model to the writer.
+         * 
+         * @param id
+         * @param type
+         * @param model
+         * @return false if a thread has failed.
+         * @throws Neo4jException
+         */
+        private boolean send(String id, String type, Neo4jModel model) throws Neo4jException {
+            if (relations) {
+                throw new Neo4jException("Model " + id + " found into a relation segment of " + name);
+            }
+            return stages.put(toWrite, new Bound(id, type, model));
+        }
+
+        /**
+         * Resolve the ids of a relation (with the map of phase one, which is not modified anymore), and send it to
+         * the writer.
+         * 
+         * @param from
+         * @param to
+         * @param type
+         * @return false if a thread has failed.
+         * @throws Neo4jException
+         */
+        private boolean send(String from, String to, String type) throws Neo4jException {
+            if (!relations) {
+                throw new Neo4jException("Relation " + from + " -> " + to + " found into a node segment of " + name);
+            }
+            long fromId = ids.get(from);
+            long toId = ids.get(to);
+            if (fromId == StringLongHashMap.NO_VALUE || toId == StringLongHashMap.NO_VALUE) {
+                throw new Neo4jException("Relation dependency not valid : unabled to find " + from + " and " + to
+                        + " from imported objects !");
+            }
+            return stages.put(toWrite, new Resolved(fromId, toId, type));
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import play.Play;
+import play.data.binding.types.DateBinder;
+import play.modules.neo4j.exception.Neo4jPlayException;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.Binder;
+import play.vfs.VirtualFile;
+
+/**
+ * An entry of an yml import file, like <code>User(User_1)</code> with its attributes.
+ * 
+ * @author bsimard
+ */
+public class YmlEntry {
+
+    private final static Pattern keyPattern              = Pattern.compile("([^(]+)\\(([^)]+)\\)");
+    private static final String  RELATION_FROM_KEY       = "from";
+    private static final String  RELATION_TO_KEY         = "to";
+    private static final String  RELATION_TYPE_KEY       = "type";
+    private static final String  RELATION_TYPE_CLASS_KEY = "class";
+    private static final String  RELATION_TYPE_VALUE_KEY = "value";
+
+    private String               key;
+    private String               type;
+    private String               id;
+    private Map<?, ?>            values;
+
+    /**
+     * Constructor.
+     * 
+     * @param key the entry line, like <code>User(User_1)</code>
+     * @param values attributes of the entry (can be null)
+     */
+    public YmlEntry(String key, Map<?, ?> values) {
+        this.key = key;
+        this.values = values;
+        Matcher matcher = keyPattern.matcher(key.trim());
+        if (matcher.matches()) {
+            this.type = matcher.group(1);
+            this.id = matcher.group(2);
+        }
+    }
+
+    /**
+     * Is the entry line well formed (<code>Type(id)</code>) ?
+     * 
+     * @return
+     */
+    public boolean isValid() {
+        return type != null;
+    }
+
+    /**
+     * Is the entry a <code>Relation</code> ?
+     * 
+     * @return
+     */
+    public boolean isRelation() {
+        return "Relation".equals(type);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Map<?, ?> getValues() {
+        return values;
+    }
+
+    /**
+     * Bind the model of the entry (without saving it). Type that don't start with <code>models.</code> are into the
+     * <code>models</code> package.
+     * 
+     * @return
+     * @throws ClassNotFoundException
+     */
+    public Neo4jModel toModel() throws ClassNotFoundException {
+        String className = type;
+        if (!className.startsWith("models.")) {
+            className = "models." + className;
+        }
+        // Serialize YML attribute into an Hasmap that correspond to http params to use the same bind function
+        Map<String, String[]> params = new HashMap<String, String[]>();
+        if (values != null) {
+            serialize(values, "object", params);
+        }
+        Class clazz = Play.classloader.loadClass(className);
+        return (Neo4jModel) bind("object", clazz, params);
+    }
+
+    /**
+     * Parse the attributes of a <code>Relation</code> entry.
+     * 
+     * @return yml id of the start model, yml id of the end model and the relationship type.
+     */
+    public String[] toRelation() {
+        if (values == null) {
+            throw new Neo4jPlayException("Relation " + id + " has to get to,from and type atributes");
+        }
+        Map<String, String> params = serializeRelation(values);
+        return new String[] { params.get(RELATION_FROM_KEY), params.get(RELATION_TO_KEY),
+                params.get(RELATION_TYPE_VALUE_KEY) };
+    }
+
+    /**
+     * Copy of playframework method, @see <code>Fixtures.serialized</code>. It serialized into the
+     * <code>serialized</code> params all Yml attributes.
+     * 
+     * @param values
+     * @param prefix
+     * @param serialized
+     */
+    private static void serialize(Map<?, ?> values, String prefix, Map<String, String[]> serialized) {
+        for (Object key : values.keySet()) {
+            Object value = values.get(key);
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof Map<?, ?>) {
+                serialize((Map<?, ?>) value, prefix + "." + key, serialized);
+            }
+            else if (value instanceof Date) {
+                serialized.put(prefix + "." + key.toString(),
+                        new String[] { new SimpleDateFormat(DateBinder.ISO8601).format(((Date) value)) });
+            }
+            else if (value instanceof List<?>) {
+                List<?> l = (List<?>) value;
+                String[] r = new String[l.size()];
+                int i = 0;
+                for (Object el : l) {
+                    r[i++] = el.toString();
+                }
+                serialized.put(prefix + "." + key.toString(), r);
+            }
+            else if (value instanceof String && value.toString().matches("<<<\\s*\\{[^}]+}\\s*")) {
+                Matcher m = Pattern.compile("<<<\\s*\\{([^}]+)}\\s*").matcher(value.toString());
+                m.find();
+                String file = m.group(1);
+                VirtualFile f = Play.getVirtualFile(file);
+                if (f != null && f.exists()) {
+                    serialized.put(prefix + "." + key.toString(), new String[] { f.contentAsString() });
+                }
+            }
+            else {
+                serialized.put(prefix + "." + key.toString(), new String[] { value.toString() });
+            }
+        }
+    }
+
+    /**
+     * Method to parse Map object that represent an YML Relation object. We return a well formed Map with goods keys.
+     * 
+     * @param values
+     * @return
+     */
+    private static Map<String, String> serializeRelation(Map<?, ?> values) {
+        Map<String, String> params = new HashMap<String, String>();
+        for (Object key : values.keySet()) {
+            String value = (String) values.get(key);
+            if (key.equals(RELATION_FROM_KEY)) {
+                params.put(RELATION_FROM_KEY, value);
+            }
+            else if (key.equals(RELATION_TO_KEY)) {
+                params.put(RELATION_TO_KEY, value);
+            }
+            else if (key.equals(RELATION_TYPE_KEY)) {
+                String[] tab = value.split("\\.");
+                String enumValue = tab[tab.length - 1];
+                String clazz = value.replace("." + enumValue, "");
+                // default package for relatonship enumeration is model.reltionship, so if package is not present, we
+                // add the package
+                if (tab.length == 2 && Character.isUpperCase(value.subSequence(0, 1).charAt(0))) {
+                    clazz = "models.relationship." + clazz;
+                }
+                params.put(RELATION_TYPE_CLASS_KEY, clazz);
+                params.put(RELATION_TYPE_VALUE_KEY, enumValue);
+            }
+            else {
+                throw new Neo4jPlayException("Unkhnow attribute " + key + " [" + value + "] for Relation");
+            }
+        }
+        if (params.size() != 4) {
+            throw new Neo4jPlayException(
+                    "Number of attributed for relation is not good ! Relation has to get to,from and type atributes, and only those");
+        }
+        return params;
+    }
+
+    /**
+     * Method to bind a Neo4jModel from params attributes.
+     * 
+     * @param clazz
+     * @param params
+     * @return
+     */
+    private static Object bind(String name, Class clazz, Map<String, String[]> params) {
+        Binder binder = new Binder(clazz);
+        return binder.bind(name, params);
+    }
+
+}
@@ -0,0 +1,155 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.cli.importer;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Streaming reader of an yml import file : it reads the yml events of the file, and builds entries one by one, so
+ * only the current entry is in memory (instead of the whole document with <code>Yaml.load</code>).
+ * 
+ * Plain scalars are resolved like with <code>Yaml.load</code> for null and timestamp values, others stay strings (the
+ * binder converts them). Aliases are not supported, because they need the whole document.
+ * 
+ * @author bsimard
+ */
+public class YmlEntryReader {
+
+    private Parser   parser;
+    private Resolver resolver  = new Resolver();
+    private boolean  inMapping = false;
+
+    /**
+     * Constructor.
+     * 
+     * @param reader
+     */
+    public YmlEntryReader(Reader reader) {
+        this.parser = new ParserImpl(new StreamReader(reader));
+    }
+
+    /**
+     * Read the next entry of the file.
+     * 
+     * @return the entry, or null at the end of the file.
+     */
+    public YmlEntry next() {
+        while (!inMapping) {
+            Event event = parser.getEvent();
+            if (event.is(Event.ID.StreamEnd)) {
+                return null;
+            }
+            if (event.is(Event.ID.MappingStart)) {
+                inMapping = true;
+            }
+            else if (!event.is(Event.ID.StreamStart) && !event.is(Event.ID.DocumentStart)
+                    && !event.is(Event.ID.DocumentEnd) && !isEmpty(event)) {
+                throw new YAMLException("Yml import file must be a mapping of entries, found " + event);
+            }
+        }
+        if (parser.checkEvent(Event.ID.MappingEnd)) {
+            parser.getEvent();
+            inMapping = false;
+            return next();
+        }
+        Object key = readValue();
+        Object values = readValue();
+        if (values != null && !(values instanceof Map<?, ?>)) {
+            throw new YAMLException("Entry " + key + " must be a mapping of attributes");
+        }
+        return new YmlEntry(String.valueOf(key), (Map<?, ?>) values);
+    }
+
+    /**
+     * Read a value (scalar, mapping or sequence) from the current event.
+     * 
+     * @return
+     */
+    private Object readValue() {
+        Event event = parser.getEvent();
+        if (event.is(Event.ID.Scalar)) {
+            return resolve((ScalarEvent) event);
+        }
+        if (event.is(Event.ID.MappingStart)) {
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            while (!parser.checkEvent(Event.ID.MappingEnd)) {
+                Object key = readValue();
+                map.put(key, readValue());
+            }
+            parser.getEvent();
+            return map;
+        }
+        if (event.is(Event.ID.SequenceStart)) {
+            List<Object> list = new ArrayList<Object>();
+            while (!parser.checkEvent(Event.ID.SequenceEnd)) {
+                list.add(readValue());
+            }
+            parser.getEvent();
+            return list;
+        }
+        throw new YAMLException("Unsupported yml event for a streaming import : " + event);
+    }
+
+    /**
+     * Resolve null and timestamp plain scalars, like the yaml constructor.
+     * 
+     * @param scalar
+     * @return
+     */
+    private Object resolve(ScalarEvent scalar) {
+        if (scalar.getTag() == null && scalar.getImplicit().canOmitTagInPlainScalar()) {
+            Tag tag = resolver.resolve(NodeId.scalar, scalar.getValue(), true);
+            if (Tag.NULL.equals(tag)) {
+                return null;
+            }
+            if (Tag.TIMESTAMP.equals(tag)) {
+                return new SafeConstructor.ConstructYamlTimestamp().construct(new ScalarNode(tag, scalar.getValue(),
+                        null, null, null));
+            }
+        }
+        return scalar.getValue();
+    }
+
+    /**
+     * Is the event an empty document (a file with only comments) ?
+     * 
+     * @param event
+     * @return
+     */
+    private boolean isEmpty(Event event) {
+        return event.is(Event.ID.Scalar) && ((ScalarEvent) event).getValue().length() == 0;
+    }
+
+}
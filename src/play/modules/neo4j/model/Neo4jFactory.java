@@ -20,13 +20,17 @@ package play.modules.neo4j.model;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -36,17 +40,17 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.index.Index;
-import org.neo4j.graphdb.index.IndexManager;
-import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.helpers.collection.IterableWrapper;
 
 import play.Logger;
-import play.modules.neo4j.annotation.Neo4jIndex;
 import play.modules.neo4j.annotation.Neo4jRelatedTo;
 import play.modules.neo4j.annotation.Neo4jUniqueRelation;
 import play.modules.neo4j.exception.Neo4jException;
 import play.modules.neo4j.exception.Neo4jPlayException;
 import play.modules.neo4j.relationship.Neo4jRelationFactory;
 import play.modules.neo4j.util.Neo4j;
+import play.modules.neo4j.util.Neo4jKeyMap;
 import play.modules.neo4j.util.Neo4jUtils;
 
 public class Neo4jFactory {
@@ -97,8 +101,8 @@ public class Neo4jFactory {
                     "Factory class that extends AbstractNeo4jFactory must have the annotation @Neo4jFactory correctly configure !!!");
         }
 
-        // if reference node doesn't exist, we create it
-        if (!graphDb.getReferenceNode().hasRelationship(this.root2ref)) {
+        // if reference node doesn't exist, we create it (except in read-only mode, where there is no model to find)
+        if (!Neo4j.isReadOnly() && !graphDb.getReferenceNode().hasRelationship(this.root2ref)) {
             Logger.info("Reference node doesn't exist for factory " + this.getClass().getSimpleName()
                     + ", we create it");
             Transaction tx = graphDb.beginTx();
@@ -127,11 +131,96 @@ public class Neo4jFactory {
      * @return
      */
     public Node getByKey(Long key, String indexName) {
+        Node node = getFromKeyMap(key);
+        if (node != null) {
+            return node;
+        }
         Index<Node> indexNode = Neo4j.db().index().forNodes(indexName);
-        Node node = indexNode.get("key", key).getSingle();
+        node = indexNode.get("key", key).getSingle();
         return node;
     }
 
+    /**
+     * Method to retrieve a node by a key into the key map, if it's enabled (@see Neo4jKeyMap). Because neo4j can reuse
+     * the id of a deleted node, we check that the found node is still the good one.
+     * 
+     * @param key the idenfifier of the node
+     * @return the node, or <code>null</code> if key map is disabled or doesn't know the key.
+     */
+    private Node getFromKeyMap(Long key) {
+        if (key != null && Neo4jKeyMap.isEnabled()) {
+            long nodeId = Neo4jKeyMap.forClass(ref2node.name()).get(key);
+            if (nodeId >= 0) {
+                try {
+                    Node node = Neo4j.db().getNodeById(nodeId);
+                    if (key.equals(node.getProperty("key", null))
+                            && node.hasRelationship(ref2node, Direction.INCOMING)) {
+                        return node;
+                    }
+                } catch (NotFoundException e) {
+                    Logger.debug("Node " + nodeId + " of key map " + ref2node.name() + " doesn't exist anymore");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to retrieve many nodes by their keys. Keys are resolved by the key map if it's enabled, otherwise with one
+     * lucene query (split only when there are more keys than lucene boolean clauses allowed), instead of one index
+     * lookup per key.
+     * 
+     * @param keys the idenfifiers of the nodes
+     * @param indexName Name of the index on wich to search
+     * @return a map of key / node. Keys that doesn't exist into the database are not in the map.
+     */
+    public Map<Long, Node> getByKeys(Collection<Long> keys, String indexName) {
+        Map<Long, Node> nodes = new HashMap<Long, Node>();
+        Index<Node> indexNode = Neo4j.db().index().forNodes(indexName);
+        int maxClause = BooleanQuery.getMaxClauseCount();
+        BooleanQuery query = new BooleanQuery();
+        for (Long key : keys) {
+            if (key == null || nodes.containsKey(key)) {
+                continue;
+            }
+            Node node = getFromKeyMap(key);
+            if (node != null) {
+                nodes.put(key, node);
+                continue;
+            }
+            query.add(new TermQuery(new Term("key", key.toString())), Occur.SHOULD);
+            if (query.clauses().size() == maxClause) {
+                getByKeys(indexNode, query, nodes);
+                query = new BooleanQuery();
+            }
+        }
+        if (query.clauses().size() > 0) {
+            getByKeys(indexNode, query, nodes);
+        }
+        return nodes;
+    }
+
+    /**
+     * Private method that is use into getByKeys method. It execute the lucene query and put result nodes into the map.
+     * 
+     * @param indexNode
+     * @param query
+     * @param nodes
+     */
+    private void getByKeys(Index<Node> indexNode, BooleanQuery query, Map<Long, Node> nodes) {
+        IndexHits<Node> hits = indexNode.query(query);
+        try {
+            for (Node node : hits) {
+                Object key = node.getProperty("key", null);
+                if (key != null) {
+                    nodes.put(Long.valueOf("" + key), node);
+                }
+            }
+        } finally {
+            hits.close();
+        }
+    }
+
     /**
      * Retrive all node ! Be carefull there is no limitation, so if you have a million of node, this method return a
      * million of node !
@@ -140,15 +229,37 @@ public class Neo4jFactory {
      * @throws Neo4jException
      */
     public <T extends Neo4jModel> List<T> findAll() throws Neo4jException {
-        List<T> elements = new ArrayList<T>();
-        Iterator<Relationship> relationships = referenceNode.getRelationships(ref2node, Direction.OUTGOING).iterator();
-        while (relationships.hasNext()) {
-            Relationship relationship = relationships.next();
-            Node endNode = relationship.getEndNode();
-            T model = (T) Neo4jModel.getByNode(endNode);
-            elements.add(model);
+        return findAll(false);
+    }
+
+    /**
+     * Retrive all node (@see <code>findAll()</code>).
+     * 
+     * @param parallel if true, models are built by the threads of the module pool (@see Neo4jExecutor).
+     * @return
+     * @throws Neo4jException
+     */
+    public <T extends Neo4jModel> List<T> findAll(boolean parallel) throws Neo4jException {
+        return Neo4jModel.hydrateAll(findAllNodes(), clazz, false, parallel);
+    }
+
+    /**
+     * Retrieve all node of the model class, without building models. Nodes are read lazily, when the iterable is
+     * consumed.
+     * 
+     * @return
+     */
+    public Iterable<Node> findAllNodes() {
+        if (referenceNode == null) {
+            return Collections.emptyList();
         }
-        return elements;
+        return new IterableWrapper<Node, Relationship>(referenceNode.getRelationships(ref2node, Direction.OUTGOING)) {
+
+            @Override
+            protected Node underlyingObjectToObject(Relationship relationship) {
+                return relationship.getEndNode();
+            }
+        };
     }
 
     /**
@@ -161,6 +272,38 @@ public class Neo4jFactory {
      * @throws IllegalArgumentException
      */
     public Neo4jModel saveAndIndex(Neo4jModel nodeWrapper) throws Neo4jException {
+        return saveAndIndex(nodeWrapper, false);
+    }
+
+    /**
+     * Method to save/update and index a node with the key it has into another database (like a model of a delta
+     * export, @see DeltaImport) : the node of this key is updated, or it's created with this key.
+     * 
+     * @param nodeWrapper to save, with its key
+     * @return the save or update node
+     * @throws Neo4jException
+     */
+    public Neo4jModel saveWithKey(Neo4jModel nodeWrapper) throws Neo4jException {
+        if (nodeWrapper.key == null) {
+            throw new Neo4jPlayException("A model must have a key to be saved with it");
+        }
+        Node node = getByKey(nodeWrapper.key, Neo4jUtils.getIndexName(clazz.getSimpleName(), "key"));
+        if (node != null) {
+            nodeWrapper.setNodeWithNoInit(node);
+        }
+        return saveAndIndex(nodeWrapper, true);
+    }
+
+    /**
+     * Method to save/update and index a node.
+     * 
+     * @param nodeWrapper to save
+     * @param keepKey should a new node keep the key of the model, instead of a generated one ?
+     * @return the save or update node
+     * @throws Neo4jException
+     */
+    private Neo4jModel saveAndIndex(Neo4jModel nodeWrapper, boolean keepKey) throws Neo4jException {
+        Neo4j.checkWritable();
         // initialisation of the method
         Map<String, Object> oldValues = new HashMap<String, Object>();
         Transaction tx = Neo4j.db().beginTx();
@@ -172,7 +315,12 @@ public class Neo4jFactory {
         try {
             // if it's a new object (doesn't have a node value), we create the node & generate an auto key
             if (isNewNode) {
-                nodeWrapper.setKey(getNextId());
+                if (keepKey) {
+                    reserveKey(nodeWrapper.key);
+                }
+                else {
+                    nodeWrapper.setKey(getNextId());
+                }
                 nodeWrapper.setNodeWithNoInit(Neo4j.db().createNode());
             }
 
@@ -370,6 +518,9 @@ public class Neo4jFactory {
             if (isNewNode) {
                 // create the reference 2 node relationship
                 referenceNode.createRelationshipTo(nodeWrapper.getNode(), this.ref2node);
+                if (Neo4jKeyMap.isEnabled()) {
+                    Neo4jKeyMap.forClass(ref2node.name()).put(nodeWrapper.getKey(), nodeWrapper.getNode().getId());
+                }
             }
 
             // create indexes ...
@@ -401,7 +552,7 @@ public class Neo4jFactory {
         String indexName = Neo4jUtils.getIndexName(nodeWrapper.getClass().getSimpleName(), field);
         if (indexName != null && field.get(nodeWrapper) != null) {
             // create the index
-            Index<Node> indexNode = Neo4j.db().index().forNodes(indexName, getLuceneConfigParam(field));
+            Index<Node> indexNode = Neo4j.db().index().forNodes(indexName, Neo4jUtils.getLuceneConfigParam(field));
             // here we have to remove the index when it's an update, so we take a look at the oldValues map
             if (oldValue != null) {
                 indexNode.remove(nodeWrapper.getNode(), field.getName(), oldValue.toString());
@@ -411,26 +562,6 @@ public class Neo4jFactory {
 
     }
 
-    /**
-     * Construct lucene params configuration by the Neo4jIndex annotation.
-     * 
-     * @param field
-     * @return
-     */
-    private Map<String, String> getLuceneConfigParam(Field field) {
-        Neo4jIndex nodeIndex = field.getAnnotation(Neo4jIndex.class);
-        Map<String, String> params = new HashMap<String, String>();
-        params.put(IndexManager.PROVIDER, "lucene");
-        params.put("type", nodeIndex.type());
-        if (nodeIndex.type().equals("fulltext") && nodeIndex.lowerCase() != "") {
-            return MapUtil.stringMap(IndexManager.PROVIDER, "lucene", "type", nodeIndex.type(), "to_lower_case",
-                    nodeIndex.lowerCase());
-        }
-        else {
-            return MapUtil.stringMap(IndexManager.PROVIDER, "lucene", "type", nodeIndex.type());
-        }
-    }
-
     /**
      * Method to delete a node. If it still have a relationship (otherwise than ref2node one), this method throw a
      * runtime exception.
@@ -463,6 +594,7 @@ public class Neo4jFactory {
      * @throws Neo4jException
      */
     private Neo4jModel _delete(Neo4jModel nodeWrapper, Boolean forceDelete) throws Neo4jException {
+        Neo4j.checkWritable();
         if (nodeWrapper.getNode() == null) {
             return null;
         }
@@ -484,7 +616,11 @@ public class Neo4jFactory {
             }
 
             // delete entity
+            Object key = node.getProperty("key", null);
             node.delete();
+            if (key != null && Neo4jKeyMap.isEnabled()) {
+                Neo4jKeyMap.forClass(ref2node.name()).remove(Long.valueOf("" + key));
+            }
             // delete indexes
             for (java.lang.reflect.Field field : nodeWrapper.getClass().getFields()) {
                 // is there an index on the field ?
@@ -511,6 +647,9 @@ public class Neo4jFactory {
      * @return
      */
     private synchronized Long getNextId() {
+        if (Neo4j.isRemote()) {
+            return claimNextId();
+        }
         Long counter = null;
         try {
             counter = (Long) referenceNode.getProperty(NODE_KEY_COUNTER);
@@ -529,6 +668,53 @@ public class Neo4jFactory {
         return counter;
     }
 
+    /**
+     * Method to get the next ID for an object on a remote database, where several instances of the application can
+     * read the same counter. Each key is claimed with an unique entry of the <code>Class_KEY_COUNTER</code> index (the
+     * server checks and adds it atomically), and the counter is only the first key to try.
+     * 
+     * @return
+     */
+    private Long claimNextId() {
+        Index<Node> keys = Neo4j.db().index().forNodes(clazz.getSimpleName() + "_" + NODE_KEY_COUNTER);
+        Long counter = (Long) referenceNode.getProperty(NODE_KEY_COUNTER, 0L);
+        while (keys.putIfAbsent(referenceNode, "key", counter) != null) {
+            counter++;
+        }
+        Transaction tx = Neo4j.db().beginTx();
+        try {
+            referenceNode.setProperty(NODE_KEY_COUNTER, new Long(counter + 1));
+            Logger.debug("New ID for factory " + this.getClass().getSimpleName() + " is " + counter);
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        return counter;
+    }
+
+    /**
+     * Method to reserve a key that is not generated by the counter : the counter is moved after it, so it will never
+     * be generated.
+     * 
+     * @param key
+     */
+    private synchronized void reserveKey(Long key) {
+        if (Neo4j.isRemote()) {
+            Neo4j.db().index().forNodes(clazz.getSimpleName() + "_" + NODE_KEY_COUNTER)
+                    .putIfAbsent(referenceNode, "key", key);
+        }
+        Long counter = (Long) referenceNode.getProperty(NODE_KEY_COUNTER, 0L);
+        if (counter <= key) {
+            Transaction tx = Neo4j.db().beginTx();
+            try {
+                referenceNode.setProperty(NODE_KEY_COUNTER, new Long(key + 1));
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+        }
+    }
+
     private void createRelationship(Node start, Node end, RelationshipType relationType) {
         start.createRelationshipTo(end, relationType);
     }
@@ -0,0 +1,296 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.model;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.IndexHits;
+
+import play.Logger;
+import play.Play;
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.util.Neo4j;
+import play.modules.neo4j.util.Neo4jExecutor;
+
+/**
+ * Transform a batch of nodes into models. All that can be shared between nodes of a batch (class of the node,
+ * constructor, relation fields) is resolved only once per batch, and not once per node like <code>getByNode</code>
+ * did.
+ * 
+ * @author bsimard
+ */
+@SuppressWarnings("unchecked")
+class Neo4jHydrator {
+
+    /**
+     * Class of all nodes of the batch, if we know it (like for <code>findAll</code>).
+     */
+    private Class                       clazz;
+
+    /**
+     * If true, relations of models are not loaded.
+     */
+    private boolean                     skipRelations;
+
+    /**
+     * Model class by name of the relationship between the model reference node and the node.
+     */
+    private Map<String, Class>          classes   = new HashMap<String, Class>();
+
+    /**
+     * Metadata by model class.
+     */
+    private Map<Class, ModelMetadata>   metadatas = new HashMap<Class, ModelMetadata>();
+
+    /**
+     * Constructor.
+     * 
+     * @param clazz class of all nodes of the batch, or <code>null</code> if it must be resolved for each node.
+     * @param skipRelations
+     */
+    Neo4jHydrator(Class clazz, boolean skipRelations) {
+        this.clazz = clazz;
+        this.skipRelations = skipRelations;
+    }
+
+    /**
+     * Transform all nodes into models. The returned list has the same order than <code>nodes</code>, with a
+     * <code>null</code> value for each <code>null</code> node.
+     * 
+     * @param nodes
+     * @return
+     * @throws Neo4jException
+     */
+    <T extends Neo4jModel> List<T> hydrateAll(Iterable<Node> nodes) throws Neo4jException {
+        List<T> models = new ArrayList<T>(sizeOf(nodes));
+        for (Node node : nodes) {
+            models.add((T) hydrate(node));
+        }
+        return models;
+    }
+
+    /**
+     * Transform all nodes into models, by splitting node ids between threads of the module pool (@see
+     * Neo4jExecutor). Each thread builds the models of a range of ids with its own hydrator, and ranges are joined in
+     * order, so the returned list has the same order than <code>nodes</code>. Small batches (less than
+     * <code>neo4j.hydration.chunk</code> nodes) are not split.
+     * 
+     * @param nodes
+     * @return
+     * @throws Neo4jException
+     */
+    <T extends Neo4jModel> List<T> hydrateAllParallel(Iterable<Node> nodes) throws Neo4jException {
+        int chunk = Integer.valueOf(Play.configuration.getProperty("neo4j.hydration.chunk", "1000"));
+        // we only keep node ids, nodes are loaded by the threads
+        long[] ids = new long[sizeOf(nodes)];
+        int size = 0;
+        for (Node node : nodes) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(16, size * 2));
+            }
+            ids[size++] = (node == null) ? -1 : node.getId();
+        }
+        if (size <= chunk || Neo4jExecutor.isWorker()) {
+            return hydrateIds(ids, 0, size);
+        }
+
+        Logger.debug("Hydrating " + size + " nodes by chunk of " + chunk);
+        final long[] nodeIds = ids;
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>();
+        for (int from = 0; from < size; from += chunk) {
+            final int start = from;
+            final int end = Math.min(from + chunk, size);
+            futures.add(Neo4jExecutor.pool().submit(new Callable<List<T>>() {
+
+                @Override
+                public List<T> call() throws Exception {
+                    return new Neo4jHydrator(clazz, skipRelations).hydrateIds(nodeIds, start, end);
+                }
+            }));
+        }
+        List<T> models = new ArrayList<T>(size);
+        try {
+            for (Future<List<T>> future : futures) {
+                models.addAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new Neo4jException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new Neo4jException(e);
+        }
+        return models;
+    }
+
+    /**
+     * Transform a range of node ids into models (<code>-1</code> is a <code>null</code> node).
+     * 
+     * @param ids
+     * @param from index of the first id (inclusive)
+     * @param to index of the last id (exclusive)
+     * @return
+     * @throws Neo4jException
+     */
+    private <T extends Neo4jModel> List<T> hydrateIds(long[] ids, int from, int to) throws Neo4jException {
+        GraphDatabaseService graphDb = Neo4j.db();
+        List<T> models = new ArrayList<T>(to - from);
+        for (int i = from; i < to; i++) {
+            if (ids[i] < 0) {
+                models.add(null);
+            }
+            else {
+                models.add((T) hydrate(graphDb.getNodeById(ids[i])));
+            }
+        }
+        return models;
+    }
+
+    /**
+     * Retrieve a mapper that transforms nodes with this hydrator (for streaming results).
+     * 
+     * @return
+     */
+    <T extends Neo4jModel> Neo4jResult.Mapper<T> mapper() {
+        return new Neo4jResult.Mapper<T>() {
+
+            @Override
+            public T map(Node node) throws Neo4jException {
+                return (T) hydrate(node);
+            }
+        };
+    }
+
+    /**
+     * Transform a node into a model.
+     * 
+     * @param node
+     * @return
+     * @throws Neo4jException
+     */
+    <T extends Neo4jModel> T hydrate(Node node) throws Neo4jException {
+        if (node == null) {
+            return null;
+        }
+        Class nodeClass = clazz;
+        if (nodeClass == null) {
+            nodeClass = resolveClass(node);
+        }
+        if (nodeClass == null) {
+            throw new Neo4jException("Node " + node.getId() + " is not a Neo4jModel node");
+        }
+        ModelMetadata metadata = metadatas.get(nodeClass);
+        try {
+            if (metadata == null) {
+                metadata = new ModelMetadata(nodeClass);
+                metadatas.put(nodeClass, metadata);
+            }
+            Neo4jModel model = (Neo4jModel) metadata.constructor.newInstance();
+            model.node = node;
+            model.shouldBeSave = Boolean.FALSE;
+            if (!skipRelations) {
+                model.initializeRelations(metadata.relatedFields, metadata.uniqueFields);
+            }
+            return (T) model;
+        } catch (Exception e) {
+            throw new Neo4jException(e);
+        }
+    }
+
+    /**
+     * Retrieve the model class of a node, by looking at its incoming relationship from the model reference node. Once
+     * a relationship type has been found, next nodes with the same type don't need to load the reference node.
+     * 
+     * @param node
+     * @return
+     */
+    private Class resolveClass(Node node) {
+        for (Relationship relation : node.getRelationships(Direction.INCOMING)) {
+            String type = relation.getType().name();
+            Class nodeClass = classes.get(type);
+            if (nodeClass != null) {
+                return nodeClass;
+            }
+            Node startNode = relation.getStartNode();
+            if (startNode.hasProperty(Neo4jFactory.NODE_KEY_COUNTER)
+                    && startNode.hasProperty(Neo4jFactory.NODE_CLASS_NAME)) {
+                String className = (String) startNode.getProperty(Neo4jFactory.NODE_CLASS_NAME);
+                Logger.debug("Model class name is " + className + " for relation type " + type);
+                nodeClass = Play.classes.getApplicationClass(className).javaClass;
+                classes.put(type, nodeClass);
+                return nodeClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compute the size of an iterable if it's known, to pre-size the result list.
+     * 
+     * @param nodes
+     * @return
+     */
+    private int sizeOf(Iterable<Node> nodes) {
+        int size = 10;
+        if (nodes instanceof Collection) {
+            size = ((Collection) nodes).size();
+        }
+        else if (nodes instanceof IndexHits) {
+            size = Math.max(((IndexHits) nodes).size(), 0);
+        }
+        return size;
+    }
+
+    /**
+     * Everything that is needed to build a model of a class.
+     */
+    private static class ModelMetadata {
+
+        private Constructor constructor;
+
+        /**
+         * Fields with a not lazy <code>Neo4jRelatedTo</code> annotation.
+         */
+        private List<Field> relatedFields = new ArrayList<Field>();
+
+        /**
+         * Fields with a <code>Neo4jUniqueRelation</code> annotation.
+         */
+        private List<Field> uniqueFields  = new ArrayList<Field>();
+
+        private ModelMetadata(Class clazz) throws NoSuchMethodException {
+            this.constructor = clazz.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+            Neo4jModel.relationFields(clazz, relatedFields, uniqueFields);
+        }
+    }
+
+}
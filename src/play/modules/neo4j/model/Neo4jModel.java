@@ -18,15 +18,19 @@
  */
 package play.modules.neo4j.model;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.helpers.collection.IteratorUtil;
 
 import play.Logger;
 import play.Play;
@@ -36,6 +40,7 @@ import play.modules.neo4j.annotation.Neo4jUniqueRelation;
 import play.modules.neo4j.exception.Neo4jException;
 import play.modules.neo4j.exception.Neo4jPlayException;
 import play.modules.neo4j.relationship.Neo4jRelationFactory;
+import play.modules.neo4j.relationship.Neo4jTimeline;
 import play.modules.neo4j.util.Neo4j;
 import play.modules.neo4j.util.Neo4jUtils;
 
@@ -75,43 +80,62 @@ public abstract class Neo4jModel {
      * Initialize relation for model.
      */
     private void initializeRelations() {
-        // for all field, we look at it to see if there are some Related annotation
-        for (java.lang.reflect.Field field : this.getClass().getFields()) {
+        List<Field> relatedFields = new ArrayList<Field>();
+        List<Field> uniqueFields = new ArrayList<Field>();
+        relationFields(this.getClass(), relatedFields, uniqueFields);
+        initializeRelations(relatedFields, uniqueFields);
+    }
+
+    /**
+     * Initialize relation for model, with fields that have already been resolved (@see Neo4jHydrator).
+     * 
+     * @param relatedFields fields with a not lazy <code>Neo4jRelatedTo</code> annotation
+     * @param uniqueFields fields with a <code>Neo4jUniqueRelation</code> annotation
+     */
+    void initializeRelations(List<Field> relatedFields, List<Field> uniqueFields) {
+        // if node is null, there is no relation to retrieve
+        if (node == null) {
+            return;
+        }
+        for (Field field : relatedFields) {
             Logger.debug("Loading sub-node " + field.getName() + " for node " + this.node.getId());
-            // if there is the relation annotation
             Neo4jRelatedTo relatedTo = field.getAnnotation(Neo4jRelatedTo.class);
-            if (relatedTo != null) {
-
-                // if node is not null, then we retrieve relation value
-                if (node != null) {
-                    if (!relatedTo.lazy()) {
-                        try {
-                            field.set(
-                                    this,
-                                    Neo4jRelationFactory.getModelsFromRelation(relatedTo.value(),
-                                            "" + relatedTo.direction(), field, node));
-                        } catch (IllegalAccessException e) {
-                            Logger.error(e.getMessage());
-                        }
-                    }
-                }
+            try {
+                field.set(this,
+                        Neo4jRelationFactory.getModelsFromRelation(relatedTo.value(), "" + relatedTo.direction(),
+                                field, node));
+            } catch (IllegalAccessException e) {
+                Logger.error(e.getMessage());
             }
-
-            // if there is the unique relation annotation
+        }
+        for (Field field : uniqueFields) {
+            Logger.debug("Loading sub-node " + field.getName() + " for node " + this.node.getId());
             Neo4jUniqueRelation uniqueRelation = field.getAnnotation(Neo4jUniqueRelation.class);
-            if (uniqueRelation != null) {
-
-                // if node is not null, then we retrieve relation value
-                if (node != null) {
-                    try {
-                        field.set(
-                                this,
-                                Neo4jRelationFactory.getModelFromUniqueRelation(uniqueRelation.value(), ""
-                                        + uniqueRelation.direction(), field, node));
-                    } catch (IllegalAccessException e) {
-                        Logger.error(e.getMessage());
-                    }
-                }
+            try {
+                field.set(this, Neo4jRelationFactory.getModelFromUniqueRelation(uniqueRelation.value(), ""
+                        + uniqueRelation.direction(), field, node));
+            } catch (IllegalAccessException e) {
+                Logger.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Retrieve fields of a model class that must be initialized with the model : all fields with a not lazy
+     * <code>Neo4jRelatedTo</code> annotation, and all fields with a <code>Neo4jUniqueRelation</code> annotation.
+     * 
+     * @param clazz
+     * @param relatedFields
+     * @param uniqueFields
+     */
+    static void relationFields(Class clazz, List<Field> relatedFields, List<Field> uniqueFields) {
+        for (Field field : clazz.getFields()) {
+            Neo4jRelatedTo relatedTo = field.getAnnotation(Neo4jRelatedTo.class);
+            if (relatedTo != null && !relatedTo.lazy()) {
+                relatedFields.add(field);
+            }
+            if (field.getAnnotation(Neo4jUniqueRelation.class) != null) {
+                uniqueFields.add(field);
             }
         }
     }
@@ -230,6 +254,16 @@ public abstract class Neo4jModel {
         throw new Neo4jPlayException("findAll() Must be overriden by Neo4jModelEnhancer");
     }
 
+    /**
+     * FindAll method for Neo4jModel (@see <code>findAll()</code>).
+     * 
+     * @param parallel if true, models are built by the threads of the module pool (@see Neo4jExecutor).
+     * @return
+     */
+    public static <T extends Neo4jModel> List<T> findAll(boolean parallel) {
+        throw new Neo4jPlayException("findAll() Must be overriden by Neo4jModelEnhancer");
+    }
+
     /**
      * Find all nodes. Becarefull there is no limitation. So if you have a millon of node, this metod return a million
      * of item ...
@@ -238,9 +272,21 @@ public abstract class Neo4jModel {
      * @return
      */
     protected static <T extends Neo4jModel> List<T> _findAll(String className) throws Neo4jException {
+        return _findAll(className, false);
+    }
+
+    /**
+     * Find all nodes (@see <code>_findAll(String className)</code>).
+     * 
+     * @param <T>
+     * @param parallel if true, models are built by the threads of the module pool (@see Neo4jExecutor).
+     * @return
+     */
+    protected static <T extends Neo4jModel> List<T> _findAll(String className, boolean parallel)
+            throws Neo4jException {
         List<T> elements = new ArrayList<T>();
         Neo4jFactory factory = getFactory(className);
-        elements = (List<T>) factory.findAll();
+        elements = (List<T>) factory.findAll(parallel);
         return elements;
     }
 
@@ -255,6 +301,18 @@ public abstract class Neo4jModel {
         throw new Neo4jPlayException("queryIndex() Must be overriden by Neo4jModelEnhancer");
     }
 
+    /**
+     * Query a Neo4j index and return play model.
+     * 
+     * @param indexname
+     * @param query
+     * @param parallel if true, models are built by the threads of the module pool (@see Neo4jExecutor).
+     * @return
+     */
+    public static <T extends Neo4jModel> List<T> queryIndex(String indexname, String query, boolean parallel) {
+        throw new Neo4jPlayException("queryIndex() Must be overriden by Neo4jModelEnhancer");
+    }
+
     /**
      * Query a Neo4j index and return play model.
      * 
@@ -264,14 +322,64 @@ public abstract class Neo4jModel {
      * @throws Neo4jException
      */
     protected static <T extends Neo4jModel> List<T> _queryIndex(String indexname, String query) throws Neo4jException {
-        List<T> elements = new ArrayList<T>();
+        return _queryIndex(indexname, query, false);
+    }
+
+    /**
+     * Query a Neo4j index and return play model.
+     * 
+     * @param indexname
+     * @param query
+     * @param parallel if true, models are built by the threads of the module pool (@see Neo4jExecutor).
+     * @return
+     * @throws Neo4jException
+     */
+    protected static <T extends Neo4jModel> List<T> _queryIndex(String indexname, String query, boolean parallel)
+            throws Neo4jException {
         IndexManager index = Neo4j.db().index();
         Index<Node> indexNodes = index.forNodes(indexname);
-        for (Node node : indexNodes.query(query)) {
-            T element = getByNode(node);
-            elements.add(element);
-        }
-        return elements;
+        return hydrateAll(indexNodes.query(query), null, false, parallel);
+    }
+
+    /**
+     * Start a traversal from the node of this model (@see Neo4jTraversal).
+     * 
+     * @return
+     */
+    public Neo4jTraversal traverse() {
+        return new Neo4jTraversal(this.node);
+    }
+
+    /**
+     * Retrieve the timeline of this model for a relationship in line mode (@see Neo4jTimeline).
+     * 
+     * @param relationName
+     * @return
+     */
+    public Neo4jTimeline timeline(String relationName) {
+        return new Neo4jTimeline(this, relationName);
+    }
+
+    /**
+     * Method to create a projection of the model class on some of its properties (@see Neo4jProjection).
+     * 
+     * @param properties
+     * @return
+     */
+    public static Neo4jProjection project(String... properties) {
+        throw new Neo4jPlayException("project() Must be overriden by Neo4jModelEnhancer");
+    }
+
+    /**
+     * Create a projection of a model class on some of its properties.
+     * 
+     * @param className
+     * @param properties
+     * @return
+     */
+    protected static Neo4jProjection _project(String className, String[] properties) {
+        Class clazz = Play.classes.getApplicationClass(className).javaClass;
+        return new Neo4jProjection(clazz, properties);
     }
 
     /**
@@ -303,6 +411,139 @@ public abstract class Neo4jModel {
         }
     }
 
+    /**
+     * Method to retrieve many nodes by their keys.
+     * 
+     * @param keys
+     * @return
+     * @throws Neo4jException
+     */
+    public static <T extends Neo4jModel> List<T> getByKeys(Collection<Long> keys) throws Neo4jException {
+        throw new Neo4jPlayException("getByKeys() Must be overriden by Neo4jModelEnhancer");
+    }
+
+    /**
+     * Retrieve many nodes by their keys, with a single index query. The returned list has the same order as
+     * <code>keys</code>, with a <code>null</code> value for each key that doesn't exist.
+     * 
+     * @param keys
+     * @param className
+     * @return
+     * @throws Neo4jException
+     */
+    protected static <T extends Neo4jModel> List<T> _getByKeys(Collection<Long> keys, String className)
+            throws Neo4jException {
+        Class clazz = Play.classes.getApplicationClass(className).javaClass;
+        Neo4jFactory factory = getFactory(clazz);
+        Map<Long, Node> nodes = factory.getByKeys(keys, Neo4jUtils.getIndexName(clazz.getSimpleName(), "key"));
+
+        // we hydrate each node only once, and in the order of the keys
+        Neo4jHydrator hydrator = new Neo4jHydrator(clazz, false);
+        List<T> elements = new ArrayList<T>(keys.size());
+        Map<Long, T> models = new HashMap<Long, T>(nodes.size());
+        for (Long key : keys) {
+            T element = null;
+            Node node = nodes.get(key);
+            if (node != null) {
+                element = models.get(key);
+                if (element == null) {
+                    element = (T) hydrator.hydrate(node);
+                    models.put(key, element);
+                }
+            }
+            elements.add(element);
+        }
+        return elements;
+    }
+
+    /**
+     * Method to execute a cypher query, and to retrieve models of a column of the result.
+     * 
+     * @param query the cypher query, with parameters like <code>{id}</code>
+     * @param params
+     * @param column name of the column that contains model nodes
+     * @return
+     * @throws Neo4jException
+     */
+    public static <T extends Neo4jModel> List<T> cypher(String query, Map<String, Object> params, String column)
+            throws Neo4jException {
+        throw new Neo4jPlayException("cypher() Must be overriden by Neo4jModelEnhancer");
+    }
+
+    /**
+     * Execute a cypher query with the shared engine, and hydrate nodes of a column into models.
+     * 
+     * @param query
+     * @param params
+     * @param column
+     * @param className
+     * @return
+     * @throws Neo4jException
+     */
+    protected static <T extends Neo4jModel> List<T> _cypher(String query, Map<String, Object> params, String column,
+            String className) throws Neo4jException {
+        Class clazz = Play.classes.getApplicationClass(className).javaClass;
+        Iterator<Node> nodes = Neo4j.cypher(query, params).columnAs(column);
+        return hydrateAll(IteratorUtil.asIterable(nodes), clazz, false);
+    }
+
+    /**
+     * Method to execute a cypher query, and to stream models of a column of the result (@see Neo4jResult).
+     * 
+     * @param query the cypher query, with parameters like <code>{id}</code>
+     * @param params
+     * @param column name of the column that contains model nodes
+     * @return
+     */
+    public static <T extends Neo4jModel> Neo4jResult<T> stream(String query, Map<String, Object> params,
+            String column) {
+        throw new Neo4jPlayException("stream() Must be overriden by Neo4jModelEnhancer");
+    }
+
+    /**
+     * Execute a cypher query with the shared engine, and hydrate nodes of a column into models only when they are
+     * iterated.
+     * 
+     * @param query
+     * @param params
+     * @param column
+     * @param className
+     * @return
+     */
+    protected static <T extends Neo4jModel> Neo4jResult<T> _stream(String query, Map<String, Object> params,
+            String column, String className) {
+        Class clazz = Play.classes.getApplicationClass(className).javaClass;
+        Iterator<Node> nodes = Neo4j.cypher(query, params).columnAs(column);
+        return new Neo4jResult<T>(nodes, new Neo4jHydrator(clazz, false).<T> mapper());
+    }
+
+    /**
+     * Method to query a Neo4j index, and to stream models of the hits (@see Neo4jResult). Hits are closed with the
+     * result.
+     * 
+     * @param indexname
+     * @param query
+     * @return
+     */
+    public static <T extends Neo4jModel> Neo4jResult<T> streamIndex(String indexname, String query) {
+        throw new Neo4jPlayException("streamIndex() Must be overriden by Neo4jModelEnhancer");
+    }
+
+    /**
+     * Query a Neo4j index, and hydrate hits into models only when they are iterated.
+     * 
+     * @param indexname
+     * @param query
+     * @param className
+     * @return
+     */
+    protected static <T extends Neo4jModel> Neo4jResult<T> _streamIndex(String indexname, String query,
+            String className) {
+        Class clazz = Play.classes.getApplicationClass(className).javaClass;
+        IndexHits<Node> hits = Neo4j.db().index().forNodes(indexname).query(query);
+        return new Neo4jResult<T>(hits, new Neo4jHydrator(clazz, false).<T> mapper());
+    }
+
     /**
      * Retrieve a Neo4jModel from a node.
      * 
@@ -311,21 +552,67 @@ public abstract class Neo4jModel {
      * @throws Neo4jException
      */
     public static <T extends Neo4jModel> T getByNode(Node node) throws Neo4jException {
-        Class clazz = Neo4jUtils.getClassNameFromNode(node);
-        Neo4jModel nodeWrapper = null;
-        try {
-            // getting & calling default constructor
-            Constructor c;
-            c = clazz.getDeclaredConstructor();
-            c.setAccessible(true);
-            nodeWrapper = (Neo4jModel) c.newInstance();
-            // getting settter for node
-            Method setNode = clazz.getMethod("setNode", Node.class);
-            setNode.invoke(nodeWrapper, node);
-        } catch (Exception e) {
-            throw new Neo4jException(e);
+        return (T) new Neo4jHydrator(null, false).hydrate(node);
+    }
+
+    /**
+     * Retrieve Neo4jModels from nodes. Class, constructor and relation fields of models are resolved once for all the
+     * nodes, so prefer this method to a loop on <code>getByNode</code>. The returned list has the same order than
+     * <code>nodes</code>, with a <code>null</code> value for each <code>null</code> node.
+     * 
+     * @param nodes
+     * @return
+     * @throws Neo4jException
+     */
+    public static <T extends Neo4jModel> List<T> hydrateAll(Iterable<Node> nodes) throws Neo4jException {
+        return hydrateAll(nodes, null, false);
+    }
+
+    /**
+     * Retrieve Neo4jModels from nodes (@see <code>hydrateAll(Iterable<Node>)</code>).
+     * 
+     * @param nodes
+     * @param skipRelations if true, not lazy and unique relations of models are not loaded.
+     * @return
+     * @throws Neo4jException
+     */
+    public static <T extends Neo4jModel> List<T> hydrateAll(Iterable<Node> nodes, boolean skipRelations)
+            throws Neo4jException {
+        return hydrateAll(nodes, null, skipRelations);
+    }
+
+    /**
+     * Retrieve Neo4jModels from nodes (@see <code>hydrateAll(Iterable<Node>)</code>).
+     * 
+     * @param nodes
+     * @param clazz the class of all nodes if you know it, so it's not resolved for each node. Can be null.
+     * @param skipRelations if true, not lazy and unique relations of models are not loaded.
+     * @return
+     * @throws Neo4jException
+     */
+    public static <T extends Neo4jModel> List<T> hydrateAll(Iterable<Node> nodes, Class<T> clazz,
+            boolean skipRelations) throws Neo4jException {
+        return hydrateAll(nodes, clazz, skipRelations, false);
+    }
+
+    /**
+     * Retrieve Neo4jModels from nodes (@see <code>hydrateAll(Iterable<Node>)</code>).
+     * 
+     * @param nodes
+     * @param clazz the class of all nodes if you know it, so it's not resolved for each node. Can be null.
+     * @param skipRelations if true, not lazy and unique relations of models are not loaded.
+     * @param parallel if true, large batches are split between threads of the module pool (@see Neo4jExecutor). Order
+     *            of the result is the same.
+     * @return
+     * @throws Neo4jException
+     */
+    public static <T extends Neo4jModel> List<T> hydrateAll(Iterable<Node> nodes, Class<T> clazz,
+            boolean skipRelations, boolean parallel) throws Neo4jException {
+        Neo4jHydrator hydrator = new Neo4jHydrator(clazz, skipRelations);
+        if (parallel) {
+            return hydrator.hydrateAllParallel(nodes);
         }
-        return (T) nodeWrapper;
+        return hydrator.hydrateAll(nodes);
     }
 
     /**
@@ -354,19 +641,4 @@ public abstract class Neo4jModel {
         return getFactory(clazz);
     }
 
-    /**
-     * Method to delete orphelan node ... when garbage collector is running.
-     */
-    protected void finalize() throws Throwable {
-        if (this.node.hasRelationship() == false) {
-            Transaction tx = Neo4j.db().beginTx();
-            try {
-                this.node.delete();
-                tx.success();
-            } finally {
-                tx.finish();
-            }
-        }
-    }
-
 }
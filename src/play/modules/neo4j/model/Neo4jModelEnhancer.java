@@ -27,6 +27,7 @@ import javassist.CtField;
 import javassist.CtMethod;
 import javassist.CtNewConstructor;
 import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
 
 import org.neo4j.graphdb.Node;
 
@@ -213,6 +214,50 @@ public class Neo4jModelEnhancer extends Enhancer {
         CtMethod getByKeyMethod = CtMethod.make(codeGetByKey, ctClass);
         ctClass.addMethod(getByKeyMethod);
 
+        // ~~~~~~~~~~~~~~~
+        // Adding getByKeys() method
+        //@formatter:off
+        String codeGetByKeys = "public static java.util.List getByKeys(java.util.Collection keys) throws play.modules.neo4j.exception.Neo4jException {" +
+                                    "return _getByKeys(keys, \"" + entityName + "\");" +
+                                "}";
+        //@formatter:on
+        Logger.debug(codeGetByKeys);
+        CtMethod getByKeysMethod = CtMethod.make(codeGetByKeys, ctClass);
+        ctClass.addMethod(getByKeysMethod);
+
+        // ~~~~~~~~~~~~~~~
+        // Adding cypher() method
+        //@formatter:off
+        String codeCypher = "public static java.util.List cypher(String query, java.util.Map params, String column) throws play.modules.neo4j.exception.Neo4jException {" +
+                                "return _cypher(query, params, column, \"" + entityName + "\");" +
+                            "}";
+        //@formatter:on
+        Logger.debug(codeCypher);
+        CtMethod cypherMethod = CtMethod.make(codeCypher, ctClass);
+        ctClass.addMethod(cypherMethod);
+
+        // ~~~~~~~~~~~~~~~
+        // Adding stream() method
+        //@formatter:off
+        String codeStream = "public static play.modules.neo4j.model.Neo4jResult stream(String query, java.util.Map params, String column) {" +
+                                "return _stream(query, params, column, \"" + entityName + "\");" +
+                            "}";
+        //@formatter:on
+        Logger.debug(codeStream);
+        CtMethod streamMethod = CtMethod.make(codeStream, ctClass);
+        ctClass.addMethod(streamMethod);
+
+        // ~~~~~~~~~~~~~~~
+        // Adding streamIndex() method
+        //@formatter:off
+        String codeStreamIndex = "public static play.modules.neo4j.model.Neo4jResult streamIndex(String indexname, String query) {" +
+                                    "return _streamIndex(indexname, query, \"" + entityName + "\");" +
+                                 "}";
+        //@formatter:on
+        Logger.debug(codeStreamIndex);
+        CtMethod streamIndexMethod = CtMethod.make(codeStreamIndex, ctClass);
+        ctClass.addMethod(streamIndexMethod);
+
         // ~~~~~~~~~~~~~~~
         // Adding findAll() method
         //@formatter:off
@@ -224,6 +269,15 @@ public class Neo4jModelEnhancer extends Enhancer {
         CtMethod findAllMethod = CtMethod.make(codeFindAll, ctClass);
         ctClass.addMethod(findAllMethod);
 
+        //@formatter:off
+        String codeParallelFindAll = "public static java.util.List findAll(boolean parallel) {" +
+                                        "return " + entityName + "._findAll(\"" + entityName + "\", parallel);" +
+                                     "}";
+        //@formatter:on
+        Logger.debug(codeParallelFindAll);
+        CtMethod parallelFindAllMethod = CtMethod.make(codeParallelFindAll, ctClass);
+        ctClass.addMethod(parallelFindAllMethod);
+
         // ~~~~~~~~~~~~~~~
         // Adding queryIndex() method
         //@formatter:off
@@ -235,6 +289,27 @@ public class Neo4jModelEnhancer extends Enhancer {
         CtMethod queryIndexMethod = CtMethod.make(queryIndex, ctClass);
         ctClass.addMethod(queryIndexMethod);
 
+        //@formatter:off
+        String parallelQueryIndex = "public static java.util.List queryIndex(String indexname, String query, boolean parallel) {" +
+                                        "return " + entityName + "._queryIndex(indexname, query, parallel);" +
+                                    "}";
+        //@formatter:on
+        Logger.debug(parallelQueryIndex);
+        CtMethod parallelQueryIndexMethod = CtMethod.make(parallelQueryIndex, ctClass);
+        ctClass.addMethod(parallelQueryIndexMethod);
+
+        // ~~~~~~~~~~~~~~~
+        // Adding project() method
+        //@formatter:off
+        String project = "public static play.modules.neo4j.model.Neo4jProjection project(String[] properties) {" +
+                            "return " + entityName + "._project(\"" + entityName + "\", properties);" +
+                         "}";
+        //@formatter:on
+        Logger.debug(project);
+        CtMethod projectMethod = CtMethod.make(project, ctClass);
+        projectMethod.setModifiers(projectMethod.getModifiers() | AccessFlag.VARARGS);
+        ctClass.addMethod(projectMethod);
+
         // Done.
         applicationClass.enhancedByteCode = ctClass.toBytecode();
         ctClass.defrost();
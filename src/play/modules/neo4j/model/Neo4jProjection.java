@@ -0,0 +1,259 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.model;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.IndexHits;
+
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.util.Binder;
+import play.modules.neo4j.util.Neo4j;
+import play.modules.neo4j.util.Neo4jUtils;
+
+/**
+ * Projection of a model class on some of its properties. A projection doesn't build any model and doesn't load any
+ * relation : each node is transformed into a <code>Map</code> of property name / value, read directly from the node
+ * (the <code>key</code> is always in the map). It's usefull for listing pages, that only need a few fields.
+ * 
+ * <u>Exemple :</u> <code>User.project("firstname", "lastname").findAll(0, 20)</code>
+ * 
+ * @author bsimard
+ */
+public class Neo4jProjection {
+
+    /**
+     * The model class.
+     */
+    private Class    clazz;
+
+    /**
+     * Name of the properties of the projection.
+     */
+    private String[] properties;
+
+    /**
+     * Type of each property (to convert neo4j value to java value, like for date), <code>null</code> if the property
+     * is not a field of the model.
+     */
+    private Class[]  types;
+
+    /**
+     * Constructor.
+     * 
+     * @param clazz
+     * @param properties
+     */
+    public Neo4jProjection(Class clazz, String... properties) {
+        this.clazz = clazz;
+        this.properties = properties;
+        this.types = new Class[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            try {
+                Field field = clazz.getField(properties[i]);
+                this.types[i] = field.getType();
+            } catch (NoSuchFieldException e) {
+                this.types[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Project all nodes of the model class. Be carefull there is no limitation.
+     * 
+     * @return
+     * @throws Neo4jException
+     */
+    public List<Map<String, Object>> findAll() throws Neo4jException {
+        return findAll(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Project a page of the nodes of the model class.
+     * 
+     * @param offset number of node to skip
+     * @param limit max number of node to return
+     * @return
+     * @throws Neo4jException
+     */
+    public List<Map<String, Object>> findAll(int offset, int limit) throws Neo4jException {
+        return select(Neo4jModel.getFactory(clazz).findAllNodes(), offset, limit);
+    }
+
+    /**
+     * Query a Neo4j index and project result nodes.
+     * 
+     * @param indexname
+     * @param query
+     * @return
+     */
+    public List<Map<String, Object>> queryIndex(String indexname, String query) {
+        return queryIndex(indexname, query, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Query a Neo4j index and project a page of result nodes.
+     * 
+     * @param indexname
+     * @param query
+     * @param offset number of node to skip
+     * @param limit max number of node to return
+     * @return
+     */
+    public List<Map<String, Object>> queryIndex(String indexname, String query, int offset, int limit) {
+        IndexHits<Node> hits = Neo4j.db().index().forNodes(indexname).query(query);
+        try {
+            return select(hits, offset, limit);
+        } finally {
+            hits.close();
+        }
+    }
+
+    /**
+     * Project nodes by their keys. The returned list has the same order than <code>keys</code>, with a
+     * <code>null</code> value for each key that doesn't exist.
+     * 
+     * @param keys
+     * @return
+     * @throws Neo4jException
+     */
+    public List<Map<String, Object>> getByKeys(Collection<Long> keys) throws Neo4jException {
+        Map<Long, Node> nodes = Neo4jModel.getFactory(clazz).getByKeys(keys,
+                Neo4jUtils.getIndexName(clazz.getSimpleName(), "key"));
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(keys.size());
+        for (Long key : keys) {
+            rows.add(select(nodes.get(key)));
+        }
+        return rows;
+    }
+
+    /**
+     * Execute a cypher query with the shared engine, and project nodes of a column only when they are iterated (@see
+     * Neo4jResult).
+     * 
+     * @param query
+     * @param params
+     * @param column
+     * @return
+     */
+    public Neo4jResult<Map<String, Object>> stream(String query, Map<String, Object> params, String column) {
+        Iterator<Node> nodes = Neo4j.cypher(query, params).columnAs(column);
+        return stream(nodes);
+    }
+
+    /**
+     * Query a Neo4j index, and project hits only when they are iterated (@see Neo4jResult). Hits are closed with the
+     * result.
+     * 
+     * @param indexname
+     * @param query
+     * @return
+     */
+    public Neo4jResult<Map<String, Object>> streamIndex(String indexname, String query) {
+        IndexHits<Node> hits = Neo4j.db().index().forNodes(indexname).query(query);
+        return new Neo4jResult<Map<String, Object>>(hits, mapper());
+    }
+
+    /**
+     * Project some nodes only when they are iterated (@see Neo4jResult).
+     * 
+     * @param nodes
+     * @return
+     */
+    public Neo4jResult<Map<String, Object>> stream(Iterator<Node> nodes) {
+        return new Neo4jResult<Map<String, Object>>(nodes, mapper());
+    }
+
+    /**
+     * Retrieve a mapper that projects nodes (for streaming results).
+     * 
+     * @return
+     */
+    private Neo4jResult.Mapper<Map<String, Object>> mapper() {
+        return new Neo4jResult.Mapper<Map<String, Object>>() {
+
+            @Override
+            public Map<String, Object> map(Node node) {
+                return select(node);
+            }
+        };
+    }
+
+    /**
+     * Project some nodes (from a cypher query for example).
+     * 
+     * @param nodes
+     * @return
+     */
+    public List<Map<String, Object>> select(Iterable<Node> nodes) {
+        return select(nodes, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Project a page of some nodes.
+     * 
+     * @param nodes
+     * @param offset number of node to skip
+     * @param limit max number of node to return
+     * @return
+     */
+    public List<Map<String, Object>> select(Iterable<Node> nodes, int offset, int limit) {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(Math.min(limit, 100));
+        int index = 0;
+        for (Node node : nodes) {
+            if (rows.size() >= limit) {
+                break;
+            }
+            if (index++ >= offset) {
+                rows.add(select(node));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Project a node.
+     * 
+     * @param node
+     * @return a map of property name / value, or <code>null</code> if node is null.
+     */
+    public Map<String, Object> select(Node node) {
+        if (node == null) {
+            return null;
+        }
+        Map<String, Object> row = new LinkedHashMap<String, Object>(properties.length * 2 + 2);
+        row.put("key", node.getProperty("key", null));
+        for (int i = 0; i < properties.length; i++) {
+            Object value = node.getProperty(properties[i], null);
+            if (types[i] != null) {
+                value = Binder.bindFromNeo4jFormat(value, types[i]);
+            }
+            row.put(properties[i], value);
+        }
+        return row;
+    }
+
+}
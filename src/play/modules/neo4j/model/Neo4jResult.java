@@ -0,0 +1,205 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.IndexHits;
+
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.exception.Neo4jPlayException;
+
+/**
+ * Streaming result of a query. Nodes are mapped (to models, or to projections) only when they are iterated, so the
+ * memory stays bounded even for large reports. The result can be iterated only once, and it's closed as soon as the
+ * last element (or the <code>limit</code>) is reached, or when <code>close()</code> is called.
+ * 
+ * <u>Exemple :</u>
+ * 
+ * <pre>
+ * Neo4jResult&lt;User&gt; users = User.stream(&quot;START n=node(*) RETURN n&quot;, params, &quot;n&quot;);
+ * users.limit(100);
+ * try {
+ *     for (User user : users) {
+ *         ...
+ *     }
+ * } finally {
+ *     users.close();
+ * }
+ * </pre>
+ * 
+ * @author bsimard
+ */
+public class Neo4jResult<T> implements Iterable<T> {
+
+    /**
+     * Transform a node into an element of the result.
+     */
+    public interface Mapper<T> {
+
+        T map(Node node) throws Neo4jException;
+    }
+
+    /**
+     * Nodes of the result, <code>null</code> when the result is closed.
+     */
+    private Iterator<Node>  nodes;
+
+    /**
+     * The mapper.
+     */
+    private Mapper<T>       mapper;
+
+    /**
+     * Index hits to close with the result (if the result comes from an index query).
+     */
+    private IndexHits<Node> hits;
+
+    /**
+     * Max number of element, <code>-1</code> for no limit.
+     */
+    private int             limit = -1;
+
+    /**
+     * Number of element already iterated.
+     */
+    private int             count = 0;
+
+    /**
+     * Is the result already iterated ?
+     */
+    private boolean         consumed;
+
+    /**
+     * Constructor.
+     * 
+     * @param nodes
+     * @param mapper
+     */
+    public Neo4jResult(Iterator<Node> nodes, Mapper<T> mapper) {
+        this.nodes = nodes;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Constructor for an index query result. Hits are closed with the result.
+     * 
+     * @param hits
+     * @param mapper
+     */
+    public Neo4jResult(IndexHits<Node> hits, Mapper<T> mapper) {
+        this(hits.iterator(), mapper);
+        this.hits = hits;
+    }
+
+    /**
+     * Limit the number of element of the result. Nodes after the limit are never read.
+     * 
+     * @param limit
+     * @return the result
+     */
+    public Neo4jResult<T> limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Close the result, and free the underlying query result.
+     */
+    public void close() {
+        nodes = null;
+        if (hits != null) {
+            hits.close();
+            hits = null;
+        }
+    }
+
+    /**
+     * Retrieve the first element of the result (and close it).
+     * 
+     * @return the first element, or <code>null</code> if the result is empty.
+     */
+    public T first() {
+        try {
+            Iterator<T> iterator = iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Consume the result into a list (be carefull to set a limit for large result).
+     * 
+     * @return
+     */
+    public List<T> asList() {
+        List<T> elements = new ArrayList<T>(limit > 0 ? Math.min(limit, 100) : 10);
+        for (T element : this) {
+            elements.add(element);
+        }
+        return elements;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (consumed) {
+            throw new Neo4jPlayException("A Neo4jResult can be iterated only once");
+        }
+        consumed = true;
+        return new Iterator<T>() {
+
+            @Override
+            public boolean hasNext() {
+                if (nodes == null) {
+                    return false;
+                }
+                if ((limit >= 0 && count >= limit) || !nodes.hasNext()) {
+                    close();
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                count++;
+                try {
+                    return mapper.map(nodes.next());
+                } catch (Neo4jException e) {
+                    close();
+                    throw new Neo4jPlayException(e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
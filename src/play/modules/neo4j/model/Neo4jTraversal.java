@@ -0,0 +1,253 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.model;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+
+import play.modules.neo4j.exception.Neo4jPlayException;
+
+/**
+ * Fluent builder of a traversal from a model, on the neo4j <code>Traversal</code> framework. The walk is breadth first,
+ * only follows the declared relationship types, and is bounded by its depth (1 by default). Nodes are hydrated only
+ * when the result is iterated (@see Neo4jResult).
+ * 
+ * <u>Exemple :</u> <code>user.traverse().out("IS_FRIEND").depth(1, 2).unique().limit(20).as(User.class)</code>
+ * 
+ * @author bsimard
+ */
+public class Neo4jTraversal {
+
+    /**
+     * Start node of the traversal.
+     */
+    private Node                 start;
+
+    /**
+     * The neo4j traversal description.
+     */
+    private TraversalDescription description = Traversal.description().breadthFirst();
+
+    /**
+     * Is there at least one relationship type to follow ?
+     */
+    private boolean              hasType     = false;
+
+    /**
+     * Depth of returned nodes.
+     */
+    private int                  minDepth    = 1;
+    private int                  maxDepth    = 1;
+
+    /**
+     * If true, a node is returned (and expanded) only once.
+     */
+    private boolean              unique      = false;
+
+    /**
+     * Max number of returned nodes, <code>-1</code> for no limit.
+     */
+    private int                  limit       = -1;
+
+    /**
+     * Constructor.
+     * 
+     * @param start
+     */
+    public Neo4jTraversal(Node start) {
+        if (start == null) {
+            throw new Neo4jPlayException("Can't traverse from a model that is not saved");
+        }
+        this.start = start;
+    }
+
+    /**
+     * Follow outgoing relationships of this type.
+     * 
+     * @param type
+     * @return the traversal
+     */
+    public Neo4jTraversal out(String type) {
+        return relationships(DynamicRelationshipType.withName(type), Direction.OUTGOING);
+    }
+
+    /**
+     * Follow outgoing relationships of this type.
+     * 
+     * @param type
+     * @return the traversal
+     */
+    public Neo4jTraversal out(RelationshipType type) {
+        return relationships(type, Direction.OUTGOING);
+    }
+
+    /**
+     * Follow incoming relationships of this type.
+     * 
+     * @param type
+     * @return the traversal
+     */
+    public Neo4jTraversal in(String type) {
+        return relationships(DynamicRelationshipType.withName(type), Direction.INCOMING);
+    }
+
+    /**
+     * Follow incoming relationships of this type.
+     * 
+     * @param type
+     * @return the traversal
+     */
+    public Neo4jTraversal in(RelationshipType type) {
+        return relationships(type, Direction.INCOMING);
+    }
+
+    /**
+     * Follow relationships of this type, in both direction.
+     * 
+     * @param type
+     * @return the traversal
+     */
+    public Neo4jTraversal both(String type) {
+        return relationships(DynamicRelationshipType.withName(type), Direction.BOTH);
+    }
+
+    /**
+     * Follow relationships of this type, in both direction.
+     * 
+     * @param type
+     * @return the traversal
+     */
+    public Neo4jTraversal both(RelationshipType type) {
+        return relationships(type, Direction.BOTH);
+    }
+
+    /**
+     * Return nodes at this depth only.
+     * 
+     * @param depth
+     * @return the traversal
+     */
+    public Neo4jTraversal depth(int depth) {
+        return depth(depth, depth);
+    }
+
+    /**
+     * Return nodes between these depths (inclusive). The traversal never goes deeper than <code>max</code>.
+     * 
+     * @param min
+     * @param max
+     * @return the traversal
+     */
+    public Neo4jTraversal depth(int min, int max) {
+        if (min < 0 || max < min) {
+            throw new Neo4jPlayException("Invalid traversal depth [" + min + ", " + max + "]");
+        }
+        this.minDepth = min;
+        this.maxDepth = max;
+        return this;
+    }
+
+    /**
+     * Return (and expand) each node only once, even if there is many path to it.
+     * 
+     * @return the traversal
+     */
+    public Neo4jTraversal unique() {
+        this.unique = true;
+        return this;
+    }
+
+    /**
+     * Limit the number of returned nodes.
+     * 
+     * @param limit
+     * @return the traversal
+     */
+    public Neo4jTraversal limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Execute the traversal, and return only nodes of this model class.
+     * 
+     * @param clazz
+     * @return
+     */
+    public <T extends Neo4jModel> Neo4jResult<T> as(Class<T> clazz) {
+        final RelationshipType ref2node = DynamicRelationshipType.withName(clazz.getSimpleName().toUpperCase());
+        Evaluator classEvaluator = new Evaluator() {
+
+            @Override
+            public Evaluation evaluate(Path path) {
+                return Evaluation.ofIncludes(path.endNode().hasRelationship(ref2node, Direction.INCOMING));
+            }
+        };
+        return result(description.evaluator(classEvaluator), new Neo4jHydrator(clazz, false).<T> mapper());
+    }
+
+    /**
+     * Execute the traversal, and return models (the class of each model is resolved from its node).
+     * 
+     * @return
+     */
+    public <T extends Neo4jModel> Neo4jResult<T> models() {
+        return result(description, new Neo4jHydrator(null, false).<T> mapper());
+    }
+
+    /**
+     * Add a relationship type to follow.
+     * 
+     * @param type
+     * @param direction
+     * @return the traversal
+     */
+    private Neo4jTraversal relationships(RelationshipType type, Direction direction) {
+        this.description = description.relationships(type, direction);
+        this.hasType = true;
+        return this;
+    }
+
+    /**
+     * Build the result of the traversal.
+     * 
+     * @param traversal
+     * @param mapper
+     * @return
+     */
+    private <T> Neo4jResult<T> result(TraversalDescription traversal, Neo4jResult.Mapper<T> mapper) {
+        if (!hasType) {
+            throw new Neo4jPlayException("A traversal must follow at least one relationship type");
+        }
+        TraversalDescription complete = traversal.evaluator(Evaluators.includingDepths(minDepth, maxDepth))
+                .uniqueness(unique ? Uniqueness.NODE_GLOBAL : Uniqueness.NODE_PATH);
+        Neo4jResult<T> result = new Neo4jResult<T>(complete.traverse(start).nodes().iterator(), mapper);
+        return result.limit(limit);
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.relationship;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.neo4j.graphdb.Node;
+
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.Binder;
+
+/**
+ * Merged feed of many timelines (@see Neo4jTimeline), like the home page of a social network. Each timeline is ordered
+ * by a property (the most recent first), so the feed only reads the head of each chain, and merges them with a heap :
+ * the first <code>limit</code> elements cost <code>O(limit * log(number of timelines))</code>, whatever is the length of
+ * the chains.
+ * 
+ * <u>Exemple :</u> <code>List&lt;Touite&gt; feed = Neo4jFeed.merge(timelines, "created", 10);</code>
+ * 
+ * @author bsimard
+ */
+public class Neo4jFeed {
+
+    /**
+     * Merge timelines by a property, and retrieve the first elements.
+     * 
+     * @param timelines timelines to merge, each one must be ordered by the property (the greatest value first).
+     * @param property the ordered property (a date, a number or a string)
+     * @param limit max number of element
+     * @return
+     * @throws Neo4jException
+     */
+    public static <T extends Neo4jModel> List<T> merge(Collection<Neo4jTimeline> timelines, String property,
+            int limit) throws Neo4jException {
+        PriorityQueue<Head> heap = new PriorityQueue<Head>(Math.max(1, timelines.size()), new HeadComparator());
+        for (Neo4jTimeline timeline : timelines) {
+            push(heap, timeline, timeline.next(timeline.getOwner().getNode()), property);
+        }
+        List<Node> nodes = new ArrayList<Node>(limit);
+        while (nodes.size() < limit && !heap.isEmpty()) {
+            Head head = heap.poll();
+            nodes.add(head.node);
+            push(heap, head.timeline, head.timeline.next(head.node), property);
+        }
+        return Neo4jModel.hydrateAll(nodes);
+    }
+
+    /**
+     * Add the current node of a timeline into the heap.
+     * 
+     * @param heap
+     * @param timeline
+     * @param node the current node of the timeline, or <code>null</code> at the end of the timeline.
+     * @param property
+     */
+    private static void push(PriorityQueue<Head> heap, Neo4jTimeline timeline, Node node, String property) {
+        if (node != null) {
+            heap.add(new Head(timeline, node, sortValue(node.getProperty(property, null))));
+        }
+    }
+
+    /**
+     * Transform a database value into a comparable value (dates are stored as string, and decoded by the
+     * <code>Binder</code>).
+     * 
+     * @param value
+     * @return
+     */
+    private static Comparable sortValue(Object value) {
+        if (value instanceof String && ((String) value).startsWith(Binder.DATE_PREFIX)) {
+            return (Date) Binder.bindFromNeo4jFormat(value, Date.class);
+        }
+        if (value instanceof Comparable) {
+            return (Comparable) value;
+        }
+        return null;
+    }
+
+    /**
+     * The current node of a timeline.
+     */
+    private static class Head {
+
+        private Neo4jTimeline timeline;
+        private Node          node;
+        private Comparable    value;
+
+        private Head(Neo4jTimeline timeline, Node node, Comparable value) {
+            this.timeline = timeline;
+            this.node = node;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Greatest value first, nodes without value at the end, and the most recent node first for same values.
+     */
+    private static class HeadComparator implements Comparator<Head> {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare(Head head1, Head head2) {
+            if (head1.value == null || head2.value == null) {
+                if (head1.value != head2.value) {
+                    return (head1.value == null) ? 1 : -1;
+                }
+            }
+            else {
+                int result = head2.value.compareTo(head1.value);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            long id1 = head1.node.getId();
+            long id2 = head2.node.getId();
+            return (id1 > id2) ? -1 : ((id1 == id2) ? 0 : 1);
+        }
+    }
+
+}
@@ -20,16 +20,24 @@ package play.modules.neo4j.relationship;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
 
 import play.Logger;
+import play.modules.neo4j.exception.Neo4jException;
 import play.modules.neo4j.exception.Neo4jPlayException;
 import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.LongHashSet;
+import play.modules.neo4j.util.LongIntHashMap;
+import play.modules.neo4j.util.Neo4j;
 
 public class Neo4jRelationFactory {
 
@@ -50,20 +58,13 @@ public class Neo4jRelationFactory {
         if (node != null) {
             try {
                 if (field.getType().isAssignableFrom(List.class)) {
-                    node.getRelationships(Direction.valueOf(direction), DynamicRelationshipType.withName(relationName))
-                            .iterator();
+                    // collect related nodes, and build all models in one pass
+                    List<Node> items = new ArrayList<Node>();
                     for (Relationship relation : node.getRelationships(Direction.valueOf(direction),
                             DynamicRelationshipType.withName(relationName))) {
-                        Node item = null;
-                        if (direction.equalsIgnoreCase("OUTGOING")) {
-                            item = relation.getEndNode();
-                        }
-                        else {
-                            item = relation.getStartNode();
-                        }
-                        T nodeWrapper = Neo4jModel.getByNode(item);
-                        list.add(nodeWrapper);
+                        items.add(relation.getOtherNode(node));
                     }
+                    list = Neo4jModel.hydrateAll(items);
                 }
                 else {
                     throw new Neo4jPlayException("Field with 'Neo4jRelatedTo' annotation must be a List");
@@ -122,4 +123,107 @@ public class Neo4jRelationFactory {
         }
         return nodeWrapper;
     }
+
+    /**
+     * Method to recommend nodes that are linked to a model in some hops (like the friends of my friends). Candidates
+     * are scored by their number of paths from the model, and the <code>limit</code> best ones are returned (the
+     * greatest score first, then the smallest node id). The model itself, and nodes that already have an outgoing
+     * relationship of this type from the model, are never recommended.
+     * 
+     * Counters are primitive maps, and only the <code>limit</code> best candidates are kept into a heap, so the walk
+     * doesn't build any path. With <code>fanOut</code>, only the first relationships of each node are followed, so a
+     * node with a lot of relationships doesn't explode the walk.
+     * 
+     * @param model the start model
+     * @param relationName type of the relationship to follow
+     * @param direction direction of the relationship to follow ("OUTGOING", "INCOMING" or "BOTH")
+     * @param minHops minimal number of hops of a candidate (2 for friends of friends)
+     * @param maxHops maximal number of hops of the walk
+     * @param limit max number of recommended models
+     * @param fanOut max number of relationship followed per node and per hop, <code>0</code> for no limit
+     * @return
+     * @throws Neo4jException
+     */
+    public static <T extends Neo4jModel> List<T> recommend(Neo4jModel model, String relationName, String direction,
+            int minHops, int maxHops, int limit, int fanOut) throws Neo4jException {
+        Node start = model.getNode();
+        if (start == null) {
+            throw new Neo4jPlayException("Can't do recommendations for a model that is not saved");
+        }
+        RelationshipType type = DynamicRelationshipType.withName(relationName);
+        Direction walkDirection = Direction.valueOf(direction);
+
+        // the model and its neighbours are excluded
+        LongHashSet excluded = new LongHashSet(16);
+        excluded.add(start.getId());
+        for (Relationship relation : start.getRelationships(type, Direction.OUTGOING)) {
+            excluded.add(relation.getEndNode().getId());
+        }
+
+        // for each hop, we count the number of paths to each node of the frontier
+        LongIntHashMap scores = new LongIntHashMap(64);
+        LongIntHashMap frontier = new LongIntHashMap(1);
+        frontier.add(start.getId(), 1);
+        for (int hop = 1; hop <= maxHops && frontier.size() > 0; hop++) {
+            LongIntHashMap next = new LongIntHashMap(frontier.size() * 4);
+            for (int slot = 0; slot < frontier.capacity(); slot++) {
+                long id = frontier.keyAt(slot);
+                if (id < 0) {
+                    continue;
+                }
+                Node node = Neo4j.db().getNodeById(id);
+                int nbRelation = 0;
+                for (Relationship relation : node.getRelationships(type, walkDirection)) {
+                    if (fanOut > 0 && nbRelation++ >= fanOut) {
+                        break;
+                    }
+                    next.add(relation.getOtherNode(node).getId(), frontier.valueAt(slot));
+                }
+            }
+            if (hop >= minHops) {
+                for (int slot = 0; slot < next.capacity(); slot++) {
+                    long id = next.keyAt(slot);
+                    if (id >= 0 && !excluded.contains(id)) {
+                        scores.add(id, next.valueAt(slot));
+                    }
+                }
+            }
+            frontier = next;
+        }
+
+        // top-K with a bounded heap, where the head is the worst kept candidate
+        PriorityQueue<long[]> best = new PriorityQueue<long[]>(Math.max(1, limit) + 1, new CandidateComparator());
+        for (int slot = 0; slot < scores.capacity() && limit > 0; slot++) {
+            long id = scores.keyAt(slot);
+            if (id >= 0) {
+                best.add(new long[] { scores.valueAt(slot), id });
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        Node[] nodes = new Node[best.size()];
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            nodes[i] = Neo4j.db().getNodeById(best.poll()[1]);
+        }
+        return Neo4jModel.hydrateAll(Arrays.asList(nodes));
+    }
+
+    /**
+     * Order of candidates (<code>{score, node id}</code>) from the worst to the best : the smallest score first, then
+     * the greatest node id.
+     */
+    private static class CandidateComparator implements Comparator<long[]> {
+
+        @Override
+        public int compare(long[] candidate1, long[] candidate2) {
+            if (candidate1[0] != candidate2[0]) {
+                return (candidate1[0] < candidate2[0]) ? -1 : 1;
+            }
+            if (candidate1[1] != candidate2[1]) {
+                return (candidate1[1] > candidate2[1]) ? -1 : 1;
+            }
+            return 0;
+        }
+    }
 }
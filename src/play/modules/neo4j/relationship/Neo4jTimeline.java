@@ -0,0 +1,240 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.relationship;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+import play.modules.neo4j.annotation.Neo4jUniqueRelation;
+import play.modules.neo4j.exception.Neo4jException;
+import play.modules.neo4j.exception.Neo4jPlayException;
+import play.modules.neo4j.model.Neo4jModel;
+import play.modules.neo4j.util.Neo4j;
+
+/**
+ * Timeline of a model : the chain of nodes linked by a relationship in line mode (@see Neo4jUniqueRelation), from the
+ * most recent to the oldest one. The chain is read page by page, from its head, and a page only reads its own nodes.
+ * 
+ * <u>Exemple :</u>
+ * 
+ * <pre>
+ * Neo4jTimeline.Page&lt;Touite&gt; page = user.timeline(&quot;NEXT&quot;).page(null, 10);
+ * // next page
+ * page = user.timeline(&quot;NEXT&quot;).page(page.getCursor(), 10);
+ * </pre>
+ * 
+ * @author bsimard
+ */
+public class Neo4jTimeline {
+
+    /**
+     * The owner of the timeline (the head of the chain).
+     */
+    private Neo4jModel       owner;
+
+    /**
+     * The relationship type of the chain.
+     */
+    private RelationshipType type;
+
+    /**
+     * Direction of the chain, from the owner.
+     */
+    private Direction        direction = Direction.OUTGOING;
+
+    /**
+     * The field of the owner that has the relation, if there is one.
+     */
+    private Field            field;
+
+    /**
+     * Constructor. If the owner has a <code>Neo4jUniqueRelation</code> field for this relationship, its direction is
+     * used, and it must be in line mode.
+     * 
+     * @param owner
+     * @param relationName
+     */
+    public Neo4jTimeline(Neo4jModel owner, String relationName) {
+        if (owner.getNode() == null) {
+            throw new Neo4jPlayException("Can't read the timeline of a model that is not saved");
+        }
+        this.owner = owner;
+        this.type = DynamicRelationshipType.withName(relationName);
+        for (Field field : owner.getClass().getFields()) {
+            Neo4jUniqueRelation unique = field.getAnnotation(Neo4jUniqueRelation.class);
+            if (unique != null && unique.value().equals(relationName)) {
+                if (!unique.line()) {
+                    throw new Neo4jPlayException("Field " + field.getName() + " of " + owner.getClass().getName()
+                            + " is not in line mode, it can't be read as a timeline");
+                }
+                this.direction = Direction.valueOf(unique.direction());
+                this.field = field;
+            }
+        }
+    }
+
+    /**
+     * Read a page of the timeline.
+     * 
+     * @param cursor cursor of the previous page, or <code>null</code> for the first page.
+     * @param size max number of element of the page
+     * @return
+     * @throws Neo4jException
+     */
+    public <T extends Neo4jModel> Page<T> page(Long cursor, int size) throws Neo4jException {
+        Node current = owner.getNode();
+        if (cursor != null) {
+            try {
+                current = Neo4j.db().getNodeById(cursor);
+            } catch (NotFoundException e) {
+                throw new Neo4jException("Invalid timeline cursor " + cursor);
+            }
+        }
+        List<Node> nodes = new ArrayList<Node>(size);
+        Node next = next(current);
+        while (next != null && nodes.size() < size) {
+            nodes.add(next);
+            current = next;
+            next = next(current);
+        }
+        Class clazz = (field != null) ? field.getType() : null;
+        List<T> items = Neo4jModel.hydrateAll(nodes, clazz, false);
+        Long nextCursor = null;
+        if (next != null) {
+            nextCursor = current.getId();
+        }
+        return new Page<T>(items, nextCursor);
+    }
+
+    /**
+     * Add a model at the head of the timeline. The owner is locked during the operation, so concurrent prepends are
+     * serialized, and the chain stays a line (except with a remote database, that has no lock : @see RestTransaction).
+     * 
+     * @param model a saved model, that is not already into the chain.
+     * @throws Neo4jException
+     */
+    public void prepend(Neo4jModel model) throws Neo4jException {
+        if (model.getNode() == null) {
+            throw new Neo4jPlayException("You have to 'save' the model, before to add it to a timeline");
+        }
+        Neo4j.checkWritable();
+        Node ownerNode = owner.getNode();
+        Node node = model.getNode();
+        Transaction tx = Neo4j.db().beginTx();
+        try {
+            tx.acquireWriteLock(ownerNode);
+            if (node.hasRelationship(type, direction.reverse())) {
+                throw new Neo4jException("Node " + node.getId() + " is already into the timeline "
+                        + type.name());
+            }
+            Relationship head = ownerNode.getSingleRelationship(type, direction);
+            if (direction.equals(Direction.INCOMING)) {
+                node.createRelationshipTo(ownerNode, type);
+                if (head != null) {
+                    head.getStartNode().createRelationshipTo(node, type);
+                }
+            }
+            else {
+                ownerNode.createRelationshipTo(node, type);
+                if (head != null) {
+                    node.createRelationshipTo(head.getEndNode(), type);
+                }
+            }
+            if (head != null) {
+                head.delete();
+            }
+            // the field of the owner must be the new head, otherwise the next save would relink the chain
+            if (field != null && field.getType().isInstance(model)) {
+                field.set(owner, model);
+            }
+            tx.success();
+        } catch (IllegalAccessException e) {
+            tx.failure();
+            throw new Neo4jException(e);
+        } finally {
+            tx.finish();
+        }
+    }
+
+    /**
+     * @return the owner of the timeline.
+     */
+    public Neo4jModel getOwner() {
+        return owner;
+    }
+
+    /**
+     * Retrieve the next node of the chain.
+     * 
+     * @param node
+     * @return the next node, or <code>null</code> at the end of the chain
+     */
+    Node next(Node node) {
+        Relationship relation = node.getSingleRelationship(type, direction);
+        if (relation == null) {
+            return null;
+        }
+        return relation.getOtherNode(node);
+    }
+
+    /**
+     * A page of a timeline.
+     */
+    public static class Page<T> {
+
+        private List<T> items;
+        private Long    cursor;
+
+        public Page(List<T> items, Long cursor) {
+            this.items = items;
+            this.cursor = cursor;
+        }
+
+        /**
+         * @return elements of the page, from the most recent to the oldest one.
+         */
+        public List<T> getItems() {
+            return items;
+        }
+
+        /**
+         * @return the cursor to read the next page, or <code>null</code> if it's the last page.
+         */
+        public Long getCursor() {
+            return cursor;
+        }
+
+        /**
+         * @return true if there is a next page.
+         */
+        public boolean hasNext() {
+            return cursor != null;
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes of a remote transaction, sent to the batch endpoint of the server in one request when the transaction is
+ * commited. A job can reference the entity created by a previous job with <code>{id}</code>, so a node can be created
+ * and linked in the same batch.
+ * 
+ * @author bsimard
+ */
+public class RestBatch {
+
+    private List<Map<String, Object>>         jobs    = new ArrayList<Map<String, Object>>();
+
+    /**
+     * Entities created by jobs, by job id.
+     */
+    private Map<Integer, RestPropertyContainer> created = new HashMap<Integer, RestPropertyContainer>();
+
+    /**
+     * Add a job.
+     * 
+     * @param method
+     * @param to path of the API, or a reference to a created entity (like <code>{3}/properties</code>)
+     * @param body json body, or null
+     * @return the id of the job
+     */
+    public int add(String method, String to, Object body) {
+        Map<String, Object> job = new LinkedHashMap<String, Object>();
+        job.put("method", method);
+        job.put("to", to);
+        if (body != null) {
+            job.put("body", body);
+        }
+        job.put("id", jobs.size());
+        jobs.add(job);
+        return jobs.size() - 1;
+    }
+
+    /**
+     * Add a job that creates an entity.
+     * 
+     * @param method
+     * @param to
+     * @param body
+     * @param entity the created entity, its id is set when the batch is executed
+     * @return the id of the job
+     */
+    public int create(String method, String to, Map<String, Object> body, RestPropertyContainer entity) {
+        int id = add(method, to, body);
+        created.put(id, entity);
+        return id;
+    }
+
+    /**
+     * Retrieve the body of a job (to complete the properties of a created node before the batch is sent).
+     * 
+     * @param id
+     * @return
+     */
+    public Map<String, Object> body(int id) {
+        return (Map<String, Object>) jobs.get(id).get("body");
+    }
+
+    /**
+     * @return the number of jobs.
+     */
+    public int size() {
+        return jobs.size();
+    }
+
+    /**
+     * Send the batch, and set the id of created entities.
+     * 
+     * @param client
+     */
+    public void execute(RestClient client) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        for (Map<String, Object> result : client.batch(jobs)) {
+            RestPropertyContainer entity = created.get(((Number) result.get("id")).intValue());
+            if (entity != null) {
+                String location = (String) result.get("location");
+                if (location == null) {
+                    location = (String) ((Map<String, Object>) result.get("body")).get("self");
+                }
+                entity.created(client.path(location));
+            }
+        }
+    }
+
+}
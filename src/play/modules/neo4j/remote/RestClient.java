@@ -0,0 +1,237 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.graphdb.NotFoundException;
+
+import play.Logger;
+import play.modules.neo4j.exception.Neo4jPlayException;
+
+/**
+ * Json over http client of the neo4j server REST API. Connections are kept alive and reused by the JDK (up to
+ * <code>http.maxConnections</code> idle connections to the server, @see RestGraphDatabase), so each response is read
+ * until its end.
+ * 
+ * @author bsimard
+ */
+public class RestClient {
+
+    private final static ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Url of the server data endpoint, like <code>http://localhost:7474/db/data</code>.
+     */
+    private String                    url;
+    private int                       timeout;
+
+    /**
+     * Constructor.
+     * 
+     * @param url url of the server data endpoint
+     * @param timeout connect and read timeout in ms
+     */
+    public RestClient(String url, int timeout) {
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Absolute uri of a path of the API.
+     * 
+     * @param path like <code>/node/12</code>
+     * @return
+     */
+    public String uri(String path) {
+        return url + path;
+    }
+
+    /**
+     * Path of an absolute uri of the API.
+     * 
+     * @param uri
+     * @return
+     */
+    public String path(String uri) {
+        return uri.startsWith(url) ? uri.substring(url.length()) : uri;
+    }
+
+    /**
+     * GET a resource.
+     * 
+     * @param path
+     * @return the json response (Map, List, or a scalar).
+     * @throws NotFoundException if the resource doesn't exist.
+     */
+    public Object get(String path) {
+        return call("GET", path, null);
+    }
+
+    /**
+     * POST a json body.
+     * 
+     * @param path
+     * @param body
+     * @return the json response.
+     */
+    public Object post(String path, Object body) {
+        return call("POST", path, body);
+    }
+
+    /**
+     * POST a json body to an endpoint that creates a resource only if it doesn't exist yet (like
+     * <code>/index/node/{name}?unique</code>). The server does the check and the creation atomically.
+     * 
+     * @param path
+     * @param body
+     * @return null if the resource is created, or the json of the existing one.
+     */
+    public Map<String, Object> postUnique(String path, Object body) {
+        try {
+            HttpURLConnection connection = send("POST", path, body);
+            String response = read(connection.getInputStream());
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_CREATED) {
+                return null;
+            }
+            return JSON.readValue(response, Map.class);
+        } catch (IOException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * DELETE a resource.
+     * 
+     * @param path
+     */
+    public void delete(String path) {
+        call("DELETE", path, null);
+    }
+
+    /**
+     * Execute jobs with the batch endpoint, in one request (and one server transaction).
+     * 
+     * @param jobs
+     * @return results of jobs, in the same order.
+     */
+    public List<Map<String, Object>> batch(List<Map<String, Object>> jobs) {
+        return (List<Map<String, Object>>) call("POST", "/batch", jobs);
+    }
+
+    /**
+     * Url encoding of a path segment or a query parameter.
+     * 
+     * @param value
+     * @return
+     */
+    public static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * Do a request.
+     * 
+     * @param method
+     * @param path
+     * @param body json body, or null.
+     * @return the json response, or null if there is no content.
+     */
+    private Object call(String method, String path, Object body) {
+        try {
+            String response = read(send(method, path, body).getInputStream());
+            if (response.length() == 0) {
+                return null;
+            }
+            return JSON.readValue(response, Object.class);
+        } catch (IOException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * Send a request, and check its status.
+     * 
+     * @param method
+     * @param path
+     * @param body json body, or null.
+     * @return the connection, with a successful response to read.
+     * @throws IOException
+     */
+    private HttpURLConnection send(String method, String path, Object body) throws IOException {
+        Logger.debug("Neo4j REST %s %s", method, path);
+        HttpURLConnection connection = (HttpURLConnection) new URL(uri(path)).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            OutputStream out = connection.getOutputStream();
+            try {
+                JSON.writeValue(out, body);
+            } finally {
+                out.close();
+            }
+        }
+        int status = connection.getResponseCode();
+        if (status >= 400) {
+            String error = read(connection.getErrorStream());
+            if (status == 404) {
+                throw new NotFoundException(method + " " + path + " : " + error);
+            }
+            throw new Neo4jPlayException("Neo4j server error " + status + " on " + method + " " + path + " : " + error);
+        }
+        return connection;
+    }
+
+    /**
+     * Read a response until its end (so the connection can be reused), and close it.
+     * 
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    private static String read(InputStream stream) throws IOException {
+        if (stream == null) {
+            return "";
+        }
+        try {
+            return IOUtils.toString(stream, "UTF-8").trim();
+        } finally {
+            stream.close();
+        }
+    }
+
+}
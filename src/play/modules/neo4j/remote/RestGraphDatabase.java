@@ -0,0 +1,193 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotInTransactionException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.KernelEventHandler;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.graphdb.index.IndexManager;
+
+/**
+ * <code>GraphDatabaseService</code> of a neo4j server, with its REST API. Reads are done when they are called, and
+ * writes of a transaction are sent in one batch request when the transaction is commited (@see RestTransaction), so a
+ * save of a model costs one request for its writes, whatever its number of properties, relationships and indexes.
+ * 
+ * Not supported : locks, transaction and kernel event handlers, the old traverser API, relationship indexes and auto
+ * indexers.
+ * 
+ * @author bsimard
+ */
+public class RestGraphDatabase implements GraphDatabaseService {
+
+    private RestClient                   client;
+    private RestIndexManager             indexManager;
+    private ThreadLocal<RestTransaction> transaction = new ThreadLocal<RestTransaction>();
+    private volatile String              referenceNode;
+
+    /**
+     * Constructor.
+     * 
+     * @param url url of the server data endpoint, like <code>http://localhost:7474/db/data</code>
+     * @param timeout connect and read timeout in ms
+     */
+    public RestGraphDatabase(String url, int timeout) {
+        this.client = new RestClient(url, timeout);
+        this.indexManager = new RestIndexManager(this);
+    }
+
+    /**
+     * @return the client of the server.
+     */
+    public RestClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return the transaction of the current thread, or null.
+     */
+    RestTransaction currentTx() {
+        return transaction.get();
+    }
+
+    /**
+     * Method called when the top level transaction of the current thread is finished.
+     * 
+     * @param tx
+     */
+    void endTx(RestTransaction tx) {
+        transaction.remove();
+    }
+
+    /**
+     * Retrieve the batch of the current transaction.
+     * 
+     * @return
+     * @throws NotInTransactionException if there is no transaction.
+     */
+    RestBatch batch() {
+        RestTransaction tx = transaction.get();
+        if (tx == null) {
+            throw new NotInTransactionException();
+        }
+        return tx.getBatch();
+    }
+
+    @Override
+    public Node createNode() {
+        return new RestNode(this, batch(), new LinkedHashMap<String, Object>());
+    }
+
+    @Override
+    public Node getNodeById(long id) {
+        // properties are loaded on demand, so a node that doesn't exist throws a NotFoundException at its first read
+        return new RestNode(this, id, null);
+    }
+
+    @Override
+    public Relationship getRelationshipById(long id) {
+        return RestRelationship.fromJson(this, (Map<String, Object>) client.get("/relationship/" + id));
+    }
+
+    @Override
+    public Node getReferenceNode() {
+        String path = referenceNode;
+        if (path == null) {
+            path = client.path((String) ((Map<String, Object>) client.get("/")).get("reference_node"));
+            referenceNode = path;
+        }
+        return getNodeById(Long.valueOf(path.substring(path.lastIndexOf('/') + 1)));
+    }
+
+    /**
+     * All the nodes of the database, loaded with one cypher request. Be carefull, they are all into memory.
+     */
+    @Override
+    public Iterable<Node> getAllNodes() {
+        Map<String, Object> query = new LinkedHashMap<String, Object>();
+        query.put("query", "START n=node(*) RETURN n");
+        query.put("params", Collections.emptyMap());
+        Map<String, Object> result = (Map<String, Object>) client.post("/cypher", query);
+        List<Node> nodes = new ArrayList<Node>();
+        for (List<Map<String, Object>> row : (List<List<Map<String, Object>>>) result.get("data")) {
+            nodes.add(RestNode.fromJson(this, row.get(0)));
+        }
+        return nodes;
+    }
+
+    @Override
+    public Iterable<RelationshipType> getRelationshipTypes() {
+        List<RelationshipType> types = new ArrayList<RelationshipType>();
+        for (String name : (List<String>) client.get("/relationship/types")) {
+            types.add(DynamicRelationshipType.withName(name));
+        }
+        return types;
+    }
+
+    @Override
+    public void shutdown() {
+        // the server is not managed by the application
+    }
+
+    @Override
+    public Transaction beginTx() {
+        RestTransaction tx = new RestTransaction(this, transaction.get());
+        if (transaction.get() == null) {
+            transaction.set(tx);
+        }
+        return tx;
+    }
+
+    @Override
+    public <T> TransactionEventHandler<T> registerTransactionEventHandler(TransactionEventHandler<T> handler) {
+        throw new UnsupportedOperationException("Transaction event handlers are not supported by a remote database");
+    }
+
+    @Override
+    public <T> TransactionEventHandler<T> unregisterTransactionEventHandler(TransactionEventHandler<T> handler) {
+        throw new UnsupportedOperationException("Transaction event handlers are not supported by a remote database");
+    }
+
+    @Override
+    public KernelEventHandler registerKernelEventHandler(KernelEventHandler handler) {
+        throw new UnsupportedOperationException("Kernel event handlers are not supported by a remote database");
+    }
+
+    @Override
+    public KernelEventHandler unregisterKernelEventHandler(KernelEventHandler handler) {
+        throw new UnsupportedOperationException("Kernel event handlers are not supported by a remote database");
+    }
+
+    @Override
+    public IndexManager index() {
+        return indexManager;
+    }
+
+}
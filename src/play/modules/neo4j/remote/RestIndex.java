@@ -0,0 +1,167 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+
+import play.Logger;
+
+/**
+ * Node index of a remote database. Lookups and queries are done with one request, and writes are added to the batch of
+ * the current transaction.
+ * 
+ * @author bsimard
+ */
+public class RestIndex implements Index<Node> {
+
+    private RestGraphDatabase graphDb;
+    private String            name;
+
+    /**
+     * Constructor.
+     * 
+     * @param graphDb
+     * @param name
+     */
+    RestIndex(RestGraphDatabase graphDb, String name) {
+        this.graphDb = graphDb;
+        this.name = name;
+    }
+
+    /**
+     * @return the path of the index into the API.
+     */
+    String path() {
+        return "/index/node/" + RestClient.encode(name);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Class<Node> getEntityType() {
+        return Node.class;
+    }
+
+    @Override
+    public IndexHits<Node> get(String key, Object value) {
+        return hits(path() + "/" + RestClient.encode(key) + "/" + RestClient.encode(value.toString()));
+    }
+
+    @Override
+    public IndexHits<Node> query(String key, Object queryOrQueryObject) {
+        return hits(path() + "/" + RestClient.encode(key) + "?query="
+                + RestClient.encode(queryOrQueryObject.toString()));
+    }
+
+    @Override
+    public IndexHits<Node> query(Object queryOrQueryObject) {
+        return hits(path() + "?query=" + RestClient.encode(queryOrQueryObject.toString()));
+    }
+
+    @Override
+    public boolean isWriteable() {
+        return true;
+    }
+
+    @Override
+    public GraphDatabaseService getGraphDatabase() {
+        return graphDb;
+    }
+
+    @Override
+    public void add(Node entity, String key, Object value) {
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("uri", ((RestNode) entity).uri());
+        body.put("key", key);
+        body.put("value", value);
+        graphDb.batch().add("POST", path(), body);
+    }
+
+    @Override
+    public void remove(Node entity, String key, Object value) {
+        graphDb.batch().add("DELETE", path() + "/" + RestClient.encode(key) + "/" + RestClient.encode(value.toString())
+                + "/" + entity.getId(), null);
+    }
+
+    @Override
+    public void remove(Node entity, String key) {
+        graphDb.batch().add("DELETE", path() + "/" + RestClient.encode(key) + "/" + entity.getId(), null);
+    }
+
+    @Override
+    public void remove(Node entity) {
+        graphDb.batch().add("DELETE", path() + "/" + entity.getId(), null);
+    }
+
+    @Override
+    public void delete() {
+        graphDb.batch().add("DELETE", path(), null);
+        ((RestIndexManager) graphDb.index()).forget(name);
+    }
+
+    /**
+     * Add an entity to the index, unless an entity is already indexed with this key and value. Unlike others writes,
+     * it's done at once (the server checks and adds atomically, and the caller needs the answer), so it's not
+     * rollbacked with the transaction, and the entity must already exist.
+     */
+    @Override
+    public Node putIfAbsent(Node entity, String key, Object value) {
+        if (((RestNode) entity).isPending()) {
+            throw new UnsupportedOperationException("putIfAbsent needs a node that is commited on a remote database");
+        }
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("uri", ((RestNode) entity).uri());
+        body.put("key", key);
+        body.put("value", value);
+        Map<String, Object> existing = graphDb.getClient().postUnique(path() + "?unique", body);
+        return existing == null ? null : RestNode.fromJson(graphDb, existing);
+    }
+
+    /**
+     * Load the nodes of a lookup or a query, with one request. Like with an embedded database, an index that doesn't
+     * exist yet has no hit.
+     * 
+     * @param path
+     * @return
+     */
+    private IndexHits<Node> hits(String path) {
+        List<Node> nodes = new ArrayList<Node>();
+        try {
+            for (Map<String, Object> json : (List<Map<String, Object>>) graphDb.getClient().get(path)) {
+                nodes.add(RestNode.fromJson(graphDb, json));
+            }
+        } catch (NotFoundException e) {
+            Logger.debug("Neo4j index %s doesn't exist", name);
+        }
+        return new RestIndexHits<Node>(nodes);
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.neo4j.graphdb.index.IndexHits;
+
+/**
+ * Hits of a remote index query. The server returns all the hits with the response, so they are into a list.
+ * 
+ * @author bsimard
+ */
+public class RestIndexHits<T> implements IndexHits<T> {
+
+    private List<T>     hits;
+    private Iterator<T> iterator;
+
+    /**
+     * Constructor.
+     * 
+     * @param hits
+     */
+    RestIndexHits(List<T> hits) {
+        this.hits = hits;
+        this.iterator = hits.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return hits.size();
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    @Override
+    public T getSingle() {
+        if (hits.size() > 1) {
+            throw new NoSuchElementException("More than one hit (" + hits.size() + ")");
+        }
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+
+    @Override
+    public float currentScore() {
+        return Float.NaN;
+    }
+
+}
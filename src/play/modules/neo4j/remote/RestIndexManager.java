@@ -0,0 +1,167 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.index.AutoIndexer;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.graphdb.index.RelationshipAutoIndexer;
+import org.neo4j.graphdb.index.RelationshipIndex;
+
+/**
+ * Index manager of a remote database. Only node indexes are supported (the module doesn't index relationships). An
+ * index is created by the server when a node is added to it, or with its configuration by
+ * <code>forNodes(name, config)</code>.
+ * 
+ * @author bsimard
+ */
+public class RestIndexManager implements IndexManager {
+
+    private RestGraphDatabase graphDb;
+
+    /**
+     * Names of the indexes that are known to exist.
+     */
+    private Set<String>       known = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Constructor.
+     * 
+     * @param graphDb
+     */
+    RestIndexManager(RestGraphDatabase graphDb) {
+        this.graphDb = graphDb;
+    }
+
+    /**
+     * Method called when an index is deleted.
+     * 
+     * @param name
+     */
+    void forget(String name) {
+        known.remove(name);
+    }
+
+    @Override
+    public boolean existsForNodes(String indexName) {
+        return known.contains(indexName) || indexes("/index/node").containsKey(indexName);
+    }
+
+    @Override
+    public Index<Node> forNodes(String indexName) {
+        return new RestIndex(graphDb, indexName);
+    }
+
+    @Override
+    public Index<Node> forNodes(String indexName, Map<String, String> customConfiguration) {
+        if (!known.contains(indexName)) {
+            Map<String, Object> body = new LinkedHashMap<String, Object>();
+            body.put("name", indexName);
+            body.put("config", customConfiguration);
+            graphDb.getClient().post("/index/node", body);
+            known.add(indexName);
+        }
+        return forNodes(indexName);
+    }
+
+    @Override
+    public String[] nodeIndexNames() {
+        return indexes("/index/node").keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public boolean existsForRelationships(String indexName) {
+        return indexes("/index/relationship").containsKey(indexName);
+    }
+
+    @Override
+    public RelationshipIndex forRelationships(String indexName) {
+        throw new UnsupportedOperationException("Relationship indexes are not supported by a remote database");
+    }
+
+    @Override
+    public RelationshipIndex forRelationships(String indexName, Map<String, String> customConfiguration) {
+        throw new UnsupportedOperationException("Relationship indexes are not supported by a remote database");
+    }
+
+    @Override
+    public String[] relationshipIndexNames() {
+        return indexes("/index/relationship").keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public Map<String, String> getConfiguration(Index<? extends PropertyContainer> index) {
+        Map<String, String> config = new HashMap<String, String>();
+        Map<String, Object> json = indexes("/index/node").get(index.getName());
+        if (json == null) {
+            throw new NotFoundException("No node index '" + index.getName() + "' found");
+        }
+        for (Map.Entry<String, Object> entry : json.entrySet()) {
+            if (!entry.getKey().equals("template")) {
+                config.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        return config;
+    }
+
+    @Override
+    public String setConfiguration(Index<? extends PropertyContainer> index, String key, String value) {
+        throw new UnsupportedOperationException("Index configuration can't be changed on a remote database");
+    }
+
+    @Override
+    public String removeConfiguration(Index<? extends PropertyContainer> index, String key) {
+        throw new UnsupportedOperationException("Index configuration can't be changed on a remote database");
+    }
+
+    @Override
+    public AutoIndexer<Node> getNodeAutoIndexer() {
+        throw new UnsupportedOperationException("Auto indexers are not supported by a remote database");
+    }
+
+    @Override
+    public RelationshipAutoIndexer getRelationshipAutoIndexer() {
+        throw new UnsupportedOperationException("Auto indexers are not supported by a remote database");
+    }
+
+    /**
+     * Load the indexes of a kind, with their configuration.
+     * 
+     * @param path
+     * @return a map of index name / configuration (empty when there is no index, the server answers 204).
+     */
+    private Map<String, Map<String, Object>> indexes(String path) {
+        Map<String, Map<String, Object>> indexes = (Map<String, Map<String, Object>>) graphDb.getClient().get(path);
+        if (indexes == null) {
+            return Collections.emptyMap();
+        }
+        return indexes;
+    }
+
+}
@@ -0,0 +1,211 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ReturnableEvaluator;
+import org.neo4j.graphdb.StopEvaluator;
+import org.neo4j.graphdb.Traverser;
+import org.neo4j.graphdb.Traverser.Order;
+
+/**
+ * Node of a remote database. Relationships are read with one request per call, and are not cached : the relationships
+ * created by the current transaction are not returned before it is commited.
+ * 
+ * @author bsimard
+ */
+public class RestNode extends RestPropertyContainer implements Node {
+
+    /**
+     * Constructor of a persisted node.
+     * 
+     * @param graphDb
+     * @param id
+     * @param properties
+     */
+    RestNode(RestGraphDatabase graphDb, long id, Map<String, Object> properties) {
+        super(graphDb, id, properties);
+    }
+
+    /**
+     * Constructor of a node created by the batch of the current transaction.
+     * 
+     * @param graphDb
+     * @param batch
+     * @param properties
+     */
+    RestNode(RestGraphDatabase graphDb, RestBatch batch, Map<String, Object> properties) {
+        super(graphDb, batch, "POST", "/node", properties, properties);
+    }
+
+    /**
+     * Build a node from its json representation.
+     * 
+     * @param graphDb
+     * @param json
+     * @return
+     */
+    static RestNode fromJson(RestGraphDatabase graphDb, Map<String, Object> json) {
+        String self = graphDb.getClient().path((String) json.get("self"));
+        return new RestNode(graphDb, Long.valueOf(self.substring(self.lastIndexOf('/') + 1)),
+                toProperties((Map<String, Object>) json.get("data")));
+    }
+
+    @Override
+    protected String entityPath() {
+        return "/node/" + id;
+    }
+
+    @Override
+    public void delete() {
+        deleteEntity();
+    }
+
+    @Override
+    public Iterable<Relationship> getRelationships() {
+        return relationships(Direction.BOTH);
+    }
+
+    @Override
+    public boolean hasRelationship() {
+        return getRelationships().iterator().hasNext();
+    }
+
+    @Override
+    public Iterable<Relationship> getRelationships(RelationshipType... types) {
+        return relationships(Direction.BOTH, types);
+    }
+
+    @Override
+    public Iterable<Relationship> getRelationships(Direction direction, RelationshipType... types) {
+        return relationships(direction, types);
+    }
+
+    @Override
+    public boolean hasRelationship(RelationshipType... types) {
+        return getRelationships(types).iterator().hasNext();
+    }
+
+    @Override
+    public boolean hasRelationship(Direction direction, RelationshipType... types) {
+        return getRelationships(direction, types).iterator().hasNext();
+    }
+
+    @Override
+    public Iterable<Relationship> getRelationships(Direction direction) {
+        return relationships(direction);
+    }
+
+    @Override
+    public boolean hasRelationship(Direction direction) {
+        return getRelationships(direction).iterator().hasNext();
+    }
+
+    @Override
+    public Iterable<Relationship> getRelationships(RelationshipType type, Direction direction) {
+        return relationships(direction, type);
+    }
+
+    @Override
+    public boolean hasRelationship(RelationshipType type, Direction direction) {
+        return getRelationships(type, direction).iterator().hasNext();
+    }
+
+    @Override
+    public Relationship getSingleRelationship(RelationshipType type, Direction direction) {
+        Iterator<Relationship> iterator = getRelationships(type, direction).iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        Relationship relationship = iterator.next();
+        if (iterator.hasNext()) {
+            throw new NotFoundException("More than one relationship[" + type + ", " + direction + "] found for "
+                    + this);
+        }
+        return relationship;
+    }
+
+    @Override
+    public Relationship createRelationshipTo(Node otherNode, RelationshipType type) {
+        return new RestRelationship(graphDb, graphDb.batch(), this, (RestNode) otherNode, type,
+                new LinkedHashMap<String, Object>());
+    }
+
+    @Override
+    public Traverser traverse(Order traversalOrder, StopEvaluator stopEvaluator,
+            ReturnableEvaluator returnableEvaluator, RelationshipType relationshipType, Direction direction) {
+        throw new UnsupportedOperationException("Traversers are not supported by a remote database");
+    }
+
+    @Override
+    public Traverser traverse(Order traversalOrder, StopEvaluator stopEvaluator,
+            ReturnableEvaluator returnableEvaluator, RelationshipType firstRelationshipType, Direction firstDirection,
+            RelationshipType secondRelationshipType, Direction secondDirection) {
+        throw new UnsupportedOperationException("Traversers are not supported by a remote database");
+    }
+
+    @Override
+    public Traverser traverse(Order traversalOrder, StopEvaluator stopEvaluator,
+            ReturnableEvaluator returnableEvaluator, Object... relationshipTypesAndDirections) {
+        throw new UnsupportedOperationException("Traversers are not supported by a remote database");
+    }
+
+    /**
+     * Load the relationships of the node, with one request.
+     * 
+     * @param direction
+     * @param types no type for all relationships
+     * @return
+     */
+    private Iterable<Relationship> relationships(Direction direction, RelationshipType... types) {
+        if (isPending()) {
+            return Collections.emptyList();
+        }
+        StringBuilder path = new StringBuilder(entityPath()).append("/relationships/");
+        if (direction == Direction.INCOMING) {
+            path.append("in");
+        }
+        else if (direction == Direction.OUTGOING) {
+            path.append("out");
+        }
+        else {
+            path.append("all");
+        }
+        for (int i = 0; i < types.length; i++) {
+            path.append(i == 0 ? "/" : "&").append(RestClient.encode(types[i].name()));
+        }
+        List<Relationship> relationships = new ArrayList<Relationship>();
+        for (Map<String, Object> json : (List<Map<String, Object>>) graphDb.getClient().get(path.toString())) {
+            relationships.add(RestRelationship.fromJson(graphDb, json));
+        }
+        return relationships;
+    }
+
+}
@@ -0,0 +1,297 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.PropertyContainer;
+
+/**
+ * Base class of remote nodes and relationships. An entity created into a transaction is pending until the transaction
+ * is commited : it's referenced into the batch by the id of the job that creates it, and its properties are set into
+ * the body of this job.
+ * 
+ * Properties of a persisted entity are loaded with one request, at the first access into a transaction (or outside of
+ * a transaction), and kept until the end of this transaction.
+ * 
+ * @author bsimard
+ */
+public abstract class RestPropertyContainer implements PropertyContainer {
+
+    protected RestGraphDatabase   graphDb;
+
+    /**
+     * Id of the entity, or -1 if it's pending.
+     */
+    protected long                id       = -1;
+
+    /**
+     * Id of the job that creates the entity, and its batch, when it's pending.
+     */
+    private int                   jobId    = -1;
+    private RestBatch             batch;
+
+    private Map<String, Object>   properties;
+
+    /**
+     * Transaction into which properties were loaded (null if they were loaded outside of a transaction).
+     */
+    private RestTransaction       loadedIn;
+
+    /**
+     * Constructor of a persisted entity.
+     * 
+     * @param graphDb
+     * @param id
+     * @param properties its properties if they are known, or null to load them on demand
+     */
+    protected RestPropertyContainer(RestGraphDatabase graphDb, long id, Map<String, Object> properties) {
+        this.graphDb = graphDb;
+        this.id = id;
+        this.properties = properties;
+        this.loadedIn = graphDb.currentTx();
+    }
+
+    /**
+     * Constructor of a pending entity.
+     * 
+     * @param graphDb
+     * @param batch
+     * @param method
+     * @param to
+     * @param body body of the creation job (the properties of a node, or the properties of a relationship into
+     *            <code>data</code>)
+     * @param properties the map of properties into the body
+     */
+    protected RestPropertyContainer(RestGraphDatabase graphDb, RestBatch batch, String method, String to,
+            Map<String, Object> body, Map<String, Object> properties) {
+        this.graphDb = graphDb;
+        this.batch = batch;
+        this.properties = properties;
+        this.jobId = batch.create(method, to, body, this);
+    }
+
+    /**
+     * Path of the entity into the API (like <code>/node/12</code>).
+     * 
+     * @return
+     */
+    protected abstract String entityPath();
+
+    /**
+     * Method called when the batch that creates the entity is executed.
+     * 
+     * @param path the path of the created entity
+     */
+    void created(String path) {
+        this.id = Long.valueOf(path.substring(path.lastIndexOf('/') + 1));
+        this.jobId = -1;
+        this.batch = null;
+    }
+
+    /**
+     * @return true if the entity is created by a transaction that is not commited.
+     */
+    boolean isPending() {
+        return jobId >= 0;
+    }
+
+    /**
+     * Path of the entity, or the reference to its creation job if it's pending.
+     * 
+     * @return
+     */
+    String path() {
+        return isPending() ? "{" + jobId + "}" : entityPath();
+    }
+
+    /**
+     * Uri of the entity, or the reference to its creation job if it's pending.
+     * 
+     * @return
+     */
+    String uri() {
+        return isPending() ? path() : graphDb.getClient().uri(entityPath());
+    }
+
+    /**
+     * Id of the entity. A pending entity has a negative id, that is unique into its transaction.
+     */
+    public long getId() {
+        return isPending() ? -(jobId + 1) : id;
+    }
+
+    @Override
+    public GraphDatabaseService getGraphDatabase() {
+        return graphDb;
+    }
+
+    @Override
+    public boolean hasProperty(String key) {
+        return properties().containsKey(key);
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        Object value = properties().get(key);
+        if (value == null) {
+            throw new NotFoundException("Property " + key + " not found on " + this);
+        }
+        return value;
+    }
+
+    @Override
+    public Object getProperty(String key, Object defaultValue) {
+        Object value = properties().get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public void setProperty(String key, Object value) {
+        Map<String, Object> current = properties();
+        RestBatch txBatch = writable();
+        if (!isPending()) {
+            txBatch.add("PUT", entityPath() + "/properties/" + RestClient.encode(key), value);
+        }
+        // a pending entity has its properties into the body of its creation job
+        current.put(key, value);
+    }
+
+    @Override
+    public Object removeProperty(String key) {
+        Map<String, Object> current = properties();
+        RestBatch txBatch = writable();
+        Object value = current.remove(key);
+        if (value != null && !isPending()) {
+            txBatch.add("DELETE", entityPath() + "/properties/" + RestClient.encode(key), null);
+        }
+        return value;
+    }
+
+    @Override
+    public Iterable<String> getPropertyKeys() {
+        return new ArrayList<String>(properties().keySet());
+    }
+
+    @Override
+    public Iterable<Object> getPropertyValues() {
+        return new ArrayList<Object>(properties().values());
+    }
+
+    /**
+     * Method to delete the entity.
+     */
+    protected void deleteEntity() {
+        RestBatch txBatch = writable();
+        txBatch.add("DELETE", path(), null);
+    }
+
+    /**
+     * Retrieve the batch of the current transaction to write the entity.
+     * 
+     * @return
+     * @throws NotFoundException if the entity has been created by a transaction that has been rollbacked.
+     */
+    private RestBatch writable() {
+        RestBatch txBatch = graphDb.batch();
+        if (isPending() && txBatch != batch) {
+            throw new NotFoundException(this + " has been created by a transaction that is not commited");
+        }
+        return txBatch;
+    }
+
+    /**
+     * Properties of the entity, loaded if they are unknown or if they were loaded by another transaction.
+     * 
+     * @return
+     */
+    private Map<String, Object> properties() {
+        RestTransaction tx = graphDb.currentTx();
+        if (!isPending() && (properties == null || (tx != null && tx != loadedIn))) {
+            properties = toProperties((Map<String, Object>) graphDb.getClient().get(entityPath() + "/properties"));
+            loadedIn = tx;
+        }
+        return properties;
+    }
+
+    /**
+     * Convert json properties to neo4j values : integers are longs (like the numbers written by the module), and lists
+     * are arrays.
+     * 
+     * @param json json properties, or null if the entity has no property
+     * @return
+     */
+    static Map<String, Object> toProperties(Map<String, Object> json) {
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        if (json != null) {
+            for (Map.Entry<String, Object> entry : json.entrySet()) {
+                properties.put(entry.getKey(), toValue(entry.getValue()));
+            }
+        }
+        return properties;
+    }
+
+    private static Object toValue(Object value) {
+        if (value instanceof Integer) {
+            return Long.valueOf(((Integer) value).longValue());
+        }
+        if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            Class type = String.class;
+            for (int i = 0; i < list.size(); i++) {
+                list.set(i, toValue(list.get(i)));
+                type = list.get(i).getClass();
+            }
+            Object array = Array.newInstance(type, list.size());
+            for (int i = 0; i < list.size(); i++) {
+                Array.set(array, i, list.get(i));
+            }
+            return array;
+        }
+        return value;
+    }
+
+    @Override
+    public int hashCode() {
+        return isPending() ? System.identityHashCode(this) : (int) (id ^ (id >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass() || isPending()) {
+            return false;
+        }
+        return id == ((RestPropertyContainer) obj).id;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + path() + "]";
+    }
+
+}
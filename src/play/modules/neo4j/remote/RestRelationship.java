@@ -0,0 +1,151 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Relationship of a remote database.
+ * 
+ * @author bsimard
+ */
+public class RestRelationship extends RestPropertyContainer implements Relationship {
+
+    private RestNode         start;
+    private RestNode         end;
+    private RelationshipType type;
+
+    /**
+     * Constructor of a persisted relationship.
+     * 
+     * @param graphDb
+     * @param id
+     * @param start
+     * @param end
+     * @param type
+     * @param properties
+     */
+    RestRelationship(RestGraphDatabase graphDb, long id, RestNode start, RestNode end, RelationshipType type,
+            Map<String, Object> properties) {
+        super(graphDb, id, properties);
+        this.start = start;
+        this.end = end;
+        this.type = type;
+    }
+
+    /**
+     * Constructor of a relationship created by the batch of the current transaction.
+     * 
+     * @param graphDb
+     * @param batch
+     * @param start
+     * @param end
+     * @param type
+     * @param properties
+     */
+    RestRelationship(RestGraphDatabase graphDb, RestBatch batch, RestNode start, RestNode end, RelationshipType type,
+            Map<String, Object> properties) {
+        super(graphDb, batch, "POST", start.path() + "/relationships", body(end, type, properties), properties);
+        this.start = start;
+        this.end = end;
+        this.type = type;
+    }
+
+    private static Map<String, Object> body(RestNode end, RelationshipType type, Map<String, Object> properties) {
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("to", end.uri());
+        body.put("type", type.name());
+        body.put("data", properties);
+        return body;
+    }
+
+    /**
+     * Build a relationship from its json representation.
+     * 
+     * @param graphDb
+     * @param json
+     * @return
+     */
+    static RestRelationship fromJson(RestGraphDatabase graphDb, Map<String, Object> json) {
+        RestClient client = graphDb.getClient();
+        String self = client.path((String) json.get("self"));
+        return new RestRelationship(graphDb, Long.valueOf(self.substring(self.lastIndexOf('/') + 1)),
+                node(graphDb, client.path((String) json.get("start"))),
+                node(graphDb, client.path((String) json.get("end"))),
+                DynamicRelationshipType.withName((String) json.get("type")),
+                toProperties((Map<String, Object>) json.get("data")));
+    }
+
+    private static RestNode node(RestGraphDatabase graphDb, String path) {
+        return (RestNode) graphDb.getNodeById(Long.valueOf(path.substring(path.lastIndexOf('/') + 1)));
+    }
+
+    @Override
+    protected String entityPath() {
+        return "/relationship/" + id;
+    }
+
+    @Override
+    public void delete() {
+        deleteEntity();
+    }
+
+    @Override
+    public Node getStartNode() {
+        return start;
+    }
+
+    @Override
+    public Node getEndNode() {
+        return end;
+    }
+
+    @Override
+    public Node getOtherNode(Node node) {
+        if (start.equals(node)) {
+            return end;
+        }
+        if (end.equals(node)) {
+            return start;
+        }
+        throw new IllegalArgumentException(node + " is not a node of " + this);
+    }
+
+    @Override
+    public Node[] getNodes() {
+        return new Node[] { start, end };
+    }
+
+    @Override
+    public RelationshipType getType() {
+        return type;
+    }
+
+    @Override
+    public boolean isType(RelationshipType type) {
+        return this.type.name().equals(type.name());
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.remote;
+
+import org.neo4j.graphdb.Lock;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionFailureException;
+
+/**
+ * Transaction of a remote database. Writes are recorded into a batch, that is sent when the top level transaction is
+ * finished with success : the server executes it into one transaction. Like with an embedded database, a nested
+ * transaction joins its top level transaction, and a failure of a nested transaction rollbacks everything.
+ * 
+ * Reads are not isolated : they are done when they are called, and they don't see the writes of the batch. There is no
+ * lock : a lock of an entity does nothing, so code written for an embedded database (like a timeline prepend) works,
+ * but it's not protected against the concurrent writes of another instance.
+ * 
+ * @author bsimard
+ */
+public class RestTransaction implements Transaction {
+
+    private final static Lock NO_LOCK  = new NoLock();
+
+    private RestGraphDatabase graphDb;
+    private RestTransaction   top;
+    private RestBatch         batch;
+    private boolean           success  = false;
+    private boolean           rollback = false;
+
+    /**
+     * Constructor.
+     * 
+     * @param graphDb
+     * @param top the top level transaction, or null if it's a top level one
+     */
+    RestTransaction(RestGraphDatabase graphDb, RestTransaction top) {
+        this.graphDb = graphDb;
+        this.top = top;
+        this.batch = (top == null) ? new RestBatch() : top.batch;
+    }
+
+    /**
+     * @return the batch of the top level transaction.
+     */
+    RestBatch getBatch() {
+        return batch;
+    }
+
+    @Override
+    public void success() {
+        success = true;
+    }
+
+    @Override
+    public void failure() {
+        rollback = true;
+        if (top != null) {
+            top.rollback = true;
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (top != null) {
+            return;
+        }
+        graphDb.endTx(this);
+        if (success && !rollback) {
+            try {
+                batch.execute(graphDb.getClient());
+            } catch (RuntimeException e) {
+                throw new TransactionFailureException("Unable to commit the remote transaction (" + batch.size()
+                        + " operations)", e);
+            }
+        }
+    }
+
+    /**
+     * The server has no lock API : nothing is locked (@see class comment).
+     */
+    @Override
+    public Lock acquireWriteLock(PropertyContainer entity) {
+        return NO_LOCK;
+    }
+
+    /**
+     * The server has no lock API : nothing is locked (@see class comment).
+     */
+    @Override
+    public Lock acquireReadLock(PropertyContainer entity) {
+        return NO_LOCK;
+    }
+
+    /**
+     * Lock of a remote transaction, that locks nothing.
+     */
+    private static class NoLock implements Lock {
+
+        @Override
+        public void release() {
+            // nothing to release
+        }
+    }
+
+}
@@ -41,6 +41,16 @@ import play.modules.neo4j.model.Neo4jModel;
  */
 public class Binder {
 
+    /**
+     * Prefix of a date into the database, followed by its time in milliseconds.
+     */
+    public final static String DATE_PREFIX         = "@@Date@@";
+
+    /**
+     * Prefix of a blob into the database, followed by its file name and its type (<code>uuid|type</code>).
+     */
+    public final static String FILE_PREFIX         = "@@File@@";
+
     final static int           notaccessibleMethod = Modifier.NATIVE | Modifier.STATIC;
 
     /**
@@ -178,14 +188,14 @@ public class Binder {
             else {
                 if (type.isAssignableFrom(Date.class)) {
                     Date date = (Date) value;
-                    String neo4jValue = "@@Date@@" + date.getTime();
+                    String neo4jValue = DATE_PREFIX + date.getTime();
                     return neo4jValue;
                 }
                 else if (type.isAssignableFrom(Blob.class)) {
                     Blob blob = (Blob) value;
                     String format = blob.type();
                     String uuid = blob.getFile().getName();
-                    return "@@File@@" + uuid + "|" + format;
+                    return FILE_PREFIX + uuid + "|" + format;
                 }
                 else {
                     return value;
@@ -206,10 +216,32 @@ public class Binder {
     public static Object bindFromNeo4jFormat(Object value, Class type) {
         try {
             if (value != null) {
+                // numbers of a remote database are json numbers (Long or Double), whatever the type of the field
+                if (value instanceof Number) {
+                    Number number = (Number) value;
+                    if (type == Integer.class || type == int.class) {
+                        return number.intValue();
+                    }
+                    if (type == Long.class || type == long.class) {
+                        return number.longValue();
+                    }
+                    if (type == Float.class || type == float.class) {
+                        return number.floatValue();
+                    }
+                    if (type == Double.class || type == double.class) {
+                        return number.doubleValue();
+                    }
+                    if (type == Short.class || type == short.class) {
+                        return number.shortValue();
+                    }
+                    if (type == Byte.class || type == byte.class) {
+                        return number.byteValue();
+                    }
+                }
                 if (type.isAssignableFrom(Date.class)) {
                     String temp = (String) value;
-                    if (temp.startsWith("@@Date@@")) {
-                        String dateString = temp.replaceFirst("@@Date@@", "");
+                    if (temp.startsWith(DATE_PREFIX)) {
+                        String dateString = temp.substring(DATE_PREFIX.length());
                         if (dateString != null) {
                             Long dateLong = Long.valueOf(dateString);
                             if (dateLong != null) {
@@ -222,8 +254,8 @@ public class Binder {
                 }
                 if (type.isAssignableFrom(Blob.class)) {
                     String temp = (String) value;
-                    if (temp.startsWith("@@File@@")) {
-                        String fileString = temp.replaceFirst("@@File@@", "");
+                    if (temp.startsWith(FILE_PREFIX)) {
+                        String fileString = temp.substring(FILE_PREFIX.length());
                         String UUID = fileString.split("[|]")[0];
                         String format = fileString.split("[|]")[1];
                         if (UUID != null && !UUID.isEmpty() && format != null && !format.isEmpty()) {
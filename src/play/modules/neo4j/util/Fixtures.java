@@ -18,26 +18,33 @@
  */
 package play.modules.neo4j.util;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.neo4j.graphdb.DynamicRelationshipType;
-import org.neo4j.graphdb.Transaction;
+import org.apache.commons.io.IOUtils;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.scanner.ScannerException;
 
 import play.Play;
-import play.data.binding.types.DateBinder;
 import play.exceptions.YAMLException;
+import play.modules.neo4j.cli.export.DumpFormat;
+import play.modules.neo4j.cli.export.DumpManifest;
+import play.modules.neo4j.cli.importer.DatabaseImportWriter;
+import play.modules.neo4j.cli.importer.DeltaImport;
+import play.modules.neo4j.cli.importer.DumpReader;
+import play.modules.neo4j.cli.importer.DumpReaders;
+import play.modules.neo4j.cli.importer.DumpRecord;
+import play.modules.neo4j.cli.importer.ImportPipeline;
+import play.modules.neo4j.cli.importer.ImportWriter;
+import play.modules.neo4j.cli.importer.SegmentImport;
+import play.modules.neo4j.cli.importer.YmlEntry;
+import play.modules.neo4j.cli.importer.YmlEntryReader;
 import play.modules.neo4j.exception.Neo4jException;
-import play.modules.neo4j.exception.Neo4jPlayException;
-import play.modules.neo4j.model.Neo4jModel;
 import play.templates.TemplateLoader;
 import play.vfs.VirtualFile;
 
@@ -49,14 +56,6 @@ import play.vfs.VirtualFile;
  */
 public class Fixtures {
 
-    private final static Pattern       keyPattern              = Pattern.compile("([^(]+)\\(([^)]+)\\)");
-    private static final String        RELATION_FROM_KEY       = "from";
-    private static final String        RELATION_TO_KEY         = "to";
-    private static final String        RELATION_TYPE_KEY       = "type";
-    private static final String        RELATION_TYPE_CLASS_KEY = "class";
-    private static final String        RELATION_TYPE_VALUE_KEY = "value";
-    private static Map<String, Object> idCache                 = new HashMap<String, Object>();
-
     /**
      * Delete all the database, node by node.
      */
@@ -64,24 +63,33 @@ public class Fixtures {
         Neo4j.clear();
     }
 
+    /**
+     * Delete all the database, by deleting the store directory (@see Neo4j.wipeStore).
+     */
+    public static void wipeDatabase() {
+        Neo4j.wipeStore();
+    }
+
     /**
      * Method to load an YML file into neo4j database.
      * 
      * @param name file name into play java path (like conf directory).
      */
     public static void loadYml(String name) {
+        loadYml(name, new DatabaseImportWriter());
+    }
+
+    /**
+     * Method to load an YML file with a specific writer (like the <code>BatchImportWriter</code>). The writer is closed
+     * at the end of the import, or aborted if it fails.
+     * 
+     * @param name file name into play java path (like conf directory).
+     * @param writer
+     */
+    public static void loadYml(String name, ImportWriter writer) {
         VirtualFile yamlFile = null;
         try {
-            for (VirtualFile vf : Play.javaPath) {
-                yamlFile = vf.child(name);
-                if (yamlFile != null && yamlFile.exists()) {
-                    break;
-                }
-            }
-            if (yamlFile == null) {
-                throw new RuntimeException("Cannot load fixture " + name + ", the file was not found");
-            }
-
+            yamlFile = findFile(name);
             String renderedYaml = TemplateLoader.load(yamlFile).render();
 
             Yaml yaml = new Yaml();
@@ -91,178 +99,262 @@ public class Fixtures {
                 LinkedHashMap<Object, Map<?, ?>> objects = (LinkedHashMap<Object, Map<?, ?>>) o;
 
                 // for all object that are in YML file
+                StringLongHashMap ids = new StringLongHashMap(objects.size());
                 for (Object key : objects.keySet()) {
-                    // we retrieve the definition line with the ID and type of the object
-                    Matcher matcher = keyPattern.matcher(key.toString().trim());
-                    if (matcher.matches()) {
-
-                        String type = matcher.group(1);
-                        String id = matcher.group(2);
-
-                        if (type.equals("Relation")) {
-                            // Get params from YML object
-                            Map<String, String> params = serializeRelation(objects.get(key));
-                            if (idCache.containsKey(params.get(RELATION_FROM_KEY))
-                                    && idCache.containsKey(params.get(RELATION_TO_KEY))) {
-                                Neo4jModel modelFrom = (Neo4jModel) idCache.get(params.get(RELATION_FROM_KEY));
-                                Neo4jModel modelTo = (Neo4jModel) idCache.get(params.get(RELATION_TO_KEY));
-                                Transaction tx = Neo4j.db().beginTx();
-                                try {
-                                    modelFrom.getNode().createRelationshipTo(modelTo.getNode(),
-                                            DynamicRelationshipType.withName(params.get(RELATION_TYPE_VALUE_KEY)));
-                                    tx.success();
-                                } finally {
-                                    tx.finish();
-                                }
-
-                            }
-                            else {
-                                throw new Neo4jException("Relation dependency not valid : unabled to find "
-                                        + params.get(RELATION_FROM_KEY) + " and " + params.get(RELATION_TO_KEY)
-                                        + " from already processing object !");
-                            }
-                        }
-                        else {
-                            // All type that are not 'Relation' and don't start with 'models', are in fact 'Model', so
-                            // we
-                            // adding the 'models' package
-                            if (!type.startsWith("models.")) {
-                                type = "models." + type;
-                            }
-
-                            // we look at "cache" if the object as already be processed, if so we throw an exception
-                            // because
-                            // it can't have to object with the same id in yml file.
-                            if (idCache.containsKey(id)) {
-                                throw new RuntimeException("Cannot load fixture " + name + ", duplicate id '" + id
-                                        + "' for type " + type);
-                            }
-
-                            // Serialize YML attribute into an Hasmap that correspond to http params to use the same
-                            // bind
-                            // function
-                            Map<String, String[]> params = new HashMap<String, String[]>();
-                            if (objects.get(key) == null) {
-                                objects.put(key, new HashMap<Object, Object>());
-                            }
-                            serialize(objects.get(key), "object", params);
-
-                            // Bind & save he model
-                            @SuppressWarnings("unchecked")
-                            Class<Neo4jModel> cType = (Class<Neo4jModel>) Play.classloader.loadClass(type);
-                            Neo4jModel model = (Neo4jModel) bind("object", cType, params);
-                            model.save();
-
-                            // we put in cache the object by its id because it is processed and we could need it for
-                            // relation !
-                            idCache.put(id, model);
-                        }
-                    }
+                    importEntry(name, new YmlEntry(key.toString(), objects.get(key)), writer, ids);
                 }
             }
         } catch (ScannerException e) {
+            writer.abort();
             throw new YAMLException(e, yamlFile);
         } catch (Throwable e) {
+            writer.abort();
             throw new RuntimeException("Cannot load fixture " + name + ": " + e.getMessage(), e);
         } finally {
-            idCache = new HashMap<String, Object>();
+            writer.close();
         }
 
     }
 
     /**
-     * Copy of playframework method, @see <code>Fixtures.serialized</code>. It serialized into the
-     * <code>serialized</code> params all Yml attributes.
+     * Method to load a (large) YML file into neo4j database, without loading the whole file in memory (@see
+     * <code>YmlEntryReader</code>).
+     * 
+     * @param name file name into play java path (like conf directory).
+     */
+    public static void streamYml(String name) {
+        streamYml(name, new DatabaseImportWriter(), false);
+    }
+
+    /**
+     * Method to load a (large) YML file with a specific writer. Entries are read and written one by one, and only the
+     * yml id -> node id map is kept in memory for relations. The writer is closed at the end of the import, or aborted
+     * if it fails.
+     * 
+     * @param name file name into play java path (like conf directory).
+     * @param writer
+     * @param template should the file be rendered as a template before ? The rendered file is in memory, so it's only
+     *            for small files.
+     */
+    public static void streamYml(String name, ImportWriter writer, boolean template) {
+        streamYml(name, writer, template, 1);
+    }
+
+    /**
+     * Method to load a (large) YML file with a specific writer and several threads. With more than one thread, the
+     * import is done by an <code>ImportPipeline</code> : models are bound in parallel, and relations are written after
+     * all models.
      * 
-     * @param values
-     * @param prefix
-     * @param serialized
+     * @param name file name into play java path (like conf directory).
+     * @param writer
+     * @param template should the file be rendered as a template before ?
+     * @param threads number of threads that bind models
      */
-    private static void serialize(Map<?, ?> values, String prefix, Map<String, String[]> serialized) {
-        for (Object key : values.keySet()) {
-            Object value = values.get(key);
-            if (value == null) {
-                continue;
+    public static void streamYml(String name, ImportWriter writer, boolean template, int threads) {
+        VirtualFile yamlFile = null;
+        Reader reader = null;
+        try {
+            yamlFile = findFile(name);
+            if (template) {
+                reader = new StringReader(TemplateLoader.load(yamlFile).render());
             }
-            if (value instanceof Map<?, ?>) {
-                serialize((Map<?, ?>) value, prefix + "." + key, serialized);
+            else {
+                reader = new BufferedReader(new InputStreamReader(yamlFile.inputstream(), "UTF-8"));
             }
-            else if (value instanceof Date) {
-                serialized.put(prefix + "." + key.toString(),
-                        new String[] { new SimpleDateFormat(DateBinder.ISO8601).format(((Date) value)) });
+            YmlEntryReader entries = new YmlEntryReader(reader);
+            if (threads > 1) {
+                new ImportPipeline(name, writer, threads).run(entries);
             }
-            else if (value instanceof List<?>) {
-                List<?> l = (List<?>) value;
-                String[] r = new String[l.size()];
-                int i = 0;
-                for (Object el : l) {
-                    r[i++] = el.toString();
+            else {
+                StringLongHashMap ids = new StringLongHashMap(1024);
+                YmlEntry entry;
+                while ((entry = entries.next()) != null) {
+                    importEntry(name, entry, writer, ids);
                 }
-                serialized.put(prefix + "." + key.toString(), r);
             }
-            else if (value instanceof String && value.toString().matches("<<<\\s*\\{[^}]+}\\s*")) {
-                Matcher m = Pattern.compile("<<<\\s*\\{([^}]+)}\\s*").matcher(value.toString());
-                m.find();
-                String file = m.group(1);
-                VirtualFile f = Play.getVirtualFile(file);
-                if (f != null && f.exists()) {
-                    serialized.put(prefix + "." + key.toString(), new String[] { f.contentAsString() });
+        } catch (ScannerException e) {
+            writer.abort();
+            throw new YAMLException(e, yamlFile);
+        } catch (Throwable e) {
+            writer.abort();
+            throw new RuntimeException("Cannot load fixture " + name + ": " + e.getMessage(), e);
+        } finally {
+            writer.close();
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Method to load a <code>jsonl</code> or <code>binary</code> dump (@see DumpFormat), made by
+     * <code>play neo4j:export</code>. Properties are typed into these formats, so they are not converted from strings
+     * like with YML. The format is given by the extension of the file, and a <code>.gz</code> file is uncompressed.
+     * The writer is closed at the end of the import, or aborted if it fails.
+     * 
+     * @param name file name into play java path (like conf directory).
+     * @param writer
+     */
+    public static void loadDump(String name, ImportWriter writer) {
+        DumpFormat format = DumpFormat.fromFileName(name);
+        if (format == DumpFormat.YML) {
+            loadYml(name, writer);
+            return;
+        }
+        DumpReader reader = null;
+        try {
+            reader = DumpReaders.open(findFile(name).getRealFile());
+            StringLongHashMap ids = new StringLongHashMap(1024);
+            DumpRecord record;
+            while ((record = reader.next()) != null) {
+                if (record.relation) {
+                    long from = ids.get(record.from);
+                    long to = ids.get(record.to);
+                    if (from == StringLongHashMap.NO_VALUE || to == StringLongHashMap.NO_VALUE) {
+                        throw new Neo4jException("Relation dependency not valid : unabled to find " + record.from
+                                + " and " + record.to + " from already processing object !");
+                    }
+                    writer.writeRelation(from, to, record.type);
+                }
+                else {
+                    if (ids.containsKey(record.id)) {
+                        throw new RuntimeException("Cannot load dump " + name + ", duplicate id '" + record.id + "'");
+                    }
+                    ids.put(record.id, writer.writeModel(record.toModel()));
                 }
             }
-            else {
-                serialized.put(prefix + "." + key.toString(), new String[] { value.toString() });
+        } catch (Throwable e) {
+            writer.abort();
+            throw new RuntimeException("Cannot load dump " + name + ": " + e.getMessage(), e);
+        } finally {
+            writer.close();
+            if (reader != null) {
+                reader.close();
             }
         }
     }
 
     /**
-     * Method to parse Map object that represent an YML Relation object. We return a well formed Map with goods keys.
+     * Method to apply a delta export, made by <code>play neo4j:export --since</code>, to a copy of the exported
+     * database (@see DeltaImport) : the deletions of its <code>.deleted</code> file if there is one, then its models
+     * and relations. There is one commit by write.
      * 
-     * @param values
-     * @return
+     * @param name file name into play java path (like conf directory).
      */
-    private static Map<String, String> serializeRelation(Map<?, ?> values) {
-        Map<String, String> params = new HashMap<String, String>();
-        for (Object key : values.keySet()) {
-            String value = (String) values.get(key);
-            if (key.equals(RELATION_FROM_KEY)) {
-                params.put(RELATION_FROM_KEY, value);
-            }
-            else if (key.equals(RELATION_TO_KEY)) {
-                params.put(RELATION_TO_KEY, value);
+    public static void loadDelta(String name) {
+        loadDelta(name, 1);
+    }
+
+    /**
+     * Method to apply a delta export to a copy of the exported database, with <code>batchSize</code> writes by
+     * commit.
+     * 
+     * @param name file name into play java path (like conf directory).
+     * @param batchSize
+     */
+    public static void loadDelta(String name, int batchSize) {
+        DeltaImport delta = new DeltaImport(name, batchSize);
+        BufferedReader deleted = null;
+        BufferedReader text = null;
+        DumpReader reader = null;
+        try {
+            File file = findFile(name).getRealFile();
+            File deletedFile = new File(file.getParentFile(), DumpFormat.deletedFileName(file.getName()));
+            if (deletedFile.exists()) {
+                deleted = DumpReaders.text(deletedFile);
+                delta.delete(deleted);
             }
-            else if (key.equals(RELATION_TYPE_KEY)) {
-                String[] tab = value.split("\\.");
-                String enumValue = tab[tab.length - 1];
-                String clazz = value.replace("." + enumValue, "");
-                // default package for relatonship enumeration is model.reltionship, so if package is not present, we
-                // add the package
-                if (tab.length == 2 && Character.isUpperCase(value.subSequence(0, 1).charAt(0))) {
-                    clazz = "models.relationship." + clazz;
-                }
-                params.put(RELATION_TYPE_CLASS_KEY, clazz);
-                params.put(RELATION_TYPE_VALUE_KEY, enumValue);
+            if (DumpFormat.fromFileName(name) == DumpFormat.YML) {
+                text = DumpReaders.text(file);
+                delta.apply(new YmlEntryReader(text));
             }
             else {
-                throw new Neo4jPlayException("Unkhnow attribute " + key + " [" + value + "] for Relation");
+                reader = DumpReaders.open(file);
+                delta.apply(reader);
+            }
+        } catch (Throwable e) {
+            throw new RuntimeException("Cannot load delta " + name + ": " + e.getMessage(), e);
+        } finally {
+            delta.close();
+            IOUtils.closeQuietly(deleted);
+            IOUtils.closeQuietly(text);
+            if (reader != null) {
+                reader.close();
             }
         }
-        if (params.size() != 4) {
-            throw new Neo4jPlayException(
-                    "Number of attributed for relation is not good ! Relation has to get to,from and type atributes, and only those");
+    }
+
+    /**
+     * Method to load a segmented export (@see DumpManifest), made by <code>play neo4j:export --threads</code>.
+     * Segments are read and bound by several threads, node segments first, then relation segments. The writer is
+     * closed at the end of the import, or aborted if it fails.
+     * 
+     * @param name manifest file name into play java path (like conf directory).
+     * @param writer
+     * @param threads number of threads that read segments
+     */
+    public static void loadManifest(String name, ImportWriter writer, int threads) {
+        try {
+            File file = findFile(name).getRealFile();
+            new SegmentImport(name, writer, threads).run(file.getParentFile(), DumpManifest.read(file));
+        } catch (Throwable e) {
+            writer.abort();
+            throw new RuntimeException("Cannot load manifest " + name + ": " + e.getMessage(), e);
+        } finally {
+            writer.close();
         }
-        return params;
     }
 
     /**
-     * Method to bind a Neo4jModel from params attributes.
+     * Retrieve a file from the play java path.
      * 
-     * @param clazz
-     * @param params
+     * @param name
      * @return
      */
-    private static Object bind(String name, Class clazz, Map<String, String[]> params) {
-        Binder binder = new Binder(clazz);
-        return binder.bind(name, params);
+    private static VirtualFile findFile(String name) {
+        for (VirtualFile vf : Play.javaPath) {
+            VirtualFile yamlFile = vf.child(name);
+            if (yamlFile != null && yamlFile.exists()) {
+                return yamlFile;
+            }
+        }
+        throw new RuntimeException("Cannot load " + name + ", the file was not found");
+    }
+
+    /**
+     * Import an YML entry (model or relation).
+     * 
+     * @param name name of the YML file
+     * @param entry
+     * @param writer
+     * @param ids yml id -> node id of already imported models
+     * @throws Exception
+     */
+    private static void importEntry(String name, YmlEntry entry, ImportWriter writer, StringLongHashMap ids)
+            throws Exception {
+        // we retrieve the definition line with the ID and type of the object
+        if (!entry.isValid()) {
+            return;
+        }
+        if (entry.isRelation()) {
+            String[] relation = entry.toRelation();
+            long from = ids.get(relation[0]);
+            long to = ids.get(relation[1]);
+            if (from != StringLongHashMap.NO_VALUE && to != StringLongHashMap.NO_VALUE) {
+                writer.writeRelation(from, to, relation[2]);
+            }
+            else {
+                throw new Neo4jException("Relation dependency not valid : unabled to find " + relation[0] + " and "
+                        + relation[1] + " from already processing object !");
+            }
+        }
+        else {
+            // we look at "cache" if the object as already be processed, if so we throw an exception because it can't
+            // have to object with the same id in yml file.
+            if (ids.containsKey(entry.getId())) {
+                throw new RuntimeException("Cannot load fixture " + name + ", duplicate id '" + entry.getId()
+                        + "' for type " + entry.getType());
+            }
+            // we put in cache the node id of the object because it is processed and we could need it for relation !
+            ids.put(entry.getId(), writer.writeModel(entry.toModel()));
+        }
     }
 }
@@ -0,0 +1,109 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.util.Arrays;
+
+/**
+ * Primitive <code>long</code> hash set (open addressing, linear probing), for node ids. Values must be positive or
+ * zero.
+ * 
+ * @author bsimard
+ */
+public class LongHashSet {
+
+    /**
+     * Value of an empty slot.
+     */
+    private final static long EMPTY = -1L;
+
+    private long[]            table;
+    private int               size  = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param expectedSize
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Add a value into the set.
+     * 
+     * @param value
+     * @return true if the value was not already into the set.
+     */
+    public boolean add(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must be positive : " + value);
+        }
+        int slot = slot(table, value);
+        if (table[slot] == value) {
+            return false;
+        }
+        if ((size + 1) * 2 > table.length) {
+            long[] old = table;
+            table = new long[old.length * 2];
+            Arrays.fill(table, EMPTY);
+            for (long item : old) {
+                if (item != EMPTY) {
+                    table[slot(table, item)] = item;
+                }
+            }
+            slot = slot(table, value);
+        }
+        table[slot] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Is the value into the set ?
+     * 
+     * @param value
+     * @return
+     */
+    public boolean contains(long value) {
+        return value >= 0 && table[slot(table, value)] == value;
+    }
+
+    /**
+     * @return the number of value into the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int slot(long[] table, long value) {
+        int mask = table.length - 1;
+        int slot = LongIntHashMap.hash(value) & mask;
+        while (table[slot] != EMPTY && table[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.util.Arrays;
+
+/**
+ * Primitive <code>long -> int</code> hash map (open addressing, linear probing), to count things by node id without
+ * boxing. Keys must be positive or zero (like node ids).
+ * 
+ * To iterate over the map, loop on slots from <code>0</code> to <code>capacity()</code> and skip slots where
+ * <code>keyAt(slot)</code> is <code>-1</code>.
+ * 
+ * @author bsimard
+ */
+public class LongIntHashMap {
+
+    /**
+     * Key of an empty slot.
+     */
+    private final static long EMPTY = -1L;
+
+    private long[]            keys;
+    private int[]             values;
+    private int               size  = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param expectedSize
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Retrieve the value of a key.
+     * 
+     * @param key
+     * @return the value, or <code>0</code> if the key is not into the map.
+     */
+    public int get(long key) {
+        if (key < 0) {
+            return 0;
+        }
+        int slot = slot(keys, key);
+        return (keys[slot] == key) ? values[slot] : 0;
+    }
+
+    /**
+     * Is the key into the map ?
+     * 
+     * @param key
+     * @return
+     */
+    public boolean containsKey(long key) {
+        return key >= 0 && keys[slot(keys, key)] == key;
+    }
+
+    /**
+     * Add <code>delta</code> to the value of a key (a missing key has the value <code>0</code>). The value is capped
+     * to <code>Integer.MAX_VALUE</code>.
+     * 
+     * @param key
+     * @param delta
+     * @return the new value
+     */
+    public int add(long key, int delta) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must be positive : " + key);
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] != key) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slot(keys, key);
+            }
+            keys[slot] = key;
+            values[slot] = 0;
+            size++;
+        }
+        long value = (long) values[slot] + delta;
+        values[slot] = (int) Math.min(Integer.MAX_VALUE, value);
+        return values[slot];
+    }
+
+    /**
+     * @return the number of key into the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of slots.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @param slot
+     * @return the key of the slot, or <code>-1</code> if the slot is empty.
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * @param slot
+     * @return the value of the slot.
+     */
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Retrieve the slot of a key : the slot that contains the key, or the empty slot where it should be inserted.
+     * 
+     * @param table
+     * @param key
+     * @return
+     */
+    private static int slot(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Mix bits of the key, so consecutive node ids are spread into the table.
+     * 
+     * @param key
+     * @return
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Double the capacity of the map.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+    }
+
+}
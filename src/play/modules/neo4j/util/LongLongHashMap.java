@@ -0,0 +1,160 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.util.Arrays;
+
+/**
+ * Primitive <code>long -> long</code> hash map (open addressing, linear probing), to map node ids without boxing. Keys
+ * and values must be positive or zero.
+ * 
+ * To iterate over the map, loop on slots from <code>0</code> to <code>capacity()</code> and skip slots where
+ * <code>keyAt(slot)</code> is <code>NO_VALUE</code>.
+ * 
+ * @author bsimard
+ */
+public class LongLongHashMap {
+
+    /**
+     * Key of an empty slot, and value returned for a missing key.
+     */
+    public final static long NO_VALUE = -1L;
+
+    private long[]           keys;
+    private long[]           values;
+    private int              size     = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param expectedSize
+     */
+    public LongLongHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Retrieve the value of a key.
+     * 
+     * @param key
+     * @return the value, or <code>NO_VALUE</code> if the key is not into the map.
+     */
+    public long get(long key) {
+        if (key < 0) {
+            return NO_VALUE;
+        }
+        int slot = slot(keys, key);
+        return (keys[slot] == key) ? values[slot] : NO_VALUE;
+    }
+
+    /**
+     * Put a value into the map.
+     * 
+     * @param key
+     * @param value
+     */
+    public void put(long key, long value) {
+        if (key < 0 || value < 0) {
+            throw new IllegalArgumentException("Key and value must be positive : " + key + " -> " + value);
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] != key) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slot(keys, key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * @return the number of key into the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of slots.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @param slot
+     * @return the key of the slot, or <code>NO_VALUE</code> if the slot is empty.
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * @param slot
+     * @return the value of the slot.
+     */
+    public long valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Retrieve the slot of a key : the slot that contains the key, or the empty slot where it should be inserted.
+     * 
+     * @param table
+     * @param key
+     * @return
+     */
+    private static int slot(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = LongIntHashMap.hash(key) & mask;
+        while (table[slot] != NO_VALUE && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Double the capacity of the map.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != NO_VALUE) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, NO_VALUE);
+        values = new long[capacity];
+    }
+
+}
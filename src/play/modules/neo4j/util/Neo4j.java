@@ -18,20 +18,26 @@
  */
 package play.modules.neo4j.util;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.kernel.GraphDatabaseAPI;
 import org.neo4j.server.WrappingNeoServerBootstrapper;
 
 import play.Logger;
 import play.Play;
 import play.Play.Mode;
+import play.libs.Files;
 import play.modules.neo4j.exception.Neo4jPlayException;
+import play.modules.neo4j.remote.RestGraphDatabase;
 
 /**
  * Class to retrieve a valid <code>GraphDatabaseService</code> for application (<code>graphDb</code> is in a
@@ -44,6 +50,22 @@ public class Neo4j {
     private static volatile GraphDatabaseService          graphDb;
     private static volatile WrappingNeoServerBootstrapper bootstrapperDb;
 
+    /**
+     * Cypher engine shared by all the application. The engine keeps a bounded (LRU) cache of execution plans, keyed on
+     * the query text, so a query with parameters is parsed and planned only once.
+     */
+    private static volatile ExecutionEngine               engine;
+
+    /**
+     * Is the database opened in read-only mode ?
+     */
+    private static volatile boolean                       readOnly;
+
+    /**
+     * Is the database a neo4j server, used with its REST API ?
+     */
+    private static volatile boolean                       remote;
+
     /**
      * Method to create graphDb instance (start the server).
      * 
@@ -53,13 +75,37 @@ public class Neo4j {
         if (graphDb != null) {
             throw new Neo4jPlayException("The graphDb is already initialize.");
         }
+        remote = Play.configuration.getProperty("neo4j.mode", "embedded").equalsIgnoreCase("remote");
+        if (remote) {
+            readOnly = Boolean.valueOf(Play.configuration.getProperty("neo4j.readonly", "false"));
+            String url = Play.configuration.getProperty("neo4j.remote.url", "http://localhost:7474/db/data");
+            int timeout = Integer.valueOf(Play.configuration.getProperty("neo4j.remote.timeout", "30000"));
+            // idle keep-alive connections kept by the JDK for the server (5 by default)
+            if (System.getProperty("http.maxConnections") == null) {
+                System.setProperty("http.maxConnections",
+                        Play.configuration.getProperty("neo4j.remote.connections", "20"));
+            }
+            Logger.info("Neo4j database is the server %s%s", url, readOnly ? " (read-only)" : "");
+            graphDb = new RestGraphDatabase(url, timeout);
+            return;
+        }
         String DBPath = Play.configuration.getProperty("neo4j.path");
         Logger.debug("Neo4j database path is :" + DBPath);
-        Map<String, String> config = new HashMap<String, String>();
-        config.put("enable_remote_shel", "true");
-        GraphDatabaseService graph = new GraphDatabaseFactory().newEmbeddedDatabase(DBPath);
+        Map<String, String> config = Neo4jConfig.build();
+        readOnly = Boolean.valueOf(Play.configuration.getProperty("neo4j.readonly", "false"))
+                || Boolean.valueOf(config.get(GraphDatabaseSettings.read_only.name()));
+        if (readOnly) {
+            // the factory opens an EmbeddedReadOnlyGraphDatabase with this setting
+            config.put(GraphDatabaseSettings.read_only.name(), "true");
+            Logger.info("Neo4j database is opened in read-only mode");
+        }
+        GraphDatabaseService graph = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(DBPath)
+                .setConfig(config).newGraphDatabase();
+        Neo4jConfig.log(graph);
         graphDb = graph;
-        if (Play.mode == Mode.DEV) {
+        Neo4jKeyMap.initialize(graph);
+        Neo4jChangeLog.initialize(graph);
+        if (Play.mode == Mode.DEV && !readOnly) {
             WrappingNeoServerBootstrapper bootstrapper = new WrappingNeoServerBootstrapper((GraphDatabaseAPI) graph);
             bootstrapper.start();
             bootstrapperDb = bootstrapper;
@@ -76,12 +122,59 @@ public class Neo4j {
                 bootstrapperDb = null;
             }
         }
+        Neo4jExecutor.shutdown();
+        Neo4jKeyMap.destroy();
+        Neo4jChangeLog.destroy();
+        engine = null;
         if (graphDb != null) {
             graphDb.shutdown();
             graphDb = null;
         }
     }
 
+    /**
+     * Is the database opened in read-only mode (with <code>neo4j.readonly=true</code>) ? In this mode, the store is
+     * opened without its write lock, so a process can read it while another one writes it, and the dev web server, key
+     * maps, change log and orphan sweeper are not started.
+     * 
+     * @return
+     */
+    public static boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Is the database a neo4j server (with <code>neo4j.mode=remote</code>) ? In this mode, the store is not opened by
+     * the application : the dev web server, key maps, change log, orphan sweeper, warm-up and cypher engine are not
+     * available.
+     * 
+     * @return
+     */
+    public static boolean isRemote() {
+        return remote;
+    }
+
+    /**
+     * Is the store opened by the application for writes (not remote, not read-only) ? Features that keep state next to
+     * the store (key maps, change log, orphan sweeper) are enabled only in this case.
+     * 
+     * @return
+     */
+    public static boolean isStoreOwner() {
+        return !remote && !readOnly;
+    }
+
+    /**
+     * Method to fail fast before a write, when the database is opened in read-only mode.
+     * 
+     * @throws Neo4jPlayException
+     */
+    public static void checkWritable() throws Neo4jPlayException {
+        if (readOnly) {
+            throw new Neo4jPlayException("The neo4j database is opened in read-only mode (neo4j.readonly=true)");
+        }
+    }
+
     /**
      * Method to retrieve the graphDb into the ThreadLocal.
      * 
@@ -96,46 +189,151 @@ public class Neo4j {
     }
 
     /**
-     * Method to reinitialize the graph database.
+     * Method to execute a cypher query with the shared engine.
+     * 
+     * @param query
+     * @return
+     */
+    public static ExecutionResult cypher(String query) {
+        return cypher(query, new HashMap<String, Object>());
+    }
+
+    /**
+     * Method to execute a cypher query with the shared engine. Prefer parameters (ie. <code>START n=node({id})</code>)
+     * to values concatenated into the query text, so the execution plan of the query is reused.
+     * 
+     * @param query
+     * @param params
+     * @return
+     */
+    public static ExecutionResult cypher(String query, Map<String, Object> params) {
+        if (remote) {
+            throw new Neo4jPlayException("The cypher engine is not available with a remote database");
+        }
+        ExecutionEngine current = engine;
+        if (current == null) {
+            synchronized (Neo4j.class) {
+                current = engine;
+                if (current == null) {
+                    current = new ExecutionEngine(db());
+                    engine = current;
+                }
+            }
+        }
+        Logger.debug("Cypher query is : " + query);
+        return current.execute(query, params);
+    }
+
+    /**
+     * Method to reinitialize the graph database. Nodes and relationships are deleted by batch of
+     * <code>neo4j.clear.batch</code> (10000 by default), one transaction per batch, so the memory doesn't depend on the
+     * size of the database. For a large database, <code>wipeStore()</code> is faster.
      */
     public static void clear() {
-        Transaction tx = Neo4j.db().beginTx();
+        checkWritable();
+        int batch = Integer.valueOf(Play.configuration.getProperty("neo4j.clear.batch", "10000"));
+        GraphDatabaseService graph = db();
+        Node reference = graph.getReferenceNode();
+        long nbNode = 0;
+        long nbRelation = 0;
+        int operations = 0;
+        Transaction tx = graph.beginTx();
         try {
             // for all node, we first delete all relation, and after we delete the node
-            for (Node node : db().getAllNodes()) {
-                Logger.debug("Deleting node " + node.getId());
-                for (org.neo4j.graphdb.Relationship relation : node.getRelationships()) {
-                    Logger.debug("Deleting relation " + relation.getId() + " for node " + node.getId());
-                    relation.delete();
+            for (Node node : graph.getAllNodes()) {
+                // a node (like a class reference node) can have millions of relationships, so they are also deleted
+                // by batch, with a new iterator after each commit
+                boolean hasMore = true;
+                while (hasMore) {
+                    hasMore = false;
+                    for (org.neo4j.graphdb.Relationship relation : node.getRelationships()) {
+                        relation.delete();
+                        nbRelation++;
+                        operations++;
+                        if (operations >= batch) {
+                            tx = commit(graph, tx, nbNode, nbRelation);
+                            operations = 0;
+                            hasMore = true;
+                            break;
+                        }
+                    }
                 }
                 // if node is the reference, we doesn't delete it, but we reset its properties
-                if (node.getGraphDatabase().getReferenceNode().equals(node)) {
+                if (node.equals(reference)) {
                     for (String property : node.getPropertyKeys()) {
                         node.removeProperty(property);
                     }
                 }
                 else {
                     node.delete();
+                    nbNode++;
+                    operations++;
+                }
+                if (operations >= batch) {
+                    tx = commit(graph, tx, nbNode, nbRelation);
+                    operations = 0;
                 }
             }
+            tx.success();
+        } finally {
+            tx.finish();
+        }
 
-            // Deleting indexes
-            String[] nodeIndexNames = Neo4j.db().index().nodeIndexNames();
+        // Deleting indexes
+        tx = graph.beginTx();
+        try {
+            String[] nodeIndexNames = graph.index().nodeIndexNames();
             for (int i = 0; i < nodeIndexNames.length; i++) {
                 Logger.debug("Deleting node index  " + nodeIndexNames[i]);
-                Neo4j.db().index().forNodes(nodeIndexNames[i]).delete();
+                graph.index().forNodes(nodeIndexNames[i]).delete();
             }
-            String[] relationIdexNames = Neo4j.db().index().relationshipIndexNames();
+            // a remote database doesn't support relationship indexes (the module doesn't create them), so the ones of
+            // the server are kept
+            String[] relationIdexNames = remote ? new String[0] : graph.index().relationshipIndexNames();
             for (int j = 0; j < relationIdexNames.length; j++) {
-                Logger.debug("Deleting relation index  " + nodeIndexNames[j]);
-                Neo4j.db().index().forNodes(relationIdexNames[j]).delete();
+                Logger.debug("Deleting relation index  " + relationIdexNames[j]);
+                graph.index().forRelationships(relationIdexNames[j]).delete();
             }
             tx.success();
-            Logger.debug("Deletion commiting");
         } finally {
             tx.finish();
         }
+        Neo4jKeyMap.clear();
+        Logger.info("Neo4j clear is done : %s nodes and %s relationships deleted", nbNode, nbRelation);
+    }
 
+    /**
+     * Commit a batch of <code>clear()</code>, and start the transaction of the next one.
+     * 
+     * @param graph
+     * @param tx
+     * @param nbNode
+     * @param nbRelation
+     * @return the new transaction
+     */
+    private static Transaction commit(GraphDatabaseService graph, Transaction tx, long nbNode, long nbRelation) {
+        tx.success();
+        tx.finish();
+        Logger.info("Neo4j clear : %s nodes and %s relationships deleted", nbNode, nbRelation);
+        return graph.beginTx();
+    }
+
+    /**
+     * Method to wipe the database : the database is stopped, its directory is deleted, and a new empty database is
+     * started. It's a lot faster than <code>clear()</code> for a large database.
+     */
+    public static void wipeStore() {
+        checkWritable();
+        if (remote) {
+            throw new Neo4jPlayException("The store of a remote database can't be wiped, use clear()");
+        }
+        File store = new File(Play.configuration.getProperty("neo4j.path"));
+        Logger.info("Wiping neo4j store " + store.getAbsolutePath());
+        destroy();
+        if (store.exists() && !Files.deleteDirectory(store)) {
+            throw new Neo4jPlayException("Can't delete neo4j store " + store.getAbsolutePath());
+        }
+        initialize();
     }
 
 }
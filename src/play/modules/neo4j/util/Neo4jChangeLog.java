@@ -0,0 +1,640 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import play.Logger;
+import play.Play;
+import play.modules.neo4j.exception.Neo4jPlayException;
+import play.modules.neo4j.model.Neo4jFactory;
+
+/**
+ * Rolling log of the created, updated and deleted nodes and relationships, written after each commit by a transaction
+ * handler. It's activated with <code>neo4j.changelog=true</code>, and used by <code>play neo4j:export --since</code>
+ * to export only what has changed since a previous export.
+ * 
+ * Each commit that changes something gets the next sequence number : this number is the <code>marker</code> of the
+ * log. Entries are fixed size records (sequence, time, operation, id) into segment files of
+ * <code>neo4j.changelog.segment</code> bytes (64Mo by default), and only the last
+ * <code>neo4j.changelog.retention</code> segments (10 by default) are kept.
+ * 
+ * A deleted node or relationship can't be read after its commit, and its id can be reused : so deletions of models
+ * and of relations between models are also written with their exported id (<code>Class_key</code>, like an export)
+ * into a text file next to each segment, with one <code>sequence node id</code> or
+ * <code>sequence relation from type to</code> line (tab separated) by deletion.
+ * 
+ * @author bsimard
+ */
+public class Neo4jChangeLog implements TransactionEventHandler<List<String>> {
+
+    /**
+     * Operations.
+     */
+    public final static byte      NODE_CREATED      = 1;
+    public final static byte      NODE_UPDATED      = 2;
+    public final static byte      NODE_DELETED      = 3;
+    public final static byte      RELATION_CREATED  = 4;
+    public final static byte      RELATION_UPDATED  = 5;
+    public final static byte      RELATION_DELETED  = 6;
+
+    /**
+     * Size of an entry : sequence (long), time (long), operation (byte), id (long).
+     */
+    private final static int      ENTRY_SIZE        = 25;
+
+    private final static String   SEGMENT_PREFIX    = "changes-";
+    private final static String   SEGMENT_EXTENSION = ".log";
+    private final static String   DELETED_EXTENSION = ".deleted";
+
+    private static Neo4jChangeLog instance;
+
+    private File                  folder;
+    private long                  segmentSize;
+    private int                   retention;
+    private DataOutputStream      out;
+    private Writer                deletions;
+    private long                  outSize;
+    private long                  sequence;
+
+    /**
+     * Is change log activated into application.conf ? There is no change log in read-only or remote mode.
+     * 
+     * @return
+     */
+    public static boolean isEnabled() {
+        return Neo4j.isStoreOwner() && Boolean.valueOf(Play.configuration.getProperty("neo4j.changelog", "false"));
+    }
+
+    /**
+     * Method to open the change log and register its transaction handler.
+     * 
+     * @param graphDb
+     */
+    public static void initialize(GraphDatabaseService graphDb) {
+        if (!isEnabled()) {
+            return;
+        }
+        instance = new Neo4jChangeLog();
+        graphDb.registerTransactionEventHandler(instance);
+        Logger.info("Neo4j change log is opened at marker %s", instance.marker());
+    }
+
+    /**
+     * Method to close the change log.
+     */
+    public static void destroy() {
+        if (instance != null) {
+            if (Neo4j.db() != null) {
+                Neo4j.db().unregisterTransactionEventHandler(instance);
+            }
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Retrieve the change log.
+     * 
+     * @return
+     * @throws Neo4jPlayException if the change log is not activated.
+     */
+    public static Neo4jChangeLog get() {
+        if (instance == null) {
+            throw new Neo4jPlayException("Change log is not activated (neo4j.changelog=true)");
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor. It opens the last segment, and retrieves the last sequence from it.
+     */
+    private Neo4jChangeLog() {
+        this.folder = new File(Play.configuration.getProperty("neo4j.path"), "changelog");
+        this.segmentSize = Long.valueOf(Play.configuration.getProperty("neo4j.changelog.segment", "67108864"));
+        this.retention = Integer.valueOf(Play.configuration.getProperty("neo4j.changelog.retention", "10"));
+        folder.mkdirs();
+        try {
+            File[] segments = segments();
+            if (segments.length > 0) {
+                File last = segments[segments.length - 1];
+                RandomAccessFile file = new RandomAccessFile(last, "rw");
+                try {
+                    // drop an entry that has not been fully written
+                    long length = file.length() - (file.length() % ENTRY_SIZE);
+                    file.setLength(length);
+                    if (length > 0) {
+                        file.seek(length - ENTRY_SIZE);
+                        sequence = file.readLong();
+                    }
+                    else {
+                        sequence = firstSequence(last) - 1;
+                    }
+                } finally {
+                    file.close();
+                }
+                open(last);
+            }
+            else {
+                sequence = 0;
+                open(new File(folder, SEGMENT_PREFIX + 1 + SEGMENT_EXTENSION));
+            }
+        } catch (IOException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * Retrieve the current marker : the sequence of the last logged commit.
+     * 
+     * @return
+     */
+    public synchronized long marker() {
+        return sequence;
+    }
+
+    /**
+     * Retrieve all changes logged after a marker.
+     * 
+     * @param marker
+     * @return
+     * @throws Neo4jPlayException if the changes after the marker are no more into the log.
+     */
+    public synchronized Changes since(long marker) {
+        try {
+            out.flush();
+            deletions.flush();
+            if (marker > sequence) {
+                throw new Neo4jPlayException("Marker " + marker + " is unknown, the last marker of the change log is "
+                        + sequence);
+            }
+            File[] segments = segments();
+            if (segments.length == 0 || firstSequence(segments[0]) > marker + 1) {
+                throw new Neo4jPlayException("Changes since " + marker
+                        + " are no more into the change log, a full export is needed");
+            }
+            Changes changes = new Changes(marker, sequence);
+            for (File segment : segments) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment),
+                        64 * 1024));
+                try {
+                    while (true) {
+                        long entrySequence;
+                        try {
+                            entrySequence = in.readLong();
+                        } catch (EOFException e) {
+                            break;
+                        }
+                        in.readLong();
+                        byte operation = in.readByte();
+                        long id = in.readLong();
+                        if (entrySequence > marker) {
+                            changes.add(operation, id);
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+                readDeletions(segment, marker, changes);
+            }
+            return changes;
+        } catch (IOException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * Read the deletions of a segment that are after a marker.
+     * 
+     * @param segment
+     * @param marker
+     * @param changes
+     * @throws IOException
+     */
+    private void readDeletions(File segment, long marker, Changes changes) throws IOException {
+        File file = deletedFile(segment);
+        if (!file.exists()) {
+            return;
+        }
+        InputStream in = new FileInputStream(file);
+        String text;
+        try {
+            text = IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+        // a line that has not been fully written (without its end of line) is ignored
+        for (String line : text.substring(0, text.lastIndexOf('\n') + 1).split("\n")) {
+            String[] fields = line.split("\t");
+            if ((fields.length == 3 && fields[1].equals("node"))
+                    || (fields.length == 5 && fields[1].equals("relation"))) {
+                if (Long.valueOf(fields[0]) > marker) {
+                    changes.addDeletion(fields);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the exported ids of deleted models and relations, before the commit : after it, the keys, classes and
+     * ends of deleted entities can't be read anymore.
+     * 
+     * @return deletion lines (without sequence), or null if nothing is deleted.
+     */
+    @Override
+    public List<String> beforeCommit(TransactionData data) throws Exception {
+        if (!data.deletedNodes().iterator().hasNext() && !data.deletedRelationships().iterator().hasNext()) {
+            return null;
+        }
+        // properties of deleted nodes are into the removed properties
+        Map<Long, Map<String, Object>> deletedNodes = new HashMap<Long, Map<String, Object>>();
+        for (Node node : data.deletedNodes()) {
+            deletedNodes.put(node.getId(), new HashMap<String, Object>());
+        }
+        for (PropertyEntry<Node> property : data.removedNodeProperties()) {
+            Map<String, Object> properties = deletedNodes.get(property.entity().getId());
+            if (properties != null) {
+                properties.put(property.key(), property.previouslyCommitedValue());
+            }
+        }
+        // the class of a deleted model is at the start of its deleted relationship with its reference node
+        Map<Long, String> ids = new HashMap<Long, String>();
+        for (Relationship relation : data.deletedRelationships()) {
+            Map<String, Object> properties = deletedNodes.get(relation.getEndNode().getId());
+            Object className = property(relation.getStartNode(), Neo4jFactory.NODE_CLASS_NAME, deletedNodes);
+            if (properties != null && properties.get("key") != null && className != null) {
+                ids.put(relation.getEndNode().getId(), exportedId((String) className, properties.get("key")));
+            }
+        }
+        List<String> lines = new ArrayList<String>();
+        for (String id : ids.values()) {
+            lines.add("node\t" + id);
+        }
+        for (Relationship relation : data.deletedRelationships()) {
+            String from = exportedId(relation.getStartNode(), ids, deletedNodes);
+            String to = exportedId(relation.getEndNode(), ids, deletedNodes);
+            if (from != null && to != null) {
+                lines.add("relation\t" + from + "\t" + relation.getType().name() + "\t" + to);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Retrieve a property of a node, that can be deleted by the transaction.
+     */
+    private static Object property(Node node, String key, Map<Long, Map<String, Object>> deletedNodes) {
+        Map<String, Object> properties = deletedNodes.get(node.getId());
+        if (properties != null) {
+            return properties.get(key);
+        }
+        return node.getProperty(key, null);
+    }
+
+    /**
+     * Retrieve the exported id of a model node, that can be deleted by the transaction.
+     * 
+     * @return the exported id, or null if it's not a model node.
+     */
+    private static String exportedId(Node node, Map<Long, String> ids, Map<Long, Map<String, Object>> deletedNodes) {
+        if (ids.containsKey(node.getId()) || deletedNodes.containsKey(node.getId())) {
+            return ids.get(node.getId());
+        }
+        Object key = node.getProperty("key", null);
+        if (key == null) {
+            return null;
+        }
+        for (Relationship relation : node.getRelationships(Direction.INCOMING)) {
+            Object className = property(relation.getStartNode(), Neo4jFactory.NODE_CLASS_NAME, deletedNodes);
+            if (className != null) {
+                return exportedId((String) className, key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Exported id of a model, like <code>YmlNode</code> : simple class name and key.
+     */
+    private static String exportedId(String className, Object key) {
+        return className.substring(className.lastIndexOf('.') + 1) + "_" + key;
+    }
+
+    @Override
+    public synchronized void afterCommit(TransactionData data, List<String> state) {
+        try {
+            long start = outSize;
+            long next = sequence + 1;
+            long time = System.currentTimeMillis();
+            // deletions are written first : if the entries are lost, the next commit gets the same sequence, and
+            // these deletions are only exported once more
+            if (state != null && !state.isEmpty()) {
+                for (String line : state) {
+                    deletions.write(next + "\t" + line + "\n");
+                }
+                deletions.flush();
+            }
+            LongHashSet nodes = new LongHashSet(16);
+            for (Node node : data.createdNodes()) {
+                nodes.add(node.getId());
+                write(next, time, NODE_CREATED, node.getId());
+            }
+            for (Node node : data.deletedNodes()) {
+                nodes.add(node.getId());
+                write(next, time, NODE_DELETED, node.getId());
+            }
+            for (PropertyEntry<Node> property : data.assignedNodeProperties()) {
+                if (nodes.add(property.entity().getId())) {
+                    write(next, time, NODE_UPDATED, property.entity().getId());
+                }
+            }
+            for (PropertyEntry<Node> property : data.removedNodeProperties()) {
+                if (nodes.add(property.entity().getId())) {
+                    write(next, time, NODE_UPDATED, property.entity().getId());
+                }
+            }
+            LongHashSet relations = new LongHashSet(16);
+            for (Relationship relation : data.createdRelationships()) {
+                relations.add(relation.getId());
+                write(next, time, RELATION_CREATED, relation.getId());
+            }
+            for (Relationship relation : data.deletedRelationships()) {
+                relations.add(relation.getId());
+                write(next, time, RELATION_DELETED, relation.getId());
+            }
+            for (PropertyEntry<Relationship> property : data.assignedRelationshipProperties()) {
+                if (relations.add(property.entity().getId())) {
+                    write(next, time, RELATION_UPDATED, property.entity().getId());
+                }
+            }
+            for (PropertyEntry<Relationship> property : data.removedRelationshipProperties()) {
+                if (relations.add(property.entity().getId())) {
+                    write(next, time, RELATION_UPDATED, property.entity().getId());
+                }
+            }
+            if (outSize > start) {
+                sequence = next;
+                out.flush();
+                if (outSize >= segmentSize) {
+                    roll();
+                }
+            }
+        } catch (IOException e) {
+            Logger.error(e, "Error when writing the neo4j change log");
+        }
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, List<String> state) {
+        // nothing to log
+    }
+
+    /**
+     * Write an entry into the current segment.
+     */
+    private void write(long entrySequence, long time, byte operation, long id) throws IOException {
+        out.writeLong(entrySequence);
+        out.writeLong(time);
+        out.writeByte(operation);
+        out.writeLong(id);
+        outSize += ENTRY_SIZE;
+    }
+
+    /**
+     * Start a new segment, and delete the segments that are too old.
+     * 
+     * @throws IOException
+     */
+    private void roll() throws IOException {
+        out.close();
+        deletions.close();
+        open(new File(folder, SEGMENT_PREFIX + (sequence + 1) + SEGMENT_EXTENSION));
+        File[] segments = segments();
+        for (int i = 0; i < segments.length - retention; i++) {
+            segments[i].delete();
+            deletedFile(segments[i]).delete();
+        }
+    }
+
+    /**
+     * Open a segment, and its deletions, for append.
+     * 
+     * @param segment
+     * @throws IOException
+     */
+    private void open(File segment) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment, true), 64 * 1024));
+        outSize = segment.length();
+        deletions = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(deletedFile(segment), true),
+                "UTF-8"));
+    }
+
+    private synchronized void close() {
+        IOUtils.closeQuietly(out);
+        IOUtils.closeQuietly(deletions);
+    }
+
+    /**
+     * Retrieve the deletions file of a segment.
+     * 
+     * @param segment
+     * @return
+     */
+    private static File deletedFile(File segment) {
+        String name = segment.getName();
+        return new File(segment.getParentFile(), name.substring(0, name.length() - SEGMENT_EXTENSION.length())
+                + DELETED_EXTENSION);
+    }
+
+    /**
+     * Retrieve all segments, ordered by their first sequence.
+     * 
+     * @return
+     */
+    private File[] segments() {
+        List<File> segments = new ArrayList<File>();
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_EXTENSION)) {
+                    segments.add(file);
+                }
+            }
+        }
+        File[] sorted = segments.toArray(new File[segments.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+
+            @Override
+            public int compare(File file1, File file2) {
+                long first1 = firstSequence(file1);
+                long first2 = firstSequence(file2);
+                return first1 < first2 ? -1 : (first1 == first2 ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Retrieve the first sequence of a segment, from its name.
+     * 
+     * @param segment
+     * @return
+     */
+    private static long firstSequence(File segment) {
+        String name = segment.getName();
+        return Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length()));
+    }
+
+    /**
+     * Changes between two markers : for each node and relationship, its last operation.
+     */
+    public static class Changes {
+
+        private long            from;
+        private long            to;
+        private LongLongHashMap nodes            = new LongLongHashMap(1024);
+        private LongLongHashMap relations        = new LongLongHashMap(1024);
+        private List<String>    deletedModels    = new ArrayList<String>();
+        private List<String[]>  deletedRelations = new ArrayList<String[]>();
+
+        private Changes(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        private void add(byte operation, long id) {
+            if (operation <= NODE_DELETED) {
+                nodes.put(id, operation);
+            }
+            else {
+                relations.put(id, operation);
+            }
+        }
+
+        private void addDeletion(String[] fields) {
+            if (fields[1].equals("node")) {
+                deletedModels.add(fields[2]);
+            }
+            else {
+                deletedRelations.add(new String[] { fields[2], fields[3], fields[4] });
+            }
+        }
+
+        /**
+         * @return the marker of the previous export.
+         */
+        public long getFrom() {
+            return from;
+        }
+
+        /**
+         * @return the marker to use for the next export.
+         */
+        public long getTo() {
+            return to;
+        }
+
+        /**
+         * @return ids of created or updated nodes (that are not deleted).
+         */
+        public long[] getNodes() {
+            return ids(nodes, false);
+        }
+
+        /**
+         * @return ids of deleted nodes.
+         */
+        public long[] getDeletedNodes() {
+            return ids(nodes, true);
+        }
+
+        /**
+         * @return ids of created or updated relationships (that are not deleted).
+         */
+        public long[] getRelations() {
+            return ids(relations, false);
+        }
+
+        /**
+         * @return ids of deleted relationships.
+         */
+        public long[] getDeletedRelations() {
+            return ids(relations, true);
+        }
+
+        /**
+         * @return exported ids (<code>Class_key</code>) of deleted models.
+         */
+        public List<String> getDeletedModels() {
+            return deletedModels;
+        }
+
+        /**
+         * @return deleted relations between models, as exported ids of their start and end, and their type :
+         *         <code>{ from, type, to }</code>.
+         */
+        public List<String[]> getDeletedModelRelations() {
+            return deletedRelations;
+        }
+
+        private static long[] ids(LongLongHashMap map, boolean deleted) {
+            long[] ids = new long[map.size()];
+            int nb = 0;
+            for (int slot = 0; slot < map.capacity(); slot++) {
+                long operation = map.valueAt(slot);
+                if (map.keyAt(slot) != LongLongHashMap.NO_VALUE
+                        && deleted == (operation == NODE_DELETED || operation == RELATION_DELETED)) {
+                    ids[nb++] = map.keyAt(slot);
+                }
+            }
+            ids = Arrays.copyOf(ids, nb);
+            Arrays.sort(ids);
+            return ids;
+        }
+    }
+
+}
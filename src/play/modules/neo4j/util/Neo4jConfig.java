@@ -0,0 +1,177 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseSetting;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.kernel.AbstractGraphDatabase;
+
+import play.Logger;
+import play.Play;
+import play.modules.neo4j.exception.Neo4jPlayException;
+
+/**
+ * Configuration of the embedded database, built from <code>application.conf</code> :
+ * <ul>
+ * <li><code>neo4j.preset</code> gives the base values (@see <code>preset</code>)</li>
+ * <li>each <code>neo4j.&lt;setting&gt;</code> key where <code>&lt;setting&gt;</code> is a neo4j kernel setting (like
+ * <code>neo4j.cache_type</code> or <code>neo4j.neostore.nodestore.db.mapped_memory</code>) overrides it, and its
+ * value is validated</li>
+ * <li>each <code>neo4j.config.&lt;name&gt;</code> key is passed as is (for settings of kernel extensions, like
+ * <code>enable_remote_shell</code>)</li>
+ * </ul>
+ * Others <code>neo4j.*</code> keys are settings of the module, so they are not passed to neo4j.
+ * 
+ * @author bsimard
+ */
+public class Neo4jConfig {
+
+    /**
+     * Prefix of the module keys into application.conf.
+     */
+    private final static String PREFIX     = "neo4j.";
+
+    /**
+     * Prefix of keys that are passed as is.
+     */
+    private final static String RAW_PREFIX = "neo4j.config.";
+
+    /**
+     * Name of the key that gives the preset.
+     */
+    private final static String PRESET_KEY = "neo4j.preset";
+
+    /**
+     * Method to build the configuration of the embedded database.
+     * 
+     * @return
+     * @throws Neo4jPlayException if a value is not valid.
+     */
+    public static Map<String, String> build() {
+        Map<String, String> config = preset(Play.configuration.getProperty(PRESET_KEY, "none"));
+        Map<String, GraphDatabaseSetting> settings = settings();
+        for (String key : Play.configuration.stringPropertyNames()) {
+            String value = Play.configuration.getProperty(key).trim();
+            if (key.startsWith(RAW_PREFIX)) {
+                config.put(key.substring(RAW_PREFIX.length()), value);
+            }
+            else if (key.startsWith(PREFIX)) {
+                GraphDatabaseSetting setting = settings.get(key.substring(PREFIX.length()));
+                if (setting != null) {
+                    try {
+                        setting.validate(value);
+                    } catch (IllegalArgumentException e) {
+                        throw new Neo4jPlayException("Invalid value for " + key + " : " + e.getMessage());
+                    }
+                    config.put(setting.name(), value);
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Method to log the configuration used by a database (with the values computed by neo4j, like the memory mapped
+     * sizes when they are not set).
+     * 
+     * @param graphDb
+     */
+    public static void log(GraphDatabaseService graphDb) {
+        if (graphDb instanceof AbstractGraphDatabase) {
+            Map<String, String> params = new TreeMap<String, String>(((AbstractGraphDatabase) graphDb).getConfig()
+                    .getParams());
+            Logger.info("Neo4j configuration :");
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                Logger.info("    %s=%s", param.getKey(), param.getValue());
+            }
+        }
+    }
+
+    /**
+     * Base values of a preset. Memory mapped sizes are for the store files of a database of about 1M (small), 10M
+     * (medium) or 100M (large) nodes, and they have to fit into the RAM of the host, in addition to the heap (the
+     * object cache is into the heap). Each value can be overrided by its own key.
+     * <ul>
+     * <li><code>none</code> : neo4j defaults (memory mapped sizes are computed from the available memory)</li>
+     * <li><code>small</code>, <code>medium</code>, <code>large</code> : memory mapped buffers and a soft reference
+     * object cache</li>
+     * </ul>
+     * 
+     * @param name
+     * @return
+     */
+    private static Map<String, String> preset(String name) {
+        Map<String, String> config = new HashMap<String, String>();
+        if (name.equalsIgnoreCase("none")) {
+            return config;
+        }
+        String[] sizes;
+        if (name.equalsIgnoreCase("small")) {
+            sizes = new String[] { "25M", "50M", "90M", "130M", "130M" };
+        }
+        else if (name.equalsIgnoreCase("medium")) {
+            sizes = new String[] { "150M", "750M", "500M", "500M", "100M" };
+        }
+        else if (name.equalsIgnoreCase("large")) {
+            sizes = new String[] { "1G", "5G", "4G", "2G", "500M" };
+        }
+        else {
+            throw new Neo4jPlayException("Unknow neo4j preset " + name + " (none, small, medium or large)");
+        }
+        config.put(GraphDatabaseSettings.nodestore_mapped_memory.name(), sizes[0]);
+        config.put(GraphDatabaseSettings.relationshipstore_mapped_memory.name(), sizes[1]);
+        config.put(GraphDatabaseSettings.nodestore_propertystore_mapped_memory.name(), sizes[2]);
+        config.put(GraphDatabaseSettings.strings_mapped_memory.name(), sizes[3]);
+        config.put(GraphDatabaseSettings.arrays_mapped_memory.name(), sizes[4]);
+        config.put(GraphDatabaseSettings.use_memory_mapped_buffers.name(), "true");
+        config.put(GraphDatabaseSettings.cache_type.name(), "soft");
+        return config;
+    }
+
+    /**
+     * Retrieve all kernel settings (the static fields of <code>GraphDatabaseSettings</code>), by name.
+     * 
+     * @return
+     */
+    private static Map<String, GraphDatabaseSetting> settings() {
+        Map<String, GraphDatabaseSetting> settings = new HashMap<String, GraphDatabaseSetting>();
+        for (Field field : GraphDatabaseSettings.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers())
+                    && GraphDatabaseSetting.class.isAssignableFrom(field.getType())) {
+                try {
+                    GraphDatabaseSetting setting = (GraphDatabaseSetting) field.get(null);
+                    if (setting != null) {
+                        settings.put(setting.name(), setting);
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new Neo4jPlayException(e);
+                }
+            }
+        }
+        return settings;
+    }
+
+}
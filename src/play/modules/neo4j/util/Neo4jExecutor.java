@@ -0,0 +1,105 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import play.Logger;
+import play.Play;
+
+/**
+ * Bounded pool of threads used by the module to split a big work (like the hydration of a large result set) between
+ * cores. The number of threads is configured with <code>neo4j.pool.threads</code> (number of cores by default). When
+ * the queue is full, the calling thread does the work itself.
+ * 
+ * @author bsimard
+ */
+public class Neo4jExecutor {
+
+    private final static String     THREAD_PREFIX = "neo4j-worker-";
+
+    private static ExecutorService  pool;
+
+    /**
+     * Retrieve the pool, and create it if needed.
+     * 
+     * @return
+     */
+    public static synchronized ExecutorService pool() {
+        if (pool == null) {
+            int threads = Integer.valueOf(Play.configuration.getProperty("neo4j.pool.threads", ""
+                    + Runtime.getRuntime().availableProcessors()));
+            Logger.debug("Creating neo4j worker pool with " + threads + " threads");
+            pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+                    threads * 4), new WorkerThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return pool;
+    }
+
+    /**
+     * Number of threads of the pool.
+     * 
+     * @return
+     */
+    public static int size() {
+        return ((ThreadPoolExecutor) pool()).getMaximumPoolSize();
+    }
+
+    /**
+     * Is the current thread a thread of the pool ? Work that is already into the pool must not be split again, to
+     * avoid that all threads are waiting for each other.
+     * 
+     * @return
+     */
+    public static boolean isWorker() {
+        return Thread.currentThread().getName().startsWith(THREAD_PREFIX);
+    }
+
+    /**
+     * Stop the pool.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Factory of daemon threads for the pool.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, THREAD_PREFIX + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(Play.classloader);
+            return thread;
+        }
+    }
+
+}
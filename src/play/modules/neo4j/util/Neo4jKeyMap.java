@@ -0,0 +1,449 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.GraphDatabaseAPI;
+
+import play.Logger;
+import play.Play;
+import play.modules.neo4j.exception.Neo4jPlayException;
+import play.modules.neo4j.model.Neo4jFactory;
+
+/**
+ * Primitive key -> node id map of a model class. Map is stored into a memory-mapped file (so off-heap), where the slot
+ * of a key is at <code>key * 8</code>, so a lookup is just a memory read. It's an optional replacement of the lucene
+ * <code>*_KEY</code> index for <code>getByKey</code>, activated with <code>neo4j.keymap=true</code>.
+ * 
+ * Modifications are stacked into the current thread with their transaction, and applied only when this transaction is
+ * commited (@see <code>KeyMapTransactionHandler</code>). When a map file is missing or has not been closed properly,
+ * it's rebuilt from the database.
+ * 
+ * @author bsimard
+ */
+public class Neo4jKeyMap {
+
+    /**
+     * Magic number at the beginning of each file ("NeoKeyM1").
+     */
+    private final static long                    MAGIC             = 0x4e656f4b65794d31L;
+
+    /**
+     * Size of the header (magic number + state).
+     */
+    private final static int                     HEADER_SIZE       = 16;
+
+    /**
+     * State of the file : dirty when it's open, clean when it has been closed properly.
+     */
+    private final static int                     STATE_CLEAN       = 0;
+    private final static int                     STATE_DIRTY       = 1;
+
+    /**
+     * Number of slot per mapped segment (8Mo per segment).
+     */
+    private final static int                     SEGMENT_SHIFT     = 20;
+    private final static int                     SEGMENT_SLOTS     = 1 << SEGMENT_SHIFT;
+    private final static long                    SEGMENT_MASK      = SEGMENT_SLOTS - 1;
+
+    /**
+     * Suffix of the relation between the root node and a model reference node (@see Neo4jFactory).
+     */
+    private final static String                  REFERENCE_KEYWORD = "_REF";
+
+    /**
+     * All opened map, by class name.
+     */
+    private static Map<String, Neo4jKeyMap>      maps              = new ConcurrentHashMap<String, Neo4jKeyMap>();
+
+    /**
+     * Modifications of the current thread that are waiting for the commit of their transaction.
+     */
+    private static ThreadLocal<PendingOps>       pending           = new ThreadLocal<PendingOps>();
+
+    /**
+     * Transaction handler that apply modifications.
+     */
+    private static KeyMapTransactionHandler      handler;
+
+    /**
+     * Name of the map (the upper case simple name of the model class).
+     */
+    private String                               name;
+
+    private RandomAccessFile                     file;
+    private FileChannel                          channel;
+    private MappedByteBuffer                     header;
+    private volatile MappedByteBuffer[]          segments          = new MappedByteBuffer[0];
+
+    /**
+     * Is key map activated into application.conf ? Maps are not used in read-only or remote mode, because they are
+     * maintained by the process that writes the store.
+     * 
+     * @return
+     */
+    public static boolean isEnabled() {
+        return Neo4j.isStoreOwner() && Boolean.valueOf(Play.configuration.getProperty("neo4j.keymap", "false"));
+    }
+
+    /**
+     * Method to open all key map of the database, and to register the transaction handler that maintains them. Missing
+     * or corrupt map are rebuilt here, at startup.
+     * 
+     * @param graphDb
+     */
+    public static void initialize(GraphDatabaseService graphDb) {
+        if (!isEnabled()) {
+            return;
+        }
+        Logger.info("Opening neo4j key maps");
+        for (Relationship relation : graphDb.getReferenceNode().getRelationships(Direction.OUTGOING)) {
+            if (relation.getEndNode().hasProperty(Neo4jFactory.NODE_CLASS_NAME)) {
+                String type = relation.getType().name();
+                if (type.endsWith(REFERENCE_KEYWORD)) {
+                    forClass(type.substring(0, type.length() - REFERENCE_KEYWORD.length()));
+                }
+            }
+        }
+        handler = new KeyMapTransactionHandler();
+        graphDb.registerTransactionEventHandler(handler);
+    }
+
+    /**
+     * Method to close all key map.
+     */
+    public static void destroy() {
+        for (Neo4jKeyMap map : maps.values()) {
+            map.close();
+        }
+        maps.clear();
+        if (handler != null) {
+            if (Neo4j.db() != null) {
+                Neo4j.db().unregisterTransactionEventHandler(handler);
+            }
+            handler = null;
+        }
+    }
+
+    /**
+     * Method to reset all key map (used when the database is cleared).
+     */
+    public static void clear() {
+        for (Neo4jKeyMap map : maps.values()) {
+            map.reset();
+        }
+    }
+
+    /**
+     * Retrieve (and open it if needed) the key map of a model class.
+     * 
+     * @param name the upper case simple name of the model class
+     * @return
+     */
+    public static synchronized Neo4jKeyMap forClass(String name) {
+        Neo4jKeyMap map = maps.get(name);
+        if (map == null) {
+            map = new Neo4jKeyMap(name);
+            maps.put(name, map);
+        }
+        return map;
+    }
+
+    /**
+     * Constructor. It open the file, and rebuild it if it's needed.
+     * 
+     * @param name
+     */
+    private Neo4jKeyMap(String name) {
+        this.name = name;
+        try {
+            File folder = new File(Play.configuration.getProperty("neo4j.path"), "keymap");
+            folder.mkdirs();
+            File mapFile = new File(folder, name + ".map");
+            boolean exist = mapFile.exists() && mapFile.length() >= HEADER_SIZE;
+            this.file = new RandomAccessFile(mapFile, "rw");
+            this.channel = file.getChannel();
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (!exist || header.getLong(0) != MAGIC || header.getInt(8) != STATE_CLEAN) {
+                Logger.info("Key map " + name + " is missing or corrupt, rebuilding it");
+                rebuild();
+            }
+            else {
+                long size = channel.size() - HEADER_SIZE;
+                int nbSegment = (int) ((size + (SEGMENT_SLOTS * 8L) - 1) / (SEGMENT_SLOTS * 8L));
+                for (int i = 0; i < nbSegment; i++) {
+                    segment(i, true);
+                }
+            }
+            header.putLong(0, MAGIC);
+            header.putInt(8, STATE_DIRTY);
+            header.force();
+        } catch (IOException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * Retrieve the node id of a key.
+     * 
+     * @param key
+     * @return the node id, or <code>-1</code> if the key is not into the map.
+     */
+    public long get(long key) {
+        MappedByteBuffer[] current = segments;
+        int segment = (int) (key >> SEGMENT_SHIFT);
+        if (key < 0 || segment >= current.length) {
+            return -1;
+        }
+        return current[segment].getLong((int) (key & SEGMENT_MASK) << 3) - 1;
+    }
+
+    /**
+     * Add a key into the map, when the current transaction will be commited.
+     * 
+     * @param key
+     * @param nodeId
+     */
+    public void put(long key, long nodeId) {
+        stack(new PendingOp(this, key, nodeId));
+    }
+
+    /**
+     * Remove a key from the map, when the current transaction will be commited.
+     * 
+     * @param key
+     */
+    public void remove(long key) {
+        stack(new PendingOp(this, key, -1));
+    }
+
+    /**
+     * Write a value into the map.
+     * 
+     * @param key
+     * @param nodeId the node id, or <code>-1</code> to delete the key
+     */
+    private synchronized void write(long key, long nodeId) {
+        if (key < 0) {
+            return;
+        }
+        int segment = (int) (key >> SEGMENT_SHIFT);
+        if (nodeId < 0 && segment >= segments.length) {
+            return;
+        }
+        try {
+            segment(segment, true).putLong((int) (key & SEGMENT_MASK) << 3, nodeId + 1);
+        } catch (IOException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * Retrieve a segment of the map, and map it (and all previous one) if needed.
+     * 
+     * @param index
+     * @param create
+     * @return
+     * @throws IOException
+     */
+    private synchronized MappedByteBuffer segment(int index, boolean create) throws IOException {
+        if (index >= segments.length && create) {
+            MappedByteBuffer[] grown = new MappedByteBuffer[index + 1];
+            System.arraycopy(segments, 0, grown, 0, segments.length);
+            for (int i = segments.length; i <= index; i++) {
+                long position = HEADER_SIZE + (i * SEGMENT_SLOTS * 8L);
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_SLOTS * 8L);
+            }
+            segments = grown;
+        }
+        return segments[index];
+    }
+
+    /**
+     * Rebuild the map from the database, by following the relationships of the model reference node.
+     * 
+     * @throws IOException
+     */
+    private synchronized void rebuild() throws IOException {
+        reset();
+        Node root = Neo4j.db().getReferenceNode();
+        Relationship root2ref = root.getSingleRelationship(DynamicRelationshipType.withName(name + REFERENCE_KEYWORD),
+                Direction.OUTGOING);
+        if (root2ref != null) {
+            long nb = 0;
+            for (Relationship relation : root2ref.getEndNode().getRelationships(
+                    DynamicRelationshipType.withName(name), Direction.OUTGOING)) {
+                Node node = relation.getEndNode();
+                Object key = node.getProperty("key", null);
+                if (key != null) {
+                    write(Long.valueOf("" + key), node.getId());
+                    nb++;
+                }
+            }
+            Logger.info("Key map " + name + " rebuilt with " + nb + " keys");
+        }
+    }
+
+    /**
+     * Remove all keys of the map. Mapped segments are zeroed in place, because a concurrent <code>get()</code> can
+     * still read them : truncating a mapped file would crash the JVM. The file is truncated only when nothing is
+     * mapped yet (when it's rebuilt at opening).
+     */
+    private synchronized void reset() {
+        try {
+            if (segments.length == 0) {
+                channel.truncate(HEADER_SIZE);
+            }
+            for (MappedByteBuffer segment : segments) {
+                for (int i = 0; i < SEGMENT_SLOTS; i++) {
+                    segment.putLong(i << 3, 0);
+                }
+            }
+        } catch (IOException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * Flush the map to the disk, and mark it as clean.
+     */
+    private synchronized void close() {
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            header.putInt(8, STATE_CLEAN);
+            header.force();
+            channel.close();
+            file.close();
+        } catch (IOException e) {
+            Logger.error(e, "Error when closing key map " + name);
+        }
+    }
+
+    /**
+     * Stack a modification into the current thread. Modifications left by a previous transaction of the thread (that
+     * has been rollbacked before its commit, so the handler has not been called) are dropped.
+     * 
+     * @param op
+     */
+    private static void stack(PendingOp op) {
+        Transaction tx = currentTransaction();
+        PendingOps ops = pending.get();
+        if (ops == null || ops.tx != tx) {
+            ops = new PendingOps(tx);
+            pending.set(ops);
+        }
+        ops.ops.add(op);
+    }
+
+    /**
+     * Retrieve the kernel transaction of the current thread.
+     * 
+     * @return the transaction, or null if there is no transaction.
+     */
+    private static Transaction currentTransaction() {
+        try {
+            return ((GraphDatabaseAPI) Neo4j.db()).getTxManager().getTransaction();
+        } catch (SystemException e) {
+            throw new Neo4jPlayException(e);
+        }
+    }
+
+    /**
+     * Modifications of a transaction.
+     */
+    private static class PendingOps {
+
+        private Transaction     tx;
+        private List<PendingOp> ops = new ArrayList<PendingOp>();
+
+        private PendingOps(Transaction tx) {
+            this.tx = tx;
+        }
+    }
+
+    /**
+     * A modification waiting for the commit.
+     */
+    private static class PendingOp {
+
+        private Neo4jKeyMap map;
+        private long        key;
+        private long        nodeId;
+
+        private PendingOp(Neo4jKeyMap map, long key, long nodeId) {
+            this.map = map;
+            this.key = key;
+            this.nodeId = nodeId;
+        }
+    }
+
+    /**
+     * Transaction handler that apply (or forget) modifications of the committing transaction. Neo4j calls it on the
+     * thread that finishes the top level transaction : modifications are taken from the thread before the commit
+     * (only if they belong to the committing transaction), and applied after it.
+     */
+    private static class KeyMapTransactionHandler implements TransactionEventHandler<List<PendingOp>> {
+
+        @Override
+        public List<PendingOp> beforeCommit(TransactionData data) throws Exception {
+            PendingOps ops = pending.get();
+            pending.remove();
+            if (ops != null && ops.tx == currentTransaction()) {
+                return ops.ops;
+            }
+            return null;
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, List<PendingOp> ops) {
+            if (ops != null) {
+                for (PendingOp op : ops) {
+                    op.map.write(op.key, op.nodeId);
+                }
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, List<PendingOp> ops) {
+            pending.remove();
+        }
+    }
+
+}
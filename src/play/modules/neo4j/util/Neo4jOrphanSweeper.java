@@ -0,0 +1,171 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.IndexManager;
+
+import play.Logger;
+import play.Play;
+import play.jobs.Job;
+import play.modules.neo4j.model.Neo4jFactory;
+
+/**
+ * Background job that deletes orphan model nodes : nodes with a model <code>key</code> and without any relationship
+ * (even the link from their class reference node). Nodes created with the neo4j API, that have no model key, are
+ * never deleted. It replaces the old <code>Neo4jModel.finalize()</code> : nodes are deleted by batch of
+ * <code>neo4j.orphan.sweep.batch</code>, one transaction per batch, and index entries of deleted nodes are removed.
+ * 
+ * The job is scheduled by the plugin when <code>neo4j.orphan.sweep=true</code>, every
+ * <code>neo4j.orphan.sweep.every</code> (1h by default).
+ * 
+ * @author bsimard
+ */
+public class Neo4jOrphanSweeper extends Job {
+
+    /**
+     * Metrics of the sweeper.
+     */
+    private static volatile long runs         = 0;
+    private static volatile long totalDeleted = 0;
+    private static volatile long lastScanned  = 0;
+    private static volatile long lastDeleted  = 0;
+    private static volatile long lastDuration = 0;
+    private static volatile Date lastRun      = null;
+
+    /**
+     * Is the sweeper activated into application.conf ? It's never started in read-only or remote mode.
+     * 
+     * @return
+     */
+    public static boolean isEnabled() {
+        return Neo4j.isStoreOwner() && Boolean.valueOf(Play.configuration.getProperty("neo4j.orphan.sweep", "false"));
+    }
+
+    /**
+     * Method to schedule the sweeper, if it's activated.
+     */
+    public static void schedule() {
+        if (isEnabled()) {
+            String every = Play.configuration.getProperty("neo4j.orphan.sweep.every", "1h");
+            Logger.info("Neo4j orphan sweeper is scheduled every " + every);
+            new Neo4jOrphanSweeper().every(every);
+        }
+    }
+
+    @Override
+    public void doJob() {
+        GraphDatabaseService graphDb = Neo4j.db();
+        if (graphDb == null) {
+            return;
+        }
+        int batch = Integer.valueOf(Play.configuration.getProperty("neo4j.orphan.sweep.batch", "1000"));
+        long start = System.currentTimeMillis();
+        long scanned = 0;
+        long deleted = 0;
+
+        Node reference = graphDb.getReferenceNode();
+        List<Node> orphans = new ArrayList<Node>(batch);
+        for (Node node : graphDb.getAllNodes()) {
+            scanned++;
+            if (!node.equals(reference) && isOrphan(node)) {
+                orphans.add(node);
+                if (orphans.size() >= batch) {
+                    deleted += delete(graphDb, orphans);
+                    orphans.clear();
+                }
+            }
+        }
+        deleted += delete(graphDb, orphans);
+
+        runs++;
+        totalDeleted += deleted;
+        lastScanned = scanned;
+        lastDeleted = deleted;
+        lastDuration = System.currentTimeMillis() - start;
+        lastRun = new Date();
+        Logger.info("Neo4j orphan sweeper : %s nodes scanned, %s orphan nodes deleted in %s ms", scanned, deleted,
+                lastDuration);
+    }
+
+    /**
+     * Is a node an orphan model node ? A model node has a <code>key</code> property, and a class reference node has a
+     * <code>CLASSNAME</code> property.
+     * 
+     * @param node
+     * @return
+     */
+    private static boolean isOrphan(Node node) {
+        return node.hasProperty("key") && !node.hasProperty(Neo4jFactory.NODE_CLASS_NAME) && !node.hasRelationship();
+    }
+
+    /**
+     * Delete a batch of orphan nodes, and their index entries, in one transaction.
+     * 
+     * @param graphDb
+     * @param orphans
+     * @return the number of deleted nodes
+     */
+    private int delete(GraphDatabaseService graphDb, List<Node> orphans) {
+        if (orphans.isEmpty()) {
+            return 0;
+        }
+        int deleted = 0;
+        IndexManager indexManager = graphDb.index();
+        String[] indexNames = indexManager.nodeIndexNames();
+        Transaction tx = graphDb.beginTx();
+        try {
+            for (Node node : orphans) {
+                // a relationship may have been created since the scan
+                if (isOrphan(node)) {
+                    for (String indexName : indexNames) {
+                        indexManager.forNodes(indexName).remove(node);
+                    }
+                    Logger.debug("Deleting orphan node " + node.getId());
+                    node.delete();
+                    deleted++;
+                }
+            }
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        return deleted;
+    }
+
+    /**
+     * Retrieve metrics of the sweeper (@see Neo4jPlugin.getStatus).
+     * 
+     * @return
+     */
+    public static String status() {
+        if (!isEnabled()) {
+            return "disabled";
+        }
+        return "runs: " + runs + ", deleted nodes: " + totalDeleted + ", last run: " + lastRun + " (" + lastScanned
+                + " nodes scanned, " + lastDeleted + " deleted in " + lastDuration + " ms)";
+    }
+
+}
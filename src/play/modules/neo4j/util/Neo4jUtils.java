@@ -18,9 +18,13 @@
  */
 package play.modules.neo4j.util;
 
+import java.util.Map;
+
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.helpers.collection.MapUtil;
 
 import play.Logger;
 import play.Play;
@@ -107,4 +111,21 @@ public class Neo4jUtils {
         return indexName;
     }
 
+    /**
+     * Construct lucene params configuration by the Neo4jIndex annotation.
+     * 
+     * @param field
+     * @return
+     */
+    public static Map<String, String> getLuceneConfigParam(java.lang.reflect.Field field) {
+        Neo4jIndex nodeIndex = field.getAnnotation(Neo4jIndex.class);
+        if (nodeIndex.type().equals("fulltext") && nodeIndex.lowerCase() != "") {
+            return MapUtil.stringMap(IndexManager.PROVIDER, "lucene", "type", nodeIndex.type(), "to_lower_case",
+                    nodeIndex.lowerCase());
+        }
+        else {
+            return MapUtil.stringMap(IndexManager.PROVIDER, "lucene", "type", nodeIndex.type());
+        }
+    }
+
 }
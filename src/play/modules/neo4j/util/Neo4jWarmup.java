@@ -0,0 +1,251 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.IndexHits;
+
+import play.Logger;
+import play.Play;
+import play.jobs.Job;
+import play.modules.neo4j.model.Neo4jFactory;
+import play.modules.neo4j.model.Neo4jModel;
+
+/**
+ * Warm-up of the database after a start, so the first requests don't hit cold store files and indexes. It's activated
+ * with <code>neo4j.warmup=true</code>, and has three steps :
+ * <ul>
+ * <li>store files (nodes, relationships, then properties) are read in sequence, so their pages are into the OS cache
+ * when neo4j maps them (<code>neo4j.warmup.stores</code>, true by default)</li>
+ * <li>all entries of the node indexes that match <code>neo4j.warmup.indexes</code> (a comma separated list of names,
+ * with <code>*</code> as wildcard, <code>*_KEY</code> by default) are read, so their lucene searchers are open and
+ * cached</li>
+ * <li>the first <code>neo4j.warmup.models.size</code> (1000 by default) models of each class of
+ * <code>neo4j.warmup.models</code> (a comma separated list of class names) are hydrated, so their nodes are into the
+ * object cache</li>
+ * </ul>
+ * The warm-up is done by the plugin before the application starts (so before the first request), or in background
+ * after the start with <code>neo4j.warmup.async=true</code>.
+ * 
+ * @author bsimard
+ */
+public class Neo4jWarmup extends Job {
+
+    /**
+     * Store files, in the order they are read.
+     */
+    private final static String[]  STORE_FILES = { "neostore.nodestore.db", "neostore.relationshipstore.db",
+            "neostore.propertystore.db", "neostore.propertystore.db.strings", "neostore.propertystore.db.arrays" };
+
+    /**
+     * Size of the read buffer of store files.
+     */
+    private final static int       BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Progress of the warm-up.
+     */
+    private static volatile String state       = "not started";
+
+    /**
+     * Is the warm-up activated into application.conf ? There is no local cache to warm with a remote database.
+     * 
+     * @return
+     */
+    public static boolean isEnabled() {
+        return !Neo4j.isRemote() && Boolean.valueOf(Play.configuration.getProperty("neo4j.warmup", "false"));
+    }
+
+    /**
+     * Is the warm-up done in background, after the start of the application ?
+     * 
+     * @return
+     */
+    public static boolean isAsync() {
+        return Boolean.valueOf(Play.configuration.getProperty("neo4j.warmup.async", "false"));
+    }
+
+    /**
+     * Method to do the warm-up now, if it's activated and not asynchronous (called before the application start).
+     */
+    public static void runBeforeStart() {
+        if (isEnabled() && !isAsync()) {
+            new Neo4jWarmup().doJob();
+        }
+    }
+
+    /**
+     * Method to start the warm-up in background, if it's activated and asynchronous (called after the application
+     * start).
+     */
+    public static void schedule() {
+        if (isEnabled() && isAsync()) {
+            Logger.info("Neo4j warm-up is started in background");
+            new Neo4jWarmup().now();
+        }
+    }
+
+    @Override
+    public void doJob() {
+        GraphDatabaseService graphDb = Neo4j.db();
+        if (graphDb == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            if (Boolean.valueOf(Play.configuration.getProperty("neo4j.warmup.stores", "true"))) {
+                warmupStores();
+            }
+            warmupIndexes(graphDb);
+            warmupModels();
+            state = "done in " + (System.currentTimeMillis() - start) + " ms";
+            Logger.info("Neo4j warm-up is %s", state);
+        } catch (Exception e) {
+            state = "failed (" + e.getMessage() + ")";
+            Logger.error(e, "Neo4j warm-up has failed, the application starts with a cold cache");
+        }
+    }
+
+    /**
+     * Read store files in sequence.
+     * 
+     * @throws IOException
+     */
+    private void warmupStores() throws IOException {
+        File folder = new File(Play.configuration.getProperty("neo4j.path"));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        for (String name : STORE_FILES) {
+            File file = new File(folder, name);
+            if (!file.exists()) {
+                continue;
+            }
+            state = "reading store " + name;
+            long start = System.currentTimeMillis();
+            long read = 0;
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                int nb;
+                while ((nb = channel.read(buffer)) >= 0) {
+                    read += nb;
+                    buffer.clear();
+                }
+            } finally {
+                channel.close();
+            }
+            Logger.info("Neo4j warm-up : store %s read (%s Ko in %s ms)", name, read / 1024,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Read all entries of the indexes that match <code>neo4j.warmup.indexes</code>.
+     * 
+     * @param graphDb
+     */
+    private void warmupIndexes(GraphDatabaseService graphDb) {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        for (String name : list(Play.configuration.getProperty("neo4j.warmup.indexes", "*_KEY"))) {
+            patterns.add(Pattern.compile(("\\Q" + name + "\\E").replace("*", "\\E.*\\Q")));
+        }
+        for (String indexName : graphDb.index().nodeIndexNames()) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(indexName).matches()) {
+                    state = "reading index " + indexName;
+                    long start = System.currentTimeMillis();
+                    long nb = 0;
+                    IndexHits<Node> hits = graphDb.index().forNodes(indexName).query("*:*");
+                    try {
+                        while (hits.hasNext()) {
+                            hits.next();
+                            nb++;
+                        }
+                    } finally {
+                        hits.close();
+                    }
+                    Logger.info("Neo4j warm-up : index %s read (%s entries in %s ms)", indexName, nb,
+                            System.currentTimeMillis() - start);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hydrate the first models of each class of <code>neo4j.warmup.models</code>.
+     * 
+     * @throws Exception
+     */
+    private void warmupModels() throws Exception {
+        int size = Integer.valueOf(Play.configuration.getProperty("neo4j.warmup.models.size", "1000"));
+        for (String className : list(Play.configuration.getProperty("neo4j.warmup.models", ""))) {
+            state = "hydrating " + className;
+            long start = System.currentTimeMillis();
+            Class clazz = Play.classloader.loadClass(className);
+            List<Node> nodes = new ArrayList<Node>(size);
+            for (Node node : new Neo4jFactory(clazz).findAllNodes()) {
+                if (nodes.size() >= size) {
+                    break;
+                }
+                nodes.add(node);
+            }
+            Neo4jModel.hydrateAll(nodes, clazz, false);
+            Logger.info("Neo4j warm-up : %s models of %s hydrated in %s ms", nodes.size(), className,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Split a comma separated list.
+     * 
+     * @param value
+     * @return
+     */
+    private static List<String> list(String value) {
+        List<String> list = new ArrayList<String>();
+        for (String item : value.split(",")) {
+            if (item.trim().length() > 0) {
+                list.add(item.trim());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Retrieve the progress of the warm-up (@see Neo4jPlugin.getStatus).
+     * 
+     * @return
+     */
+    public static String status() {
+        if (!isEnabled()) {
+            return "disabled";
+        }
+        return state;
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * This file is part of logisima-play-neo4j.
+ *
+ * logisima-play-neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logisima-play-neo4j is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logisima-play-neo4j. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * @See https://github.com/sim51/logisima-play-neo4j
+ */
+package play.modules.neo4j.util;
+
+/**
+ * Primitive <code>String -> long</code> hash map (open addressing, linear probing), for import ids -> node ids. Keys
+ * are stored into a plain array and values into a <code>long</code> array, so there is no entry or <code>Long</code>
+ * object by mapping. Values must be positive or zero.
+ * 
+ * @author bsimard
+ */
+public class StringLongHashMap {
+
+    /**
+     * Value returned for a missing key.
+     */
+    public final static long NO_VALUE = -1L;
+
+    private String[]         keys;
+    private long[]           values;
+    private int              size     = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param expectedSize
+     */
+    public StringLongHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * Retrieve the value of a key.
+     * 
+     * @param key
+     * @return the value, or <code>NO_VALUE</code> if the key is not into the map.
+     */
+    public long get(String key) {
+        int slot = slot(keys, key);
+        return keys[slot] == null ? NO_VALUE : values[slot];
+    }
+
+    /**
+     * Is the key into the map ?
+     * 
+     * @param key
+     * @return
+     */
+    public boolean containsKey(String key) {
+        return keys[slot(keys, key)] != null;
+    }
+
+    /**
+     * Put a value into the map.
+     * 
+     * @param key
+     * @param value
+     * @return true if the key was not already into the map.
+     */
+    public boolean put(String key, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must be positive : " + value);
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] != null) {
+            values[slot] = value;
+            return false;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            String[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int newSlot = slot(keys, oldKeys[i]);
+                    keys[newSlot] = oldKeys[i];
+                    values[newSlot] = oldValues[i];
+                }
+            }
+            slot = slot(keys, key);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Number of keys into the map.
+     * 
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the slot of a key : its slot if it's into the table, otherwise the empty slot where it should be put.
+     * 
+     * @param table
+     * @param key
+     * @return
+     */
+    private static int slot(String[] table, String key) {
+        int mask = table.length - 1;
+        int slot = LongIntHashMap.hash(key.hashCode()) & mask;
+        while (table[slot] != null && !table[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+}